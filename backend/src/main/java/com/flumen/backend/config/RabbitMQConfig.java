@@ -1,9 +1,12 @@
 package com.flumen.backend.config;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
@@ -24,15 +27,74 @@ public class RabbitMQConfig {
     @Value("${rabbitmq.routing-key.item-events}")
     private String itemEventsRoutingKey;
 
-    @Bean
-    public Queue itemEventsQueue() {
-        return new Queue(itemEventsQueue, true);
+    @Value("${rabbitmq.listener.batch-size:500}")
+    private int batchSize;
+
+    @Value("${rabbitmq.listener.receive-timeout-ms:50}")
+    private long receiveTimeoutMs;
+
+    @Value("${rabbitmq.listener.prefetch:1000}")
+    private int prefetch;
+
+    @Value("${rabbitmq.listener.concurrency:1}")
+    private int concurrency;
+
+    @Value("${rabbitmq.partitions:4}")
+    private int partitions;
+
+    @Value("${rabbitmq.retry.delays-ms:1000,10000,60000}")
+    private long[] retryDelaysMs;
+
+    public String itemEventsExchangeName() {
+        return itemEventsExchange;
+    }
+
+    public String itemEventsRoutingKey() {
+        return itemEventsRoutingKey;
+    }
+
+    /**
+     * Delays of the retry tiers a failed event goes through, in order, before it is dead-lettered.
+     */
+    public long[] retryDelaysMs() {
+        return retryDelaysMs.clone();
+    }
+
+    public String retryExchangeName() {
+        return itemEventsExchange + ".retry";
+    }
+
+    /**
+     * Name of the retry queue of a tier, {@code <rabbitmq.queue.item-events>.retry.<delay-ms>}, which is also
+     * its routing key on the retry exchange.
+     */
+    public String retryQueueName(long delayMs) {
+        return itemEventsQueue + ".retry." + delayMs;
+    }
+
+    /**
+     * Name of the queue holding the events that failed in every retry tier, routed with the same key.
+     */
+    public String deadLetterQueueName() {
+        return itemEventsQueue + ".dlq";
+    }
+
+    /**
+     * Names of the partition queues, {@code <rabbitmq.queue.item-events>.<n>}.
+     */
+    public List<String> partitionQueueNames() {
+        List<String> names = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            names.add(itemEventsQueue + "." + i);
+        }
+        return names;
     }
 
     @Bean
     public CustomExchange itemEventsExchange() {
         // This is the classic way to create a custom exchange, which works in older Spring AMQP versions.
         
+        // Producers put the entity id in this header, so all events of an entity land in the same partition.
         Map<String, Object> arguments = new HashMap<>();
         arguments.put("hash-header", "x-consistent-hash-by");
 
@@ -40,14 +102,52 @@ public class RabbitMQConfig {
         return new CustomExchange(itemEventsExchange, "x-consistent-hash", true, false, arguments);
     }
 
+    /**
+     * Partitions the event stream over equally weighted queues. Every backend instance consumes all of them,
+     * but as single-active-consumer queues each one is delivered to only one instance at a time, and
+     * handed over to a waiting instance when its consumer goes away.
+     */
+    @Bean
+    public Declarables itemEventsPartitions(CustomExchange itemEventsExchange) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (String name : partitionQueueNames()) {
+            Queue queue = QueueBuilder.durable(name).singleActiveConsumer().build();
+            declarables.add(queue);
+            // For this exchange type, the binding key is the weight of the queue, not a pattern.
+            declarables.add(BindingBuilder.bind(queue).to(itemEventsExchange).with(itemEventsRoutingKey).noargs());
+        }
+        return new Declarables(declarables);
+    }
+
+    @Bean
+    public DirectExchange itemEventsRetryExchange() {
+        return ExchangeBuilder.directExchange(retryExchangeName()).durable(true).build();
+    }
+
+    /**
+     * One queue per retry tier, without consumers. A message expires after the delay of its tier and is
+     * dead-lettered back to the item events exchange, which hashes it to its partition again by its
+     * {@code x-consistent-hash-by} header. Consumers never wait for a retry.
+     */
     @Bean
-    public Binding itemEventsBinding(Queue itemEventsQueue, CustomExchange itemEventsExchange) {
-        // For this exchange type, the routing key is what gets hashed.
-        // It is NOT a wildcard like "#".
-        return BindingBuilder.bind(itemEventsQueue)
-                .to(itemEventsExchange)
-                .with(itemEventsRoutingKey) // Use your specific routing key
-                .noargs();
+    public Declarables itemEventsRetryQueues(DirectExchange itemEventsRetryExchange, CustomExchange itemEventsExchange) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (long delayMs : retryDelaysMs) {
+            if (delayMs < 1 || delayMs > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("rabbitmq.retry.delays-ms must be between 1 and "
+                        + Integer.MAX_VALUE + ", was " + delayMs);
+            }
+            Queue queue = QueueBuilder.durable(retryQueueName(delayMs))
+                    .ttl((int) delayMs)
+                    .deadLetterExchange(itemEventsExchange.getName())
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(itemEventsRetryExchange).with(queue.getName()));
+        }
+        Queue deadLetters = QueueBuilder.durable(deadLetterQueueName()).build();
+        declarables.add(deadLetters);
+        declarables.add(BindingBuilder.bind(deadLetters).to(itemEventsRetryExchange).with(deadLetters.getName()));
+        return new Declarables(declarables);
     }
 
     @Bean
@@ -55,8 +155,34 @@ public class RabbitMQConfig {
         return new Jackson2JsonMessageConverter();
     }
 
+    /**
+     * Delivers up to batch-size messages per call, or fewer when no message arrives within the receive timeout.
+     * Messages are acknowledged by the listener once the batch has been applied.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        // One consumer per partition queue keeps the events of an entity in order. Partitions, not consumers per
+        // queue, are what scales consumption.
+        if (concurrency != 1) {
+            throw new IllegalArgumentException("rabbitmq.listener.concurrency must be 1, was " + concurrency
+                    + "; raise rabbitmq.partitions for more parallel consumers");
+        }
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(concurrency);
+        return factory;
+    }
+
     @Bean
-    public AmqpTemplate amqpTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate amqpTemplate(ConnectionFactory connectionFactory) {
         final RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
         rabbitTemplate.setMessageConverter(jsonMessageConverter());
         return rabbitTemplate;
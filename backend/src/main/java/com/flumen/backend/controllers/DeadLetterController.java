@@ -0,0 +1,52 @@
+package com.flumen.backend.controllers;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.flumen.backend.messaging.DeadLetterService;
+import com.flumen.backend.models.response.DeadLetterReplayResponse;
+import com.flumen.backend.models.response.DeadLetterResponse;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@RestController
+@RequestMapping("/api/admin/dead-letters")
+@Tag(name = "Dead letters", description = "APIs for inspecting and replaying events that failed every retry")
+public class DeadLetterController {
+
+    private final DeadLetterService deadLetterService;
+
+    public DeadLetterController(DeadLetterService deadLetterService) {
+        this.deadLetterService = deadLetterService;
+    }
+
+    @GetMapping
+    @Operation(summary = "Get the number of dead-lettered events and the first of them, leaving them queued")
+    public ResponseEntity<DeadLetterResponse> getDeadLetters(
+            @Parameter(description = "Maximum number of events returned") @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(deadLetterService.peek(limit));
+    }
+
+    /**
+     * Runs in the background, poll GET /replay for its progress.
+     */
+    @PostMapping("/replay")
+    @Operation(summary = "Start sending dead-lettered events back to the event queues at a limited rate")
+    public ResponseEntity<DeadLetterReplayResponse> replay(
+            @Parameter(description = "Maximum number of events replayed") @RequestParam(defaultValue = "1000") int limit,
+            @Parameter(description = "Events replayed per second, rabbitmq.dead-letters.replay-rate if omitted") @RequestParam(required = false) Integer ratePerSecond) {
+        return ResponseEntity.accepted().body(deadLetterService.replay(limit, ratePerSecond));
+    }
+
+    @GetMapping("/replay")
+    @Operation(summary = "Get the progress of the last dead-letter replay")
+    public ResponseEntity<DeadLetterReplayResponse> getReplayStatus() {
+        return ResponseEntity.ok(deadLetterService.replayStatus());
+    }
+}
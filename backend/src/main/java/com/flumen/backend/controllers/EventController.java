@@ -0,0 +1,49 @@
+package com.flumen.backend.controllers;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.flumen.backend.models.response.BulkEventResponse;
+import com.flumen.backend.services.BulkEventIngester;
+
+import flumen.events.BinaryEventCodec;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/events")
+@Tag(name = "Events", description = "APIs for submitting domain events")
+public class EventController {
+
+    private final BulkEventIngester bulkEventIngester;
+
+    public EventController(BulkEventIngester bulkEventIngester) {
+        this.bulkEventIngester = bulkEventIngester;
+    }
+
+    /**
+     * Accepts one JSON event per line, in the same format as the RabbitMQ messages. The body is read as it
+     * arrives, so it can hold any number of events.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Submit a stream of events, one JSON event per line")
+    public ResponseEntity<BulkEventResponse> submitEvents(InputStream body) throws IOException {
+        return ResponseEntity.ok(bulkEventIngester.ingest(body));
+    }
+
+    /**
+     * Accepts events in the binary codec, each preceded by its varint length.
+     */
+    @PostMapping(value = "/bulk", consumes = BinaryEventCodec.STREAM_CONTENT_TYPE)
+    @Operation(summary = "Submit a stream of length-prefixed binary events")
+    public ResponseEntity<BulkEventResponse> submitBinaryEvents(InputStream body) throws IOException {
+        return ResponseEntity.ok(bulkEventIngester.ingestBinary(body));
+    }
+}
@@ -2,30 +2,86 @@ package com.flumen.backend.controllers;
 
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.flumen.backend.models.graph.GraphData;
+import com.flumen.backend.models.graph.GraphDeltaPage;
+import com.flumen.backend.models.graph.GraphExportPage;
+import com.flumen.backend.models.graph.ViewportData;
+import com.flumen.backend.services.GraphHistoryService;
 import com.flumen.backend.services.GraphService;
+import com.flumen.backend.services.ViewportService;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import java.time.Instant;
+
 @RestController
 @RequestMapping("/api/graph")
 @Tag(name = "Graph", description = "APIs for retrieving graph data")
 public class GraphController {
 
     private final GraphService graphService;
+    private final ViewportService viewportService;
+    private final GraphHistoryService graphHistoryService;
 
-    public GraphController(GraphService graphService) {
+    public GraphController(GraphService graphService, ViewportService viewportService,
+            GraphHistoryService graphHistoryService) {
         this.graphService = graphService;
+        this.viewportService = viewportService;
+        this.graphHistoryService = graphHistoryService;
     }
 
     @GetMapping
-    @Operation(summary = "Get the current state of the graph")
-    public ResponseEntity<GraphData> getGraphData() {
-        return ResponseEntity.ok(graphService.getGraphData());
+    @Operation(summary = "Get the current state of the graph, or its state at a past instant")
+    public ResponseEntity<GraphData> getGraphData(
+            @Parameter(description = "ISO-8601 instant to reconstruct the graph at, omitted for the current state") @RequestParam(required = false) Instant at) {
+        return ResponseEntity.ok(at != null ? graphHistoryService.getGraphDataAt(at) : graphService.getGraphData());
+    }
+
+    @GetMapping("/deltas")
+    @Operation(summary = "Get the graph changes after a version, or a full snapshot if they are no longer retained")
+    public ResponseEntity<GraphDeltaPage> getGraphDeltas(
+            @Parameter(description = "Epoch returned with the last snapshot or page") @RequestParam(required = false) String epoch,
+            @Parameter(description = "Last version the client has applied") @RequestParam long since) {
+        return ResponseEntity.ok(graphService.getDeltasSince(epoch, since));
+    }
+
+    /**
+     * Streams the whole graph as one upsert record per line, without building it in memory first.
+     * The epoch and version to catch up from are returned in the X-Graph-Epoch and X-Graph-Version headers.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream the current state of the graph as newline-delimited upsert records")
+    public ResponseEntity<StreamingResponseBody> exportGraph() {
+        long version = graphService.currentVersion();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header("X-Graph-Epoch", graphService.getEpoch())
+                .header("X-Graph-Version", Long.toString(version))
+                .body(graphService::writeExport);
+    }
+
+    @GetMapping("/page")
+    @Operation(summary = "Get the graph one page of upsert records at a time")
+    public ResponseEntity<GraphExportPage> getGraphPage(
+            @Parameter(description = "nextCursor of the previous page, omitted for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Maximum number of records in the page, at most " + GraphService.MAX_PAGE_LIMIT) @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(graphService.getExportPage(cursor, limit));
+    }
+
+    @GetMapping("/viewport")
+    @Operation(summary = "Get the locations, connections and items inside a box, or clusters of them when zoomed out")
+    public ResponseEntity<ViewportData> getViewport(
+            @Parameter(description = "minLongitude,minLatitude,maxLongitude,maxLatitude") @RequestParam String bbox,
+            @Parameter(description = "Zoom level of the map, below graph.viewport.detail-zoom clusters are returned") @RequestParam(required = false) Integer zoom) {
+        return ResponseEntity.ok(viewportService.getViewport(bbox, zoom));
     }
-} 
\ No newline at end of file
+}
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.*;
 import com.flumen.backend.domain.Item;
 import com.flumen.backend.models.UpdateModel;
 import com.flumen.backend.models.input.ItemInput;
+import com.flumen.backend.services.GraphCheckpointer;
 import com.flumen.backend.services.ItemService;
 
 import java.util.List;
@@ -16,10 +17,12 @@ import java.util.List;
 public class ItemController {
 
     private final ItemService itemService;
+    private final GraphCheckpointer graphCheckpointer;
 
     @Autowired
-    public ItemController(ItemService itemService) {
+    public ItemController(ItemService itemService, GraphCheckpointer graphCheckpointer) {
         this.itemService = itemService;
+        this.graphCheckpointer = graphCheckpointer;
     }
 
     @GetMapping
@@ -38,18 +41,21 @@ public class ItemController {
     public ResponseEntity<Item> createItem(@RequestBody ItemInput item) {
         
         Item newItem = itemService.createItem(item);
+        graphCheckpointer.recordUnloggedChange();
         return ResponseEntity.ok(newItem);
     }
 
     @PutMapping()
     public ResponseEntity<Item> updateItem(@RequestBody UpdateModel model) {
         Item updatedItem = itemService.updateItem(model);
+        graphCheckpointer.recordUnloggedChange();
         return updatedItem != null ? ResponseEntity.ok(updatedItem) : ResponseEntity.notFound().build();
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteItem(@PathVariable String id) {
         itemService.deleteItem(id);
+        graphCheckpointer.recordUnloggedChange();
         return ResponseEntity.noContent().build();
     }
 }
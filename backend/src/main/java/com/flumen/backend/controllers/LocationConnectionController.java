@@ -5,16 +5,19 @@ import org.springframework.web.bind.annotation.*;
 
 import com.flumen.backend.models.input.ConnectionInput;
 import com.flumen.backend.services.ConnectedToService;
+import com.flumen.backend.services.GraphCheckpointer;
 
 @RestController
 @RequestMapping("/api/connections")
 public class LocationConnectionController {
 
     private final ConnectedToService connectedToService;
+    private final GraphCheckpointer graphCheckpointer;
 
     @Autowired
-    public LocationConnectionController(ConnectedToService connectedToService) {
+    public LocationConnectionController(ConnectedToService connectedToService, GraphCheckpointer graphCheckpointer) {
         this.connectedToService = connectedToService;
+        this.graphCheckpointer = graphCheckpointer;
     }
 
     /**
@@ -25,6 +28,7 @@ public class LocationConnectionController {
     @PostMapping
     public void createConnection(@RequestBody ConnectionInput connectionInput) {
         connectedToService.createConnection(connectionInput.getLocation1Id(), connectionInput.getLocation2Id());
+        graphCheckpointer.recordUnloggedChange();
     }
 
     /**
@@ -35,6 +39,7 @@ public class LocationConnectionController {
     @PutMapping
     public void moveConnection(@RequestBody ConnectionInput connectionInput) {
         connectedToService.moveConnection(connectionInput.getLocation1Id(), connectionInput.getLocation2Id());
+        graphCheckpointer.recordUnloggedChange();
     }
 
     /**
@@ -45,10 +50,12 @@ public class LocationConnectionController {
     @DeleteMapping("/{locationId}")
     public void deleteConnections(@PathVariable String locationId) {
         connectedToService.deleteConnections(locationId);
+        graphCheckpointer.recordUnloggedChange();
     }
 
     @DeleteMapping
     public void deleteConnection(String sourceId, String targetId) {
         connectedToService.deleteConnection(sourceId, targetId);
+        graphCheckpointer.recordUnloggedChange();
     }
 }
@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.*;
 import com.flumen.backend.domain.Location;
 import com.flumen.backend.models.UpdateModel;
 import com.flumen.backend.models.input.LocationInput;
+import com.flumen.backend.services.GraphCheckpointer;
 import com.flumen.backend.services.LocationService;
 
 import java.util.List;
@@ -15,10 +16,12 @@ import java.util.List;
 public class LocationController {
 
     private final LocationService locationService;
+    private final GraphCheckpointer graphCheckpointer;
 
     @Autowired
-    public LocationController(LocationService locationService) {
+    public LocationController(LocationService locationService, GraphCheckpointer graphCheckpointer) {
         this.locationService = locationService;
+        this.graphCheckpointer = graphCheckpointer;
     }
 
     @GetMapping
@@ -33,16 +36,21 @@ public class LocationController {
 
     @PostMapping
     public Location createLocation(@RequestBody LocationInput location) {
-        return locationService.createLocation(location);
+        Location created = locationService.createLocation(location);
+        graphCheckpointer.recordUnloggedChange();
+        return created;
     }
 
     @PutMapping()
     public Location updateLocation(@RequestBody UpdateModel model) {
-        return locationService.updateLocation(model);
+        Location updated = locationService.updateLocation(model);
+        graphCheckpointer.recordUnloggedChange();
+        return updated;
     }
 
     @DeleteMapping("/{id}")
     public void deleteLocation(@PathVariable String id) {
         locationService.deleteLocation(id);
+        graphCheckpointer.recordUnloggedChange();
     }
 }
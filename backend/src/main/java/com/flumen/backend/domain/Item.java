@@ -1,12 +1,18 @@
 package com.flumen.backend.domain;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import com.flumen.backend.domain.Location;
 import flumen.events.DomainEvent;
@@ -17,13 +23,27 @@ import flumen.events.ItemSpeedChangedEvent;
 
 @Getter
 public class Item {
+
+    /**
+     * The parts of an item that are persisted separately: the vertex properties, the position edge and the
+     * progress stored on it. {@code PROPERTIES} means the properties map was replaced, keys merged into an
+     * existing map are tracked one by one.
+     */
+    public enum Change { NAME, SPEED, ACTIVE, PROPERTIES, POSITION, PROGRESS }
+
     private final String id;
     private String name;
     private Double speed;
     private boolean active;
     private Map<String, Object> properties;
-    private Location location;
+    // Read without the item's monitor when a location is removed.
+    private volatile Location location;
     private ProgressInfo progressInfo;
+    // Changed since the item was last taken for persistence. Copies start without changes.
+    @Getter(AccessLevel.NONE)
+    private final Set<Change> changes = EnumSet.noneOf(Change.class);
+    @Getter(AccessLevel.NONE)
+    private final Set<String> mergedPropertyKeys = new HashSet<>();
 
     public Item(String id, String name, Double speed, boolean active, Map<String, Object> properties, Location location) {
         this.id = id;
@@ -34,6 +54,11 @@ public class Item {
         this.location = location;
     }
 
+    public Item(String id, String name, Double speed, boolean active, Map<String, Object> properties, Location location, ProgressInfo progressInfo) {
+        this(id, name, speed, active, properties, location);
+        this.progressInfo = progressInfo;
+    }
+
     public Item(String id, String name, Double speed, boolean active, Map<String, Object> properties) {
         this.id = id;
         this.name = name;
@@ -50,52 +75,229 @@ public class Item {
         this.properties = event.getProperties();
     }
 
-    public void resume() {
+    /**
+     * Creates a detached copy of this item, so it can be read or persisted while the original keeps changing.
+     */
+    public Item copy() {
+        return new Item(
+            this.id,
+            this.name,
+            this.speed,
+            this.active,
+            this.properties != null ? new HashMap<>(this.properties) : null,
+            this.location != null ? this.location.copy() : null,
+            this.progressInfo
+        );
+    }
+
+    /**
+     * Takes over the state of the same item as loaded from the database, without marking it changed.
+     * @return Whether any of it differed.
+     */
+    public boolean refreshFrom(Item loaded) {
+        boolean differs = !Objects.equals(this.name, loaded.name)
+                || !Objects.equals(this.speed, loaded.speed)
+                || this.active != loaded.active
+                || !Objects.equals(this.properties, loaded.properties)
+                || !Objects.equals(locationIdOf(this.location), locationIdOf(loaded.location))
+                || !Objects.equals(this.progressInfo, loaded.progressInfo);
+        this.name = loaded.name;
+        this.speed = loaded.speed;
+        this.active = loaded.active;
+        this.properties = loaded.properties;
+        this.location = loaded.location;
+        this.progressInfo = loaded.progressInfo;
+        return differs;
+    }
+
+    private static String locationIdOf(Location location) {
+        return location != null ? location.getId() : null;
+    }
+
+    /**
+     * Creates a detached copy that carries the changes made since the last call, and starts tracking anew.
+     * Used by the write-behind, which writes only the changed parts.
+     */
+    public Item takeChanges() {
+        Item copy = copy();
+        copy.changes.addAll(this.changes);
+        copy.mergedPropertyKeys.addAll(this.mergedPropertyKeys);
+        this.changes.clear();
+        this.mergedPropertyKeys.clear();
+        return copy;
+    }
+
+    public boolean hasChanged(Change change) {
+        return this.changes.contains(change);
+    }
+
+    public boolean hasChanges() {
+        return !this.changes.isEmpty() || !this.mergedPropertyKeys.isEmpty();
+    }
+
+    /**
+     * @return The keys merged into the properties since the last {@link #takeChanges()}, empty if the whole
+     * map was replaced.
+     */
+    public Set<String> mergedPropertyKeys() {
+        return this.changes.contains(Change.PROPERTIES) ? Set.of() : Collections.unmodifiableSet(this.mergedPropertyKeys);
+    }
+
+    /**
+     * Adds back the changes carried by a copy from {@link #takeChanges()} whose write failed, so that the next
+     * write covers them together with any made since.
+     */
+    public void restoreChanges(Item failed) {
+        this.changes.addAll(failed.changes);
+        this.mergedPropertyKeys.addAll(failed.mergedPropertyKeys);
+    }
+
+    /**
+     * Marks every part as changed, for an item whose persisted state is unknown.
+     */
+    public void markAllChanged() {
+        this.changes.addAll(EnumSet.allOf(Change.class));
+    }
+
+    public void resume(Instant at) {
         if (!this.active) {
+            if (this.progressInfo != null) {
+                this.progressInfo = new ProgressInfo(this.progressInfo.getProgress(), at);
+                this.changes.add(Change.PROGRESS);
+            }
             this.active = true;
+            this.changes.add(Change.ACTIVE);
         }
     }
 
-    public void stop() {
+    public void stop(Instant at) {
         if (this.active) {
+            settleProgress(at);
             this.active = false;
+            this.changes.add(Change.ACTIVE);
         }
     }
 
-    public void updatePosition(Location newLocation) {
-        if (this.location == null) {
-            this.location = newLocation;
-            return;
-        }
-
-        if (this.location.canMoveTo(newLocation.getId())) {
-            this.location = newLocation;
-        } else {
+    /**
+     * Moves the item onto a connected location, where it starts again from the beginning. Moving onto the
+     * location the item is already on resynchronizes its progress, e.g. after the move was predicted.
+     */
+    public void updatePosition(Location newLocation, Instant at) {
+        if (this.location != null
+                && !this.location.getId().equals(newLocation.getId())
+                && !this.location.canMoveTo(newLocation.getId())) {
             throw new IllegalStateException(
                 "Cannot move item " + this.id + " from location " + this.location.getId() +
                 " to unconnected location " + newLocation.getId()
             );
-        }    
+        }
+        moveTo(newLocation, at);
+    }
+
+    /**
+     * Places the item on a location without checking that it is reachable from the current one.
+     * Used for manual corrections coming from the API.
+     */
+    public void placeAt(Location newLocation) {
+        moveTo(newLocation, Instant.now());
+    }
+
+    public void clearPosition() {
+        if (this.location != null) {
+            this.changes.add(Change.POSITION);
+        }
+        this.location = null;
+        this.progressInfo = null;
+        this.changes.add(Change.PROGRESS);
+    }
+
+    private void moveTo(Location newLocation, Instant at) {
+        if (this.location == null || !this.location.getId().equals(newLocation.getId())) {
+            this.changes.add(Change.POSITION);
+        }
+        this.location = newLocation;
+        this.progressInfo = new ProgressInfo(0.0, at);
+        this.changes.add(Change.PROGRESS);
+    }
+
+    /**
+     * Applies a partial update. Known fields are set directly, any other key is merged into the properties.
+     */
+    public void applyChanges(Map<String, Object> changes) {
+        changes.forEach((key, value) -> {
+            switch (key) {
+                case "name" -> {
+                    this.name = (String) value;
+                    this.changes.add(Change.NAME);
+                }
+                case "speed" -> {
+                    this.speed = value != null ? ((Number) value).doubleValue() : null;
+                    this.changes.add(Change.SPEED);
+                }
+                case "active" -> {
+                    this.active = Boolean.TRUE.equals(value);
+                    this.changes.add(Change.ACTIVE);
+                }
+                case "properties" -> {
+                    this.properties = castProperties(value);
+                    this.changes.add(Change.PROPERTIES);
+                }
+                default -> mergeProperties(Collections.singletonMap(key, value));
+            }
+        });
+    }
+
+    private void mergeProperties(Map<String, Object> merged) {
+        if (this.properties == null) {
+            this.properties = new HashMap<>(merged);
+            this.changes.add(Change.PROPERTIES);
+        } else {
+            this.properties.putAll(merged);
+            this.mergedPropertyKeys.addAll(merged.keySet());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castProperties(Object value) {
+        return value != null ? new HashMap<>((Map<String, Object>) value) : null;
     }
 
     public void updateSpeed(ItemSpeedChangedEvent event) {
-        Duration timeDelta = Duration.between(this.progressInfo.getDatetime(), event.getTimestamp());
-        double milliSecondsElapsed = timeDelta.toMillis();
-        
-        double progressDelta = milliSecondsElapsed * this.speed / this.location.getLength();
-        double newProgress = this.progressInfo.getProgress() + progressDelta;
-        
-        this.progressInfo = new ProgressInfo(newProgress, event.getTimestamp());
-        
+        settleProgress(event.getTimestamp());
         this.speed = event.getSpeed();
+        this.changes.add(Change.SPEED);
+    }
+
+    /**
+     * @return How far along its location the item is at the given time, between 0 and 1, or null when it
+     * is not positioned. Items that are stopped or whose location has no length do not advance.
+     */
+    public Double progressAt(Instant at) {
+        if (this.progressInfo == null) {
+            return null;
+        }
+        double progress = this.progressInfo.getProgress();
+        if (!this.active || this.speed == null || this.location == null
+                || this.location.getLength() == null || this.location.getLength() <= 0) {
+            return progress;
+        }
+        double milliSecondsElapsed = Duration.between(this.progressInfo.getDatetime(), at).toMillis();
+        return Math.min(1.0, progress + milliSecondsElapsed * this.speed / this.location.getLength());
+    }
+
+    private void settleProgress(Instant at) {
+        if (this.progressInfo != null) {
+            this.progressInfo = new ProgressInfo(progressAt(at), at);
+            this.changes.add(Change.PROGRESS);
+        } else if (this.location != null) {
+            this.progressInfo = new ProgressInfo(0.0, at);
+            this.changes.add(Change.PROGRESS);
+        }
     }
 
     public void updateProperties(ItemPropertiesUpdatedEvent event) {
         if (event.getProperties() != null) {
-            if (this.properties == null) {
-                this.properties = new HashMap<>();
-            }
-            this.properties.putAll(event.getProperties());
+            mergeProperties(event.getProperties());
         }
     }    
 } 
\ No newline at end of file
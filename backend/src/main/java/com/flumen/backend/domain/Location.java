@@ -1,7 +1,11 @@
 package com.flumen.backend.domain;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import flumen.events.LocationActivatedEvent;
@@ -9,20 +13,42 @@ import flumen.events.LocationCreatedEvent;
 import flumen.events.LocationDeactivatedEvent;
 import flumen.events.LocationPropertiesUpdatedEvent;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
+/**
+ * A location is changed while holding its monitor, but items keep a reference to the location they are on and
+ * read it under their own. Its fields are therefore volatile, and the properties and connections are replaced
+ * rather than modified, so a reader without the monitor always sees a consistent snapshot of each.
+ */
 @Getter
 public class Location {
+
+    /**
+     * The parts of a location that are persisted separately: each vertex property and the outbound connection edges.
+     * {@code CONNECTIONS} means the connections were replaced, connections added or removed one by one are tracked
+     * as such, so that writing them leaves alone the connections other instances made to the same location.
+     */
+    public enum Change { NAME, LATITUDE, LONGITUDE, LENGTH, SPEED, TYPE, ACTIVE, PROPERTIES, CONNECTIONS }
+
     private String id;
-    private String name;
-    private Double latitude;
-    private Double longitude;
-    private Double length;
-    private Double speed;
-    private String type;
-    private Boolean active;
-    private Map<String, Object> properties;
-    private Set<String> outboundConnectionIds = new HashSet<>();
+    private volatile String name;
+    private volatile Double latitude;
+    private volatile Double longitude;
+    private volatile Double length;
+    private volatile Double speed;
+    private volatile String type;
+    private volatile Boolean active;
+    private volatile Map<String, Object> properties;
+    // Immutable, replaced on every change.
+    private volatile Set<String> outboundConnectionIds = Set.of();
+    // Changed since the location was last taken for persistence. Copies start without changes.
+    @Getter(AccessLevel.NONE)
+    private final Set<Change> changes = EnumSet.noneOf(Change.class);
+    @Getter(AccessLevel.NONE)
+    private final Set<String> addedConnectionIds = new HashSet<>();
+    @Getter(AccessLevel.NONE)
+    private final Set<String> removedConnectionIds = new HashSet<>();
 
     public Location(
         String id,
@@ -44,7 +70,6 @@ public class Location {
         this.type = type;
         this.active = active;
         this.properties = properties;
-        this.outboundConnectionIds = new HashSet<>();
     }
 
     public Location(LocationCreatedEvent event) {
@@ -59,29 +84,223 @@ public class Location {
         this.properties = event.getProperties();
     }
 
+    /**
+     * Creates a detached copy of this location, so it can be read or persisted while the original keeps changing.
+     */
+    public Location copy() {
+        Location copy = new Location(
+            this.id,
+            this.name,
+            this.latitude,
+            this.longitude,
+            this.length,
+            this.speed,
+            this.type,
+            this.active,
+            this.properties != null ? new HashMap<>(this.properties) : null
+        );
+        copy.outboundConnectionIds = this.outboundConnectionIds;
+        return copy;
+    }
+
+    /**
+     * Takes over the state of the same location as loaded from the database, without marking it changed.
+     * @return Whether any of it differed.
+     */
+    public boolean refreshFrom(Location loaded) {
+        boolean differs = !Objects.equals(this.name, loaded.name)
+                || !Objects.equals(this.latitude, loaded.latitude)
+                || !Objects.equals(this.longitude, loaded.longitude)
+                || !Objects.equals(this.length, loaded.length)
+                || !Objects.equals(this.speed, loaded.speed)
+                || !Objects.equals(this.type, loaded.type)
+                || !Objects.equals(this.active, loaded.active)
+                || !Objects.equals(this.properties, loaded.properties)
+                || !this.outboundConnectionIds.equals(loaded.outboundConnectionIds);
+        this.name = loaded.name;
+        this.latitude = loaded.latitude;
+        this.longitude = loaded.longitude;
+        this.length = loaded.length;
+        this.speed = loaded.speed;
+        this.type = loaded.type;
+        this.active = loaded.active;
+        this.properties = loaded.properties;
+        this.outboundConnectionIds = loaded.outboundConnectionIds;
+        return differs;
+    }
+
+    /**
+     * Creates a detached copy that carries the changes made since the last call, and starts tracking anew.
+     * Used by the write-behind, which writes only the changed parts.
+     */
+    public Location takeChanges() {
+        Location copy = copy();
+        copy.changes.addAll(this.changes);
+        copy.addedConnectionIds.addAll(this.addedConnectionIds);
+        copy.removedConnectionIds.addAll(this.removedConnectionIds);
+        clearChanges();
+        return copy;
+    }
+
+    public boolean hasChanged(Change change) {
+        return this.changes.contains(change);
+    }
+
+    public boolean hasChanges() {
+        return !this.changes.isEmpty() || hasConnectionChanges();
+    }
+
+    /**
+     * @return Whether the connections were replaced, or any added or removed.
+     */
+    public boolean hasConnectionChanges() {
+        return this.changes.contains(Change.CONNECTIONS)
+                || !this.addedConnectionIds.isEmpty()
+                || !this.removedConnectionIds.isEmpty();
+    }
+
+    /**
+     * @return The connections added since the last {@link #takeChanges()} and still there, empty if they were
+     * replaced.
+     */
+    public Set<String> addedConnectionIds() {
+        return this.changes.contains(Change.CONNECTIONS) ? Set.of() : Collections.unmodifiableSet(this.addedConnectionIds);
+    }
+
+    /**
+     * @return The connections removed since the last {@link #takeChanges()} and not added again, empty if they
+     * were replaced.
+     */
+    public Set<String> removedConnectionIds() {
+        return this.changes.contains(Change.CONNECTIONS) ? Set.of() : Collections.unmodifiableSet(this.removedConnectionIds);
+    }
+
+    /**
+     * Adds back the changes carried by a copy from {@link #takeChanges()} whose write failed, so that the next
+     * write covers them together with any made since.
+     */
+    public void restoreChanges(Location failed) {
+        this.changes.addAll(failed.changes);
+        // A connection changed again since the failed write keeps its latest change.
+        failed.addedConnectionIds.stream()
+                .filter(id -> !this.removedConnectionIds.contains(id))
+                .forEach(this.addedConnectionIds::add);
+        failed.removedConnectionIds.stream()
+                .filter(id -> !this.addedConnectionIds.contains(id))
+                .forEach(this.removedConnectionIds::add);
+    }
+
+    /**
+     * Marks every vertex property as changed and every connection as added, for a location whose persisted state
+     * is unknown. Connections are not replaced, so those made by other instances survive.
+     */
+    public void markAllChanged() {
+        this.changes.addAll(EnumSet.complementOf(EnumSet.of(Change.CONNECTIONS)));
+        this.addedConnectionIds.addAll(this.outboundConnectionIds);
+        this.removedConnectionIds.removeAll(this.outboundConnectionIds);
+    }
+
+    /**
+     * Forgets the changes made so far, for a location just loaded in the state it is persisted in.
+     */
+    public void clearChanges() {
+        this.changes.clear();
+        this.addedConnectionIds.clear();
+        this.removedConnectionIds.clear();
+    }
+
+    /**
+     * Applies a partial update. Known fields are set directly, any other key is merged into the properties.
+     */
+    public void applyChanges(Map<String, Object> changes) {
+        changes.forEach((key, value) -> {
+            switch (key) {
+                case "name" -> this.name = (String) value;
+                case "latitude" -> this.latitude = toDouble(value);
+                case "longitude" -> this.longitude = toDouble(value);
+                case "length" -> this.length = toDouble(value);
+                case "speed" -> this.speed = toDouble(value);
+                case "type" -> this.type = (String) value;
+                case "active" -> this.active = (Boolean) value;
+                case "properties" -> this.properties = castProperties(value);
+                default -> {
+                    Map<String, Object> merged = this.properties != null ? new HashMap<>(this.properties) : new HashMap<>();
+                    merged.put(key, value);
+                    this.properties = merged;
+                }
+            }
+            this.changes.add(changeOf(key));
+        });
+    }
+
+    private static Change changeOf(String key) {
+        return switch (key) {
+            case "name" -> Change.NAME;
+            case "latitude" -> Change.LATITUDE;
+            case "longitude" -> Change.LONGITUDE;
+            case "length" -> Change.LENGTH;
+            case "speed" -> Change.SPEED;
+            case "type" -> Change.TYPE;
+            case "active" -> Change.ACTIVE;
+            default -> Change.PROPERTIES;
+        };
+    }
+
+    private static Double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castProperties(Object value) {
+        return value != null ? new HashMap<>((Map<String, Object>) value) : null;
+    }
+
     public void updateProperties(LocationPropertiesUpdatedEvent event) {
         this.properties = event.getUpdatedProperties();
+        this.changes.add(Change.PROPERTIES);
     }
 
     public void activate(LocationActivatedEvent event) {
         this.active = true;
+        this.changes.add(Change.ACTIVE);
     }
 
     public void deactivate(LocationDeactivatedEvent event) {
         this.active = false;
+        this.changes.add(Change.ACTIVE);
     }
 
     public void addConnectionTo(String toLocationId) {
-        if (toLocationId != null && !this.id.equals(toLocationId)) {
-            this.outboundConnectionIds.add(toLocationId);
+        if (toLocationId != null && !this.id.equals(toLocationId) && !this.outboundConnectionIds.contains(toLocationId)) {
+            Set<String> connections = new HashSet<>(this.outboundConnectionIds);
+            connections.add(toLocationId);
+            this.outboundConnectionIds = Set.copyOf(connections);
+            this.removedConnectionIds.remove(toLocationId);
+            this.addedConnectionIds.add(toLocationId);
         }
     }
 
     public void removeConnectionTo(String toLocationId) {
-        this.outboundConnectionIds.remove(toLocationId);
+        if (toLocationId != null && this.outboundConnectionIds.contains(toLocationId)) {
+            Set<String> connections = new HashSet<>(this.outboundConnectionIds);
+            connections.remove(toLocationId);
+            this.outboundConnectionIds = Set.copyOf(connections);
+            this.addedConnectionIds.remove(toLocationId);
+            this.removedConnectionIds.add(toLocationId);
+        }
+    }
+
+    /**
+     * Removes every outbound connection, including those only other instances know of yet.
+     */
+    public void clearConnections() {
+        this.outboundConnectionIds = Set.of();
+        this.addedConnectionIds.clear();
+        this.removedConnectionIds.clear();
+        this.changes.add(Change.CONNECTIONS);
     }
 
     public boolean canMoveTo(String targetLocationId) {
-        return this.outboundConnectionIds.contains(targetLocationId);
+        return targetLocationId != null && this.outboundConnectionIds.contains(targetLocationId);
     }
 } 
\ No newline at end of file
@@ -3,10 +3,12 @@ package com.flumen.backend.domain;
 import java.time.Instant;
 
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 @Getter
 @AllArgsConstructor
+@EqualsAndHashCode
 public class ProgressInfo {
     private Double progress;
     private Instant datetime;
@@ -0,0 +1,290 @@
+package com.flumen.backend.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.flumen.backend.config.RabbitMQConfig;
+import com.flumen.backend.models.response.DeadLetterReplayResponse;
+import com.flumen.backend.models.response.DeadLetterResponse;
+import com.flumen.backend.services.ItemEventProcessor;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.GetResponse;
+
+import flumen.events.BinaryEventCodec;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes the events that failed to apply through the retry tiers declared in {@link RabbitMQConfig}, and then
+ * to the dead-letter queue. The failed message is republished with its attempt count and acknowledged, so
+ * neither the partition queue nor its consumer waits for the retry.
+ *
+ * A retried event comes back after the events of its entity that arrived in the meantime. It is only applied
+ * if none of them was newer, see {@link ItemEventProcessor#processBatch(List, java.util.function.Predicate)},
+ * so that a retry never rewinds its entity.
+ *
+ * Dead letters can be inspected and replayed to the item events exchange, at a limited rate so that a replay
+ * does not crowd out live events.
+ */
+@Component
+public class DeadLetterService {
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterService.class);
+
+    static final String ATTEMPTS_HEADER = "x-flumen-attempts";
+    static final String ERROR_HEADER = "x-flumen-error";
+    static final String FAILED_AT_HEADER = "x-flumen-failed-at";
+    static final String REPLAYED_HEADER = "x-flumen-replayed";
+    private static final String HASH_HEADER = "x-consistent-hash-by";
+    private static final long REPLAY_TICK_MS = 100;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final RabbitMQConfig rabbitMQConfig;
+    private final RabbitTemplate rabbitTemplate;
+    private final long[] retryDelaysMs;
+    private final int defaultReplayRate;
+    private final Counter[] retried;
+    private final Counter deadLettered;
+    private final Counter replayedCounter;
+    private final ScheduledExecutorService replayer;
+
+    private ScheduledFuture<?> replay;
+    private int replayRequested;
+    private int replayed;
+    private int replayRate;
+
+    public DeadLetterService(RabbitMQConfig rabbitMQConfig, RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry,
+            @Value("${rabbitmq.dead-letters.replay-rate:100}") int defaultReplayRate) {
+        this.rabbitMQConfig = rabbitMQConfig;
+        this.rabbitTemplate = rabbitTemplate;
+        this.retryDelaysMs = rabbitMQConfig.retryDelaysMs();
+        this.defaultReplayRate = defaultReplayRate;
+
+        this.retried = new Counter[retryDelaysMs.length];
+        for (int i = 0; i < retryDelaysMs.length; i++) {
+            retried[i] = Counter.builder("flumen.events.retried")
+                    .description("Failed events sent to a retry tier")
+                    .tag("delay-ms", Long.toString(retryDelaysMs[i]))
+                    .register(meterRegistry);
+        }
+        this.deadLettered = Counter.builder("flumen.events.dead-lettered")
+                .description("Events moved to the dead-letter queue")
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("flumen.events.dead-letters.replayed")
+                .description("Dead-lettered events sent back to the item events exchange")
+                .register(meterRegistry);
+
+        this.replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dead-letter-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return Whether the message carries an event that failed before, retried or replayed from the dead letters.
+     */
+    public static boolean isRetry(MessageProperties properties) {
+        return attemptsOf(properties.getHeaders()) > 0 || properties.getHeaders().containsKey(REPLAYED_HEADER);
+    }
+
+    /**
+     * Sends a message whose event failed to the next retry tier, or to the dead-letter queue after the last one.
+     */
+    public void retryOrDeadLetter(Message message, Throwable failure) {
+        MessageProperties properties = message.getMessageProperties();
+        int attempts = attemptsOf(properties.getHeaders());
+        properties.setHeader(ATTEMPTS_HEADER, attempts + 1);
+        properties.setHeader(ERROR_HEADER, errorOf(failure));
+        if (attempts >= retryDelaysMs.length) {
+            deadLetter(message);
+            return;
+        }
+        long delayMs = retryDelaysMs[attempts];
+        rabbitTemplate.send(rabbitMQConfig.retryExchangeName(), rabbitMQConfig.retryQueueName(delayMs), message);
+        retried[attempts].increment();
+        logger.debug("Retrying message {} in {} ms, attempt {}", properties.getMessageId(), delayMs, attempts + 1);
+    }
+
+    /**
+     * Sends a message straight to the dead-letter queue, e.g. one that cannot be read, which no retry would fix.
+     */
+    public void deadLetter(Message message, Throwable failure) {
+        message.getMessageProperties().setHeader(ERROR_HEADER, errorOf(failure));
+        deadLetter(message);
+    }
+
+    private void deadLetter(Message message) {
+        message.getMessageProperties().setHeader(FAILED_AT_HEADER, Instant.now().toString());
+        rabbitTemplate.send(rabbitMQConfig.retryExchangeName(), rabbitMQConfig.deadLetterQueueName(), message);
+        deadLettered.increment();
+        logger.warn("Dead-lettered message {}: {}", message.getMessageProperties().getMessageId(),
+                message.getMessageProperties().getHeaders().get(ERROR_HEADER));
+    }
+
+    /**
+     * Reads the first messages of the dead-letter queue without removing them: they are fetched unacknowledged
+     * and handed back to the queue, which restores them in their place.
+     */
+    public DeadLetterResponse peek(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1, was " + limit);
+        }
+        String queue = rabbitMQConfig.deadLetterQueueName();
+        return rabbitTemplate.execute(channel -> {
+            List<DeadLetterResponse.DeadLetter> messages = new ArrayList<>();
+            long lastTag = -1;
+            for (int i = 0; i < limit; i++) {
+                GetResponse response = channel.basicGet(queue, false);
+                if (response == null) {
+                    break;
+                }
+                lastTag = response.getEnvelope().getDeliveryTag();
+                messages.add(toDeadLetter(response));
+            }
+            if (lastTag >= 0) {
+                channel.basicNack(lastTag, true, true);
+            }
+            return new DeadLetterResponse(channel.messageCount(queue), messages);
+        });
+    }
+
+    /**
+     * Starts moving up to {@code limit} messages from the dead-letter queue back to the item events exchange,
+     * at most {@code ratePerSecond} per second. Their attempt count starts over, and they are marked as replayed so
+     * that one its entity has overtaken since is skipped. Only one replay runs at a time.
+     * @param ratePerSecond The rate, or null for {@code rabbitmq.dead-letters.replay-rate}.
+     */
+    public synchronized DeadLetterReplayResponse replay(int limit, Integer ratePerSecond) {
+        int rate = ratePerSecond != null ? ratePerSecond : defaultReplayRate;
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1, was " + limit);
+        }
+        if (rate < 1) {
+            throw new IllegalArgumentException("ratePerSecond must be at least 1, was " + rate);
+        }
+        if (isReplaying()) {
+            throw new IllegalStateException("A dead-letter replay is already running, " + replayed + " of "
+                    + replayRequested + " replayed");
+        }
+        replayRequested = limit;
+        replayed = 0;
+        replayRate = rate;
+        // Spread the rate over ticks, so that a replay sends small bursts rather than one per second.
+        int perTick = (int) Math.max(1, rate * REPLAY_TICK_MS / 1000);
+        long tickMs = Math.max(1, perTick * 1000L / rate);
+        replay = replayer.scheduleAtFixedRate(() -> replayTick(perTick), 0, tickMs, TimeUnit.MILLISECONDS);
+        logger.info("Replaying up to {} dead-lettered events at {} per second", limit, rate);
+        return replayStatus();
+    }
+
+    public synchronized DeadLetterReplayResponse replayStatus() {
+        return new DeadLetterReplayResponse(isReplaying(), replayRequested, replayed, replayRate);
+    }
+
+    private boolean isReplaying() {
+        return replay != null && !replay.isDone();
+    }
+
+    private void replayTick(int perTick) {
+        int count;
+        synchronized (this) {
+            count = Math.min(perTick, replayRequested - replayed);
+        }
+        int moved = 0;
+        try {
+            moved = rabbitTemplate.execute(channel -> {
+                int sent = 0;
+                while (sent < count) {
+                    GetResponse response = channel.basicGet(rabbitMQConfig.deadLetterQueueName(), false);
+                    if (response == null) {
+                        break;
+                    }
+                    channel.basicPublish(rabbitMQConfig.itemEventsExchangeName(), rabbitMQConfig.itemEventsRoutingKey(),
+                            withoutFailure(response.getProps()), response.getBody());
+                    channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+                    sent++;
+                }
+                return sent;
+            });
+        } catch (Exception e) {
+            logger.warn("Dead-letter replay failed, stopping it: {}", e.getMessage());
+            stopReplay();
+            return;
+        } finally {
+            replayedCounter.increment(moved);
+        }
+        synchronized (this) {
+            replayed += moved;
+            if (moved < count || replayed >= replayRequested) {
+                logger.info("Dead-letter replay done, {} events replayed", replayed);
+                replay.cancel(false);
+            }
+        }
+    }
+
+    private synchronized void stopReplay() {
+        replay.cancel(false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        replayer.shutdownNow();
+    }
+
+    private static AMQP.BasicProperties withoutFailure(AMQP.BasicProperties properties) {
+        Map<String, Object> headers = properties.getHeaders() != null ? new HashMap<>(properties.getHeaders()) : new HashMap<>();
+        headers.remove(ATTEMPTS_HEADER);
+        headers.remove(ERROR_HEADER);
+        headers.remove(FAILED_AT_HEADER);
+        headers.remove("x-death");
+        headers.put(REPLAYED_HEADER, true);
+        return properties.builder().headers(headers).build();
+    }
+
+    private static DeadLetterResponse.DeadLetter toDeadLetter(GetResponse response) {
+        AMQP.BasicProperties properties = response.getProps();
+        Map<String, Object> headers = properties.getHeaders() != null ? properties.getHeaders() : Map.of();
+        String contentType = properties.getContentType();
+        String body = BinaryEventCodec.isBinaryContentType(contentType)
+                ? Base64.getEncoder().encodeToString(response.getBody())
+                : new String(response.getBody(), StandardCharsets.UTF_8);
+        return new DeadLetterResponse.DeadLetter(properties.getMessageId(), stringOf(headers.get(HASH_HEADER)),
+                attemptsOf(headers), stringOf(headers.get(ERROR_HEADER)), stringOf(headers.get(FAILED_AT_HEADER)),
+                contentType, body);
+    }
+
+    private static int attemptsOf(Map<String, Object> headers) {
+        return headers.get(ATTEMPTS_HEADER) instanceof Number attempts ? attempts.intValue() : 0;
+    }
+
+    /**
+     * Header values arrive from the broker as LongString.
+     */
+    private static String stringOf(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static String errorOf(Throwable failure) {
+        String error = failure.getClass().getSimpleName() + ": " + failure.getMessage();
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
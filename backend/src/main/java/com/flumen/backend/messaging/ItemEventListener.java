@@ -2,32 +2,218 @@ package com.flumen.backend.messaging;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.ListenerContainerConsumerFailedEvent;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.rabbitmq.client.Channel;
+
+import flumen.events.BinaryEventCodec;
 import flumen.events.DomainEvent;
+import com.flumen.backend.config.RabbitMQConfig;
+import com.flumen.backend.services.GraphWriteBehind;
 import com.flumen.backend.services.ItemEventProcessor;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Consumes the partition queues, one listener container per queue, so that every partition has its own
+ * consumer and the partitions are processed in parallel.
+ *
+ * Another instance may have applied events of a partition before this one became its active consumer, so the
+ * first batch after acquiring a queue reloads the graph from OrientDB, where the previous owner persisted its
+ * state before releasing the queue.
+ */
 @Component
-public class ItemEventListener {
+public class ItemEventListener implements ChannelAwareBatchMessageListener, RabbitListenerConfigurer {
     private static final Logger logger = LoggerFactory.getLogger(ItemEventListener.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule());
+
+    public static final String CONTAINER_ID_PREFIX = "item-events-";
+
     private final ItemEventProcessor eventProcessor;
+    private final RabbitMQConfig rabbitMQConfig;
+    private final SimpleRabbitListenerContainerFactory batchListenerContainerFactory;
+    private final DeadLetterService deadLetterService;
+    private final GraphWriteBehind graphWriteBehind;
+    private final Set<String> ownedQueues = ConcurrentHashMap.newKeySet();
 
-    public ItemEventListener(ItemEventProcessor eventProcessor) {
+    public ItemEventListener(ItemEventProcessor eventProcessor, RabbitMQConfig rabbitMQConfig,
+            SimpleRabbitListenerContainerFactory batchListenerContainerFactory, DeadLetterService deadLetterService,
+            GraphWriteBehind graphWriteBehind) {
         this.eventProcessor = eventProcessor;
+        this.rabbitMQConfig = rabbitMQConfig;
+        this.batchListenerContainerFactory = batchListenerContainerFactory;
+        this.deadLetterService = deadLetterService;
+        this.graphWriteBehind = graphWriteBehind;
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        for (String queue : rabbitMQConfig.partitionQueueNames()) {
+            SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+            endpoint.setId(CONTAINER_ID_PREFIX + queue);
+            endpoint.setQueueNames(queue);
+            endpoint.setMessageListener(this);
+            endpoint.setBatchListener(true);
+            registrar.registerEndpoint(endpoint, batchListenerContainerFactory);
+        }
     }
 
-    @RabbitListener(queues = "${rabbitmq.queue.item-events}")
-    public void handleItemEvent(DomainEvent event) {
-        logger.info("Received event from RabbitMQ: {} for item: {}", 
-            event.getEventType(), event.getEntityId());
-        
-        eventProcessor.process(event)
-            .exceptionally(throwable -> {
-                logger.error("Failed to process event from RabbitMQ: {}", 
-                    event.getEventId(), throwable);
-                // Here you could implement retry logic or dead letter queue
-                return null;
-            });
-    }
-}
\ No newline at end of file
+    /**
+     * @return Whether this instance is the active consumer of the queue, as far as it can tell: from its first
+     *         delivery until the queue is released or its consumer fails.
+     */
+    public boolean owns(String queue) {
+        return ownedQueues.contains(queue);
+    }
+
+    /**
+     * Forgets the ownership of a queue whose consumer is stopped, so that the graph is reloaded if it comes back.
+     */
+    public void release(String queue) {
+        ownedQueues.remove(queue);
+    }
+
+    @EventListener
+    public void onConsumerFailed(ListenerContainerConsumerFailedEvent event) {
+        if (event.getSource() instanceof AbstractMessageListenerContainer container) {
+            for (String queue : container.getQueueNames()) {
+                release(queue);
+            }
+        }
+    }
+
+    /**
+     * Applies a batch of events and acknowledges it only once every event is applied and durable in the
+     * event log. The consumer thread waits for the batch, so a slow pipeline holds back further deliveries
+     * through the prefetch limit. A crash before the ack redelivers the whole batch.
+     *
+     * Events that failed are handed to the {@link DeadLetterService} for a delayed retry and acknowledged, so
+     * they do not hold back the queue. A batch the event log fails to make durable is requeued as a whole.
+     */
+    @Override
+    public void onMessageBatch(List<Message> messages, Channel channel) {
+        try {
+            handleItemEvents(messages, channel);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to acknowledge events", e);
+        }
+    }
+
+    private void handleItemEvents(List<Message> messages, Channel channel) throws IOException {
+        String queue = messages.get(0).getMessageProperties().getConsumerQueue();
+        if (ownedQueues.add(queue)) {
+            logger.info("Acquired partition {}, reloading the graph from OrientDB", queue);
+            try {
+                graphWriteBehind.flushAndRefresh();
+            } catch (RuntimeException e) {
+                // The batch is redelivered, and reloads again.
+                ownedQueues.remove(queue);
+                throw e;
+            }
+        }
+
+        List<DomainEvent> events = new ArrayList<>(messages.size());
+        List<CompletableFuture<Void>> results = new ArrayList<>(messages.size());
+        List<DomainEvent> readable = new ArrayList<>(messages.size());
+        Set<DomainEvent> retried = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Message message : messages) {
+            DomainEvent event = read(message);
+            events.add(event);
+            if (event != null) {
+                readable.add(event);
+                if (DeadLetterService.isRetry(message.getMessageProperties())) {
+                    retried.add(event);
+                }
+            }
+        }
+        logger.debug("Received batch of {} events from RabbitMQ", events.size());
+
+        List<CompletableFuture<Void>> applied = eventProcessor.processBatch(readable, retried::contains);
+        for (int i = 0, next = 0; i < events.size(); i++) {
+            results.add(events.get(i) != null
+                    ? applied.get(next++)
+                    : CompletableFuture.failedFuture(new IllegalArgumentException("Unreadable event")));
+        }
+
+        boolean allApplied = true;
+        for (CompletableFuture<Void> result : results) {
+            try {
+                result.join();
+            } catch (CompletionException e) {
+                allApplied = false;
+            }
+        }
+        long lastDeliveryTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+        try {
+            eventProcessor.awaitDurable();
+        } catch (IllegalStateException e) {
+            // Redelivered copies are skipped as applied, and acked once a later sync makes the log durable.
+            logger.error("Event log is not durable, requeueing batch of {} events: {}", messages.size(), e.getMessage());
+            channel.basicNack(lastDeliveryTag, true, true);
+            return;
+        }
+
+        if (allApplied) {
+            channel.basicAck(lastDeliveryTag, true);
+            return;
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            long deliveryTag = messages.get(i).getMessageProperties().getDeliveryTag();
+            if (!results.get(i).isCompletedExceptionally()) {
+                channel.basicAck(deliveryTag, false);
+                continue;
+            }
+            logger.error("Failed to process event from RabbitMQ: {}",
+                    events.get(i) != null ? events.get(i).getEventId() : messages.get(i).getMessageProperties().getMessageId());
+            Throwable failure = results.get(i).exceptionNow();
+            try {
+                if (events.get(i) != null) {
+                    deadLetterService.retryOrDeadLetter(messages.get(i), failure);
+                } else {
+                    // An unreadable message would fail the same way on every retry.
+                    deadLetterService.deadLetter(messages.get(i), failure);
+                }
+                channel.basicAck(deliveryTag, false);
+            } catch (AmqpException e) {
+                logger.error("Failed to route failed event to retry: {}", e.getMessage());
+                channel.basicNack(deliveryTag, false, true);
+            }
+        }
+    }
+
+    /**
+     * Producers choose the format per message through its content type, JSON or the binary codec.
+     */
+    private DomainEvent read(Message message) {
+        try {
+            if (BinaryEventCodec.isBinaryContentType(message.getMessageProperties().getContentType())) {
+                return BinaryEventCodec.decode(message.getBody());
+            }
+            return objectMapper.readValue(message.getBody(), DomainEvent.class);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Unreadable event from RabbitMQ: {}", e.getMessage());
+            return null;
+        }
+    }
+}
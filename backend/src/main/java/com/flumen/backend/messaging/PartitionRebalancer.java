@@ -0,0 +1,125 @@
+package com.flumen.backend.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.flumen.backend.config.RabbitMQConfig;
+import com.flumen.backend.services.GraphWriteBehind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads the partition queues over the running instances. Single-active-consumer already moves a queue to
+ * a waiting instance when its owner leaves, but never takes a queue away from an instance that holds it,
+ * so a new instance would stay idle. Every instance therefore checks how many instances consume the
+ * partitions and, if it owns more than its share, re-subscribes to the surplus queues, which moves them to
+ * the front of their waiting consumers.
+ *
+ * An instance counts a queue as owned from its first delivery until it releases it. The broker does not tell a
+ * waiting consumer from the active one, so a queue that has delivered nothing since this instance subscribed is
+ * not counted, and its surplus is only released once it does.
+ *
+ * While other instances consume partitions, each instance keeps a copy of the aggregates they own, e.g. the
+ * location an item of its own partitions moves off, and that copy goes stale. It converges on the state in
+ * OrientDB through {@link GraphWriteBehind#flushAndRefresh()} every {@code graph.refresh-interval-ms}: the
+ * write-behind only writes what changed here, field by field and connection by connection, so writing never
+ * undoes what other instances persisted, and reloading then takes over what they changed. An event checked
+ * against a stale copy, such as a move over a connection another instance just made, fails and is retried
+ * after the refresh.
+ */
+@Component
+public class PartitionRebalancer {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionRebalancer.class);
+
+    private final RabbitMQConfig rabbitMQConfig;
+    private final ItemEventListener itemEventListener;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final AmqpAdmin amqpAdmin;
+    private final GraphWriteBehind graphWriteBehind;
+    // Instances consuming the partitions as of the last rebalance.
+    private volatile int consumingInstances = 1;
+
+    public PartitionRebalancer(RabbitMQConfig rabbitMQConfig, ItemEventListener itemEventListener,
+            RabbitListenerEndpointRegistry listenerRegistry, AmqpAdmin amqpAdmin, GraphWriteBehind graphWriteBehind) {
+        this.rabbitMQConfig = rabbitMQConfig;
+        this.itemEventListener = itemEventListener;
+        this.listenerRegistry = listenerRegistry;
+        this.amqpAdmin = amqpAdmin;
+        this.graphWriteBehind = graphWriteBehind;
+    }
+
+    @Scheduled(initialDelayString = "${rabbitmq.rebalance-interval-ms:10000}",
+            fixedDelayString = "${rabbitmq.rebalance-interval-ms:10000}")
+    public void rebalance() {
+        try {
+            List<String> queues = rabbitMQConfig.partitionQueueNames();
+            int instances = 0;
+            List<String> owned = new ArrayList<>();
+            for (String queue : queues) {
+                QueueInformation information = amqpAdmin.getQueueInfo(queue);
+                if (information != null) {
+                    instances = Math.max(instances, information.getConsumerCount());
+                }
+                if (itemEventListener.owns(queue)) {
+                    owned.add(queue);
+                }
+            }
+            consumingInstances = instances;
+            if (instances <= 1) {
+                return;
+            }
+
+            int share = (queues.size() + instances - 1) / instances;
+            if (owned.size() <= share) {
+                return;
+            }
+            // Stopping waits for the batch in flight, which is applied and acked before the consumer stops.
+            List<String> released = new ArrayList<>();
+            List<MessageListenerContainer> stopped = new ArrayList<>();
+            for (String queue : owned.subList(share, owned.size())) {
+                MessageListenerContainer container =
+                        listenerRegistry.getListenerContainer(ItemEventListener.CONTAINER_ID_PREFIX + queue);
+                if (container != null) {
+                    logger.info("Releasing partition {} ({} instances, {} of {} partitions owned)",
+                            queue, instances, owned.size(), queues.size());
+                    container.stop();
+                    released.add(queue);
+                    stopped.add(container);
+                }
+            }
+            try {
+                // Persist every event this instance acked on them, so the next owner starts from it.
+                graphWriteBehind.flush();
+            } finally {
+                released.forEach(itemEventListener::release);
+                stopped.forEach(MessageListenerContainer::start);
+            }
+        } catch (Exception e) {
+            logger.warn("Partition rebalance failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Takes over what other instances persisted for the aggregates of their partitions, while there are any.
+     */
+    @Scheduled(initialDelayString = "${graph.refresh-interval-ms:30000}",
+            fixedDelayString = "${graph.refresh-interval-ms:30000}")
+    public void refreshSharedGraph() {
+        int instances = consumingInstances;
+        if (instances <= 1) {
+            return;
+        }
+        try {
+            graphWriteBehind.flushAndRefresh();
+        } catch (Exception e) {
+            logger.warn("Refreshing the graph shared with {} instances failed: {}", instances, e.getMessage());
+        }
+    }
+}
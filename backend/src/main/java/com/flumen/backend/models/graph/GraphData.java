@@ -10,6 +10,8 @@ import lombok.Data;
 
 @Data
 public class GraphData {
+    private String epoch;
+    private long version;
     private List<LocationResponse> locations;
     private List<ConnectionResponse> connections;
 
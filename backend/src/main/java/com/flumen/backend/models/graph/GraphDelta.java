@@ -0,0 +1,33 @@
+package com.flumen.backend.models.graph;
+
+import com.flumen.backend.models.response.ItemResponse;
+import com.flumen.backend.models.response.LocationResponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change to the graph. Upserts carry the full state of the entity, so applying a delta twice is harmless.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GraphDelta {
+    public enum Type { ITEM_UPSERTED, ITEM_REMOVED, LOCATION_UPSERTED, LOCATION_REMOVED }
+
+    private long version;
+    private Type type;
+    private String id;
+    private ItemResponse item;          // ITEM_UPSERTED only
+    private String locationId;          // ITEM_UPSERTED only, the location the item is on
+    private LocationResponse location;  // LOCATION_UPSERTED only, with its outgoing connections
+    private long previousVersion;       // on /topic/graph/deltas only, the version of the delta sent before it
+
+    /**
+     * @return A copy of this delta, sent right after the delta of the given version.
+     */
+    public GraphDelta sentAfter(long previousVersion) {
+        return new GraphDelta(version, type, id, item, locationId, location, previousVersion);
+    }
+}
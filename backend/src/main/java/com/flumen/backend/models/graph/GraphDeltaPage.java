@@ -0,0 +1,21 @@
+package com.flumen.backend.models.graph;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Answer to a "changes since version N" request. Either {@code deltas} holds every change after N,
+ * or, when the client is too far behind or from a previous server run, {@code snapshot} holds the full graph.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GraphDeltaPage {
+    private String epoch;
+    private long version;
+    private List<GraphDelta> deltas;
+    private GraphData snapshot;
+}
@@ -0,0 +1,22 @@
+package com.flumen.backend.models.graph;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of the graph as upsert records: all locations first, then all items, each in id order.
+ * {@code nextCursor} is null on the last page. Changes made while paging are covered by replaying the
+ * deltas after the version of the first page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GraphExportPage {
+    private String epoch;
+    private long version;
+    private List<GraphDelta> records;
+    private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.flumen.backend.models.graph;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Locations of one cell of a low-zoom viewport, summarised. The position is the centroid of the locations.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewportCluster {
+    private double latitude;
+    private double longitude;
+    private double minLatitude;
+    private double minLongitude;
+    private double maxLatitude;
+    private double maxLongitude;
+    private int locationCount;
+    private long itemCount;
+}
@@ -0,0 +1,23 @@
+package com.flumen.backend.models.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.flumen.backend.models.response.ConnectionResponse;
+import com.flumen.backend.models.response.LocationResponse;
+
+import lombok.Data;
+
+/**
+ * The part of the graph inside a viewport. Either {@code locations} and {@code connections} are filled, shaped
+ * like {@link GraphData}, or, when {@code clustered} is set, {@code clusters} summarises the locations instead.
+ */
+@Data
+public class ViewportData {
+    private String epoch;
+    private long version;
+    private boolean clustered;
+    private List<LocationResponse> locations = new ArrayList<>();
+    private List<ConnectionResponse> connections = new ArrayList<>();
+    private List<ViewportCluster> clusters = new ArrayList<>();
+}
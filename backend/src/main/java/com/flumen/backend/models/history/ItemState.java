@@ -0,0 +1,65 @@
+package com.flumen.backend.models.history;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+
+import com.flumen.backend.domain.Item;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One row of the item state history: the state of an item from {@code validFrom} until its next row.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemState {
+    private String itemId;
+    private Instant validFrom;
+    private String locationId;
+    private Double progress;
+    private Double speed;
+    private boolean active;
+    private boolean deleted;
+    private String name;
+    private Map<String, Object> properties;
+
+    public static ItemState of(Item item, Instant validFrom) {
+        return new ItemState(
+            item.getId(),
+            validFrom,
+            item.getLocation() != null ? item.getLocation().getId() : null,
+            item.getProgressInfo() != null ? item.getProgressInfo().getProgress() : null,
+            item.getSpeed(),
+            item.isActive(),
+            false,
+            item.getName(),
+            item.getProperties()
+        );
+    }
+
+    public static ItemState deleted(String itemId, Instant validFrom) {
+        ItemState state = new ItemState();
+        state.setItemId(itemId);
+        state.setValidFrom(validFrom);
+        state.setDeleted(true);
+        return state;
+    }
+
+    /**
+     * @return Whether the two states describe the same item state, ignoring when each became valid.
+     */
+    public boolean sameStateAs(ItemState other) {
+        return other != null
+                && active == other.active
+                && deleted == other.deleted
+                && Objects.equals(locationId, other.locationId)
+                && Objects.equals(progress, other.progress)
+                && Objects.equals(speed, other.speed)
+                && Objects.equals(name, other.name)
+                && Objects.equals(properties, other.properties);
+    }
+}
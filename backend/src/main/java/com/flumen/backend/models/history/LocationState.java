@@ -0,0 +1,76 @@
+package com.flumen.backend.models.history;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.flumen.backend.domain.Location;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One row of the location state history: the state of a location from {@code validFrom} until its next row.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationState {
+    private String locationId;
+    private Instant validFrom;
+    private Double latitude;
+    private Double longitude;
+    private Double length;
+    private Double speed;
+    private Boolean active;
+    private boolean deleted;
+    private String name;
+    private String type;
+    private List<String> connections;
+    private Map<String, Object> properties;
+
+    public static LocationState of(Location location, Instant validFrom) {
+        return new LocationState(
+            location.getId(),
+            validFrom,
+            location.getLatitude(),
+            location.getLongitude(),
+            location.getLength(),
+            location.getSpeed(),
+            location.getActive(),
+            false,
+            location.getName(),
+            location.getType(),
+            location.getOutboundConnectionIds().stream().sorted().toList(),
+            location.getProperties()
+        );
+    }
+
+    public static LocationState deleted(String locationId, Instant validFrom) {
+        LocationState state = new LocationState();
+        state.setLocationId(locationId);
+        state.setValidFrom(validFrom);
+        state.setDeleted(true);
+        state.setConnections(List.of());
+        return state;
+    }
+
+    /**
+     * @return Whether the two states describe the same location state, ignoring when each became valid.
+     */
+    public boolean sameStateAs(LocationState other) {
+        return other != null
+                && deleted == other.deleted
+                && Objects.equals(latitude, other.latitude)
+                && Objects.equals(longitude, other.longitude)
+                && Objects.equals(length, other.length)
+                && Objects.equals(speed, other.speed)
+                && Objects.equals(active, other.active)
+                && Objects.equals(name, other.name)
+                && Objects.equals(type, other.type)
+                && Objects.equals(connections, other.connections)
+                && Objects.equals(properties, other.properties);
+    }
+}
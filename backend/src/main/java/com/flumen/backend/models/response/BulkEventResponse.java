@@ -0,0 +1,28 @@
+package com.flumen.backend.models.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a bulk event upload. {@code errors} lists the first rejected lines, {@code rejected} counts all of them.
+ * For binary uploads, {@code line} is the position of the event in the stream.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEventResponse {
+    private long accepted;
+    private long rejected;
+    private List<LineError> errors;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineError {
+        private long line;
+        private String message;
+    }
+}
@@ -0,0 +1,18 @@
+package com.flumen.backend.models.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of the last dead-letter replay. A replay stops early when the queue runs empty.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterReplayResponse {
+    private boolean running;
+    private int requested;
+    private int replayed;
+    private int ratePerSecond;
+}
@@ -0,0 +1,35 @@
+package com.flumen.backend.models.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The head of the dead-letter queue. {@code count} is the number of messages in it, {@code messages} the first
+ * of them, left in the queue.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterResponse {
+    private long count;
+    private List<DeadLetter> messages;
+
+    /**
+     * A dead-lettered event. {@code body} is the JSON event, or the binary event in Base64.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DeadLetter {
+        private String messageId;
+        private String entityId;
+        private int attempts;
+        private String error;
+        private String failedAt;
+        private String contentType;
+        private String body;
+    }
+}
@@ -0,0 +1,248 @@
+package com.flumen.backend.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.flumen.backend.models.response.BulkEventResponse;
+import com.flumen.backend.models.response.BulkEventResponse.LineError;
+
+import flumen.events.BinaryEventCodec;
+import flumen.events.DomainEvent;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Reads newline-delimited JSON or length-prefixed binary events from a stream and feeds them to the {@link ItemEventProcessor}
+ * in batches, while the rest of the body is still arriving. Only one batch is held in memory: the next one
+ * is read once the previous one has been applied, so a slow pipeline slows down the upload. A JSON line longer
+ * than {@code events.bulk.max-line-length} characters is rejected without being held in memory.
+ */
+@Service
+public class BulkEventIngester {
+    private static final Logger logger = LoggerFactory.getLogger(BulkEventIngester.class);
+    private static final ObjectReader eventReader = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .readerFor(DomainEvent.class);
+
+    private final ItemEventProcessor eventProcessor;
+    private final int batchSize;
+    private final int maxErrors;
+    private final int maxLineLength;
+
+    public BulkEventIngester(
+            ItemEventProcessor eventProcessor,
+            @Value("${events.bulk.batch-size:1000}") int batchSize,
+            @Value("${events.bulk.max-reported-errors:100}") int maxErrors,
+            @Value("${events.bulk.max-line-length:1048576}") int maxLineLength) {
+        if (maxLineLength < 1) {
+            throw new IllegalArgumentException("events.bulk.max-line-length must be at least 1, was " + maxLineLength);
+        }
+        this.eventProcessor = eventProcessor;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * Applies every event of the stream. A line that cannot be read or applied is rejected on its own,
+     * the other lines are still applied. Returns once the accepted events are durable in the event log.
+     */
+    public BulkEventResponse ingest(InputStream body) throws IOException {
+        Batch batch = new Batch();
+        LineReader reader = new LineReader(new InputStreamReader(body, StandardCharsets.UTF_8), maxLineLength);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.next()) != null) {
+            lineNumber++;
+            if (reader.skippedTooLong) {
+                batch.reject(lineNumber, "Line is longer than " + maxLineLength + " characters");
+                continue;
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            DomainEvent event;
+            try {
+                event = eventReader.readValue(line);
+            } catch (JsonProcessingException e) {
+                batch.reject(lineNumber, e.getOriginalMessage());
+                continue;
+            }
+            batch.offer(lineNumber, event);
+        }
+        return batch.finish();
+    }
+
+    /**
+     * Same as {@link #ingest}, for a stream of length-prefixed events in the binary codec. Errors report the
+     * position of the event in the stream, starting at 1. A malformed length ends the stream, since the
+     * events after it can no longer be found.
+     */
+    public BulkEventResponse ingestBinary(InputStream body) throws IOException {
+        Batch batch = new Batch();
+        InputStream in = new BufferedInputStream(body);
+        long recordNumber = 0;
+        while (true) {
+            byte[] payload;
+            try {
+                payload = BinaryEventCodec.readDelimited(in);
+            } catch (IOException e) {
+                batch.reject(recordNumber + 1, e.getMessage());
+                break;
+            }
+            if (payload == null) {
+                break;
+            }
+            recordNumber++;
+            DomainEvent event;
+            try {
+                event = BinaryEventCodec.decode(payload);
+            } catch (IllegalArgumentException e) {
+                batch.reject(recordNumber, e.getMessage());
+                continue;
+            }
+            batch.offer(recordNumber, event);
+        }
+        return batch.finish();
+    }
+
+    private class Batch {
+        private final List<DomainEvent> events = new ArrayList<>();
+        private final List<Long> lines = new ArrayList<>();
+        private final List<LineError> errors = new ArrayList<>();
+        private long accepted;
+        private long rejected;
+
+        void offer(long line, DomainEvent event) {
+            if (event == null) {
+                reject(line, "Line holds no event");
+                return;
+            }
+            if (event.getEntityId() == null) {
+                reject(line, "Event has no entity id");
+                return;
+            }
+            lines.add(line);
+            events.add(event);
+            if (events.size() >= batchSize) {
+                apply();
+            }
+        }
+
+        BulkEventResponse finish() {
+            apply();
+            eventProcessor.awaitDurable();
+            logger.debug("Bulk upload: {} events accepted, {} rejected", accepted, rejected);
+            return new BulkEventResponse(accepted, rejected, errors);
+        }
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                errors.add(new LineError(line, message));
+            }
+        }
+
+        void apply() {
+            List<CompletableFuture<Void>> results = eventProcessor.processBatch(events);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).join();
+                    accepted++;
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    reject(lines.get(i), cause.getMessage());
+                }
+            }
+            events.clear();
+            lines.clear();
+        }
+    }
+
+    /**
+     * Reads lines ending in {@code \n} or {@code \r\n}. A line longer than the limit is skipped up to its end
+     * instead of being buffered.
+     */
+    private static final class LineReader {
+        private final Reader in;
+        private final int maxLength;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        // Whether the line last returned was longer than the limit, it is then returned empty.
+        boolean skippedTooLong;
+
+        LineReader(Reader in, int maxLength) {
+            this.in = in;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * @return The next line without its terminator, or null at the end of the stream.
+         */
+        String next() throws IOException {
+            line.setLength(0);
+            skippedTooLong = false;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = Math.max(0, in.read(buffer));
+                    position = 0;
+                    if (limit == 0) {
+                        return read ? finish() : null;
+                    }
+                }
+                read = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                append(start, position);
+                if (position < limit) {
+                    position++;
+                    return finish();
+                }
+            }
+        }
+
+        private void append(int from, int to) {
+            if (skippedTooLong) {
+                return;
+            }
+            // One more than the limit, for the carriage return of a line of exactly the limit.
+            if (line.length() + (to - from) > maxLength + 1) {
+                skippedTooLong = true;
+                line.setLength(0);
+                return;
+            }
+            line.append(buffer, from, to - from);
+        }
+
+        private String finish() {
+            if (!line.isEmpty() && line.charAt(line.length() - 1) == '\r') {
+                line.setLength(line.length() - 1);
+            }
+            if (line.length() > maxLength) {
+                skippedTooLong = true;
+                line.setLength(0);
+            }
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.flumen.backend.services;
+
+import flumen.events.DomainEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers events in a bounded in-memory ring buffer and writes them to ClickHouse in batches,
+ * flushing whenever the batch is full or the flush interval has elapsed, whichever comes first.
+ * Producers block when the buffer is full and fail once the offer timeout is exceeded.
+ */
+@Service
+public class ClickHouseEventSink {
+    private static final Logger logger = LoggerFactory.getLogger(ClickHouseEventSink.class);
+
+    private final ClickHouseService clickHouseService;
+    private final BlockingQueue<DomainEvent> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMs;
+
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushTimer;
+    private final Counter failedEvents;
+    private final Counter rejectedEvents;
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public ClickHouseEventSink(
+            ClickHouseService clickHouseService,
+            MeterRegistry meterRegistry,
+            @Value("${clickhouse.sink.capacity:100000}") int capacity,
+            @Value("${clickhouse.sink.batch-size:10000}") int batchSize,
+            @Value("${clickhouse.sink.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${clickhouse.sink.offer-timeout-ms:1000}") long offerTimeoutMs) {
+        this.clickHouseService = clickHouseService;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.offerTimeoutMs = offerTimeoutMs;
+
+        Gauge.builder("flumen.clickhouse.sink.queue.depth", buffer, BlockingQueue::size)
+                .description("Events waiting to be flushed to ClickHouse")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("flumen.clickhouse.sink.batch.size")
+                .description("Events written per ClickHouse insert")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("flumen.clickhouse.sink.flush.latency")
+                .description("Duration of a single batched ClickHouse insert")
+                .register(meterRegistry);
+        this.failedEvents = Counter.builder("flumen.clickhouse.sink.failed")
+                .description("Events lost because their batch insert failed")
+                .register(meterRegistry);
+        this.rejectedEvents = Counter.builder("flumen.clickhouse.sink.rejected")
+                .description("Events rejected because the buffer stayed full")
+                .register(meterRegistry);
+
+        this.flusher = new Thread(this::runFlushLoop, "clickhouse-sink");
+        this.flusher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+        logger.info("ClickHouse event sink started (batch size {}, flush interval {} ms).",
+                batchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+    }
+
+    /**
+     * Queues an event for the next batch. Blocks while the buffer is full.
+     * @throws IllegalStateException if no space frees up within the configured offer timeout.
+     */
+    public void enqueue(DomainEvent event) {
+        try {
+            if (!buffer.offer(event, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejectedEvents.increment();
+                throw new IllegalStateException("ClickHouse event buffer is full, rejected event " + event.getEventId());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while buffering event " + event.getEventId(), e);
+        }
+    }
+
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    /**
+     * Stops accepting new batches and drains whatever is left in the buffer before returning.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!buffer.isEmpty()) {
+            logger.warn("ClickHouse event sink stopped with {} events still buffered.", buffer.size());
+        }
+    }
+
+    private void runFlushLoop() {
+        List<DomainEvent> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Waits for the first event, then keeps collecting until the batch is full
+     * or the flush interval measured from that first event has elapsed.
+     */
+    private void fillBatch(List<DomainEvent> batch) throws InterruptedException {
+        DomainEvent first = buffer.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            buffer.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            DomainEvent next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<DomainEvent> batch) {
+        long start = System.nanoTime();
+        try {
+            clickHouseService.saveEvents(batch);
+            batchSizeSummary.record(batch.size());
+        } catch (Exception e) {
+            failedEvents.increment(batch.size());
+            logger.error("Failed to flush {} events to ClickHouse", batch.size(), e);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
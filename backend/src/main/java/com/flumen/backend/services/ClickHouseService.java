@@ -1,9 +1,20 @@
 package com.flumen.backend.services;
 
 import com.clickhouse.client.api.Client;
+import com.clickhouse.client.api.DataStreamWriter;
+import com.clickhouse.client.api.insert.InsertResponse;
+import com.clickhouse.client.api.insert.InsertSettings;
+import com.clickhouse.client.api.query.GenericRecord;
+import com.clickhouse.client.api.query.Records;
 import com.clickhouse.data.ClickHouseFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.flumen.backend.models.graph.GraphData;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.flumen.backend.models.history.ItemState;
+import com.flumen.backend.models.history.LocationState;
 
 import flumen.events.DomainEvent;
 import org.slf4j.Logger;
@@ -12,14 +23,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PreDestroy;
-import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class ClickHouseService {
@@ -27,6 +38,8 @@ public class ClickHouseService {
 
     private final Client client;
     private final ObjectMapper objectMapper;
+    private final ObjectWriter rowJsonWriter;
+    private static final TypeReference<Map<String, Object>> PROPERTIES = new TypeReference<>() {};
     private static final DateTimeFormatter CLICKHOUSE_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneOffset.UTC);
     public ClickHouseService(
@@ -36,6 +49,9 @@ public class ClickHouseService {
             ObjectMapper objectMapper
     ) {
         this.objectMapper = objectMapper;
+        this.rowJsonWriter = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
         try {
             this.client = new Client.Builder()
                     .addEndpoint(clickhouseUrl)
@@ -56,68 +72,198 @@ public class ClickHouseService {
         }
     }
 
-    public void saveEvent(DomainEvent event) {
-        try {
-            Map<String, Object> clickHouseRow = new HashMap<>();
-            String formattedTimestamp = CLICKHOUSE_FORMATTER.format(event.getTimestamp());
-            clickHouseRow.put("timestamp", formattedTimestamp);
-            clickHouseRow.put("event_type", event.getEventType());
-            clickHouseRow.put("entity_id", event.getEntityId());
-            clickHouseRow.put("event_id", event.getEventId());
-            clickHouseRow.put("data", event);
-
-            String finalJson = objectMapper.writeValueAsString(clickHouseRow);
-
-            try (var inputStream = new ByteArrayInputStream(finalJson.getBytes(StandardCharsets.UTF_8))) {
-                client.insert("Events", inputStream, ClickHouseFormat.JSONEachRow);
-            }
-
-            logger.debug("Event saved: {}", event.getEventId());
+    /**
+     * Inserts a batch of events into the 'Events' table as a single streamed JSONEachRow insert.
+     * Rows are serialized straight onto the HTTP request body, so the batch is never copied into
+     * an intermediate JSON string.
+     * @param events The events to insert, in order.
+     */
+    public void saveEvents(List<DomainEvent> events) {
+        insertRows("Events", events, this::toEventRow);
+    }
 
-        } catch (Exception e) {
-            logger.error("Error saving event {} to ClickHouse", event.getEventId(), e);
-            throw new RuntimeException("Save failed", e);
-        }
+    /**
+     * Inserts a batch of rows into the 'item_states' table.
+     */
+    public void saveItemStates(List<ItemState> states) {
+        insertRows("item_states", states, this::toItemStateRow);
     }
 
-    public void saveEventAsync(DomainEvent event) {
-        CompletableFuture.runAsync(() -> saveEvent(event))
-                .exceptionally(ex -> {
-                    logger.error("Async error saving event {}", event.getEventId(), ex);
-                    return null;
-                });
+    /**
+     * Inserts a batch of rows into the 'location_states' table.
+     */
+    public void saveLocationStates(List<LocationState> states) {
+        insertRows("location_states", states, this::toLocationStateRow);
     }
 
     /**
-     * Saves a graph snapshot to the 'snapshots' table in ClickHouse.
-     * @param snapshotId The unique ID for the snapshot.
-     * @param timestamp The time the snapshot was taken.
-     * @param graphData The graph data object to be serialized and stored.
+     * Calls the consumer with the last state of every item that became valid at or before the given instant,
+     * deleted items included, in item id order.
      */
-    public void saveSnapshot(String snapshotId, Instant timestamp, GraphData graphData) {
-        try {
-            // Create a Map that directly matches the 'snapshots' table columns.
-            Map<String, Object> clickHouseRow = new HashMap<>();
+    public void forEachItemStateAt(Instant at, Consumer<ItemState> consumer) {
+        String query = "SELECT item_id, valid_from, location_id, progress, speed, active, deleted, name, properties "
+                + "FROM item_states WHERE valid_from <= {at:DateTime64(3)} "
+                + "ORDER BY item_id, valid_from DESC LIMIT 1 BY item_id";
+        forEachRecord(query, Map.of("at", CLICKHOUSE_FORMATTER.format(at)), record -> consumer.accept(new ItemState(
+                record.getString("item_id"),
+                record.getInstant("valid_from"),
+                nullableString(record, "location_id"),
+                nullableDouble(record, "progress"),
+                nullableDouble(record, "speed"),
+                record.getBoolean("active"),
+                record.getBoolean("deleted"),
+                record.getString("name"),
+                fromJson(record.getString("properties")))));
+    }
 
-            clickHouseRow.put("snapshot_id", snapshotId);
-            clickHouseRow.put("timestamp", CLICKHOUSE_FORMATTER.format(timestamp));
-            
-            // Let Jackson serialize the rich GraphData object into a nested JSON object for the 'graph_data' column.
-            clickHouseRow.put("graph_data", graphData);
+    /**
+     * Calls the consumer with the last state of every location that became valid at or before the given
+     * instant, deleted locations included, in location id order.
+     */
+    public void forEachLocationStateAt(Instant at, Consumer<LocationState> consumer) {
+        String query = "SELECT location_id, valid_from, latitude, longitude, length, speed, active, deleted, name, type, "
+                + "connections, properties FROM location_states WHERE valid_from <= {at:DateTime64(3)} "
+                + "ORDER BY location_id, valid_from DESC LIMIT 1 BY location_id";
+        forEachRecord(query, Map.of("at", CLICKHOUSE_FORMATTER.format(at)), record -> consumer.accept(new LocationState(
+                record.getString("location_id"),
+                record.getInstant("valid_from"),
+                nullableDouble(record, "latitude"),
+                nullableDouble(record, "longitude"),
+                nullableDouble(record, "length"),
+                nullableDouble(record, "speed"),
+                record.hasValue("active") ? record.getBoolean("active") : null,
+                record.getBoolean("deleted"),
+                record.getString("name"),
+                record.getString("type"),
+                record.getList("connections"),
+                fromJson(record.getString("properties")))));
+    }
 
-            // Serialize the entire row map into a single JSON string for insertion.
-            String finalJson = objectMapper.writeValueAsString(clickHouseRow);
+    /**
+     * Streams the events with a timestamp after {@code after} and up to and including {@code until}, oldest first.
+     */
+    public void forEachEventBetween(Instant after, Instant until, Consumer<DomainEvent> consumer) {
+        String query = "SELECT toJSONString(data) AS data FROM Events "
+                + "WHERE timestamp > {after:DateTime64(3)} AND timestamp <= {until:DateTime64(3)} ORDER BY timestamp";
+        Map<String, Object> parameters = Map.of(
+                "after", CLICKHOUSE_FORMATTER.format(after),
+                "until", CLICKHOUSE_FORMATTER.format(until));
+        forEachRecord(query, parameters, record -> {
+            try {
+                consumer.accept(objectMapper.readValue(record.getString("data"), DomainEvent.class));
+            } catch (JsonProcessingException e) {
+                logger.warn("Skipping unreadable event from ClickHouse: {}", e.getOriginalMessage());
+            }
+        });
+    }
 
-            // Insert into the 'snapshots' table using the JSONEachRow format.
-            try (var inputStream = new ByteArrayInputStream(finalJson.getBytes(StandardCharsets.UTF_8))) {
-                client.insert("snapshots", inputStream, ClickHouseFormat.JSONEachRow);
+    private void forEachRecord(String query, Map<String, Object> parameters, Consumer<GenericRecord> consumer) {
+        try (Records records = client.queryRecords(query, parameters).get()) {
+            for (GenericRecord record : records) {
+                consumer.accept(record);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("ClickHouse query interrupted", e);
+        } catch (Exception e) {
+            logger.error("Error querying ClickHouse: {}", query, e);
+            throw new RuntimeException("Query failed", e);
+        }
+    }
 
-            logger.info("Successfully saved graph snapshot with ID: {}", snapshotId);
+    private static String nullableString(GenericRecord record, String column) {
+        return record.hasValue(column) ? record.getString(column) : null;
+    }
+
+    private static Double nullableDouble(GenericRecord record, String column) {
+        return record.hasValue(column) ? record.getDouble(column) : null;
+    }
 
+    private <T> void insertRows(String table, List<T> values, Function<T, Map<String, Object>> toRow) {
+        if (values.isEmpty()) {
+            return;
+        }
+        DataStreamWriter rowWriter = out -> {
+            try (SequenceWriter sequence = rowJsonWriter.writeValues(out)) {
+                for (T value : values) {
+                    sequence.write(toRow.apply(value));
+                }
+            }
+        };
+        try (InsertResponse response = client.insert(table, rowWriter, ClickHouseFormat.JSONEachRow, new InsertSettings()).get()) {
+            logger.debug("Saved {} rows to ClickHouse table {}", response.getWrittenRows(), table);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Batch save to " + table + " interrupted", e);
         } catch (Exception e) {
-            logger.error("Error saving snapshot {} to ClickHouse", snapshotId, e);
-            throw new RuntimeException("Snapshot save failed", e);
+            logger.error("Error saving batch of {} rows to ClickHouse table {}", values.size(), table, e);
+            throw new RuntimeException("Save failed", e);
+        }
+    }
+
+    private Map<String, Object> toEventRow(DomainEvent event) {
+        Map<String, Object> clickHouseRow = new HashMap<>();
+        clickHouseRow.put("timestamp", CLICKHOUSE_FORMATTER.format(event.getTimestamp()));
+        clickHouseRow.put("event_type", event.getEventType());
+        clickHouseRow.put("entity_id", event.getEntityId());
+        clickHouseRow.put("event_id", event.getEventId());
+        clickHouseRow.put("data", event);
+        return clickHouseRow;
+    }
+
+    private Map<String, Object> toItemStateRow(ItemState state) {
+        Map<String, Object> clickHouseRow = new HashMap<>();
+        clickHouseRow.put("item_id", state.getItemId());
+        clickHouseRow.put("valid_from", CLICKHOUSE_FORMATTER.format(state.getValidFrom()));
+        clickHouseRow.put("location_id", state.getLocationId());
+        clickHouseRow.put("progress", state.getProgress());
+        clickHouseRow.put("speed", state.getSpeed());
+        clickHouseRow.put("active", state.isActive());
+        clickHouseRow.put("deleted", state.isDeleted());
+        clickHouseRow.put("name", state.getName() != null ? state.getName() : "");
+        clickHouseRow.put("properties", toJson(state.getProperties()));
+        return clickHouseRow;
+    }
+
+    private Map<String, Object> toLocationStateRow(LocationState state) {
+        Map<String, Object> clickHouseRow = new HashMap<>();
+        clickHouseRow.put("location_id", state.getLocationId());
+        clickHouseRow.put("valid_from", CLICKHOUSE_FORMATTER.format(state.getValidFrom()));
+        clickHouseRow.put("latitude", state.getLatitude());
+        clickHouseRow.put("longitude", state.getLongitude());
+        clickHouseRow.put("length", state.getLength());
+        clickHouseRow.put("speed", state.getSpeed());
+        clickHouseRow.put("active", state.getActive());
+        clickHouseRow.put("deleted", state.isDeleted());
+        clickHouseRow.put("name", state.getName() != null ? state.getName() : "");
+        clickHouseRow.put("type", state.getType() != null ? state.getType() : "");
+        clickHouseRow.put("connections", state.getConnections());
+        clickHouseRow.put("properties", toJson(state.getProperties()));
+        return clickHouseRow;
+    }
+
+    private Map<String, Object> fromJson(String properties) {
+        if (properties == null || properties.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(properties, PROPERTIES);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable properties in ClickHouse: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    /**
+     * Properties are stored as a JSON string, an empty string standing for none.
+     */
+    private String toJson(Map<String, Object> properties) {
+        if (properties == null) {
+            return "";
+        }
+        try {
+            return objectMapper.writeValueAsString(properties);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Properties cannot be written as JSON", e);
         }
     }
-}
\ No newline at end of file
+}
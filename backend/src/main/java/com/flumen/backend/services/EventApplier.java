@@ -0,0 +1,86 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import flumen.events.DomainEvent;
+import flumen.events.ItemActivatedEvent;
+import flumen.events.ItemCreatedEvent;
+import flumen.events.ItemDeactivatedEvent;
+import flumen.events.ItemPositionChangedEvent;
+import flumen.events.ItemPropertiesUpdatedEvent;
+import flumen.events.ItemSpeedChangedEvent;
+import flumen.events.LocationConnectionCreatedEvent;
+import flumen.events.LocationCreatedEvent;
+import flumen.events.LocationPropertiesUpdatedEvent;
+
+import java.util.function.Consumer;
+
+/**
+ * The domain logic of every event, shared by the live graph in {@link ItemEventProcessor} and the detached
+ * graphs rebuilt by {@link GraphHistoryService}, so that both change the graph the same way.
+ */
+final class EventApplier {
+
+    /**
+     * The entities events are applied to. An implementation decides what an event about an entity it does not
+     * have does: the live graph fails it, a detached graph skips it.
+     */
+    interface Entities {
+        void addItem(Item item);
+
+        void addLocation(Location location);
+
+        /**
+         * @return The location an event refers to, or null to skip the event.
+         */
+        Location location(String id);
+
+        void updateItem(String id, Consumer<Item> change);
+
+        void updateLocation(String id, Consumer<Location> change);
+    }
+
+    private EventApplier() {
+    }
+
+    /**
+     * @return Whether the event is of a type this applier knows.
+     */
+    static boolean apply(DomainEvent event, Entities entities) {
+        switch (event) {
+            case ItemCreatedEvent e -> entities.addItem(new Item(e));
+
+            case ItemPositionChangedEvent e -> {
+                Location location = entities.location(e.getLocationId());
+                if (location != null) {
+                    entities.updateItem(e.getEntityId(), i -> i.updatePosition(location, e.getTimestamp()));
+                }
+            }
+
+            case ItemSpeedChangedEvent e -> entities.updateItem(e.getEntityId(), i -> i.updateSpeed(e));
+
+            case ItemDeactivatedEvent e -> entities.updateItem(e.getEntityId(), i -> i.stop(e.getTimestamp()));
+
+            case ItemActivatedEvent e -> entities.updateItem(e.getEntityId(), i -> i.resume(e.getTimestamp()));
+
+            case ItemPropertiesUpdatedEvent e -> entities.updateItem(e.getEntityId(), i -> i.updateProperties(e));
+
+            case LocationCreatedEvent e -> entities.addLocation(new Location(e));
+
+            case LocationPropertiesUpdatedEvent e -> entities.updateLocation(e.getEntityId(), l -> l.updateProperties(e));
+
+            case LocationConnectionCreatedEvent e -> {
+                // A connection to an unknown location could never be written, so the event is failed or skipped.
+                Location target = entities.location(e.getLocation2Id());
+                if (target != null) {
+                    entities.updateLocation(e.getEntityId(), l -> l.addConnectionTo(target.getId()));
+                }
+            }
+
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+}
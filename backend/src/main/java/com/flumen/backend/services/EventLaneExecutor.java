@@ -0,0 +1,131 @@
+package com.flumen.backend.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs event handling on a fixed set of single-threaded lanes. Work is routed by hashing its entity id,
+ * so everything for one entity runs in submission order while different entities run in parallel.
+ * A full lane blocks the submitter instead of dropping or reordering work.
+ */
+@Service
+public class EventLaneExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(EventLaneExecutor.class);
+
+    private final ThreadPoolExecutor[] lanes;
+    private final Timer[] latencies;
+
+    public EventLaneExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${events.lanes.count:0}") int laneCount,
+            @Value("${events.lanes.capacity:10000}") int laneCapacity) {
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new ThreadPoolExecutor[count];
+        this.latencies = new Timer[count];
+
+        for (int i = 0; i < count; i++) {
+            String laneName = "event-lane-" + i;
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(laneCapacity),
+                    runnable -> new Thread(runnable, laneName),
+                    EventLaneExecutor::blockUntilQueued);
+            lanes[i] = lane;
+
+            String laneTag = Integer.toString(i);
+            Gauge.builder("flumen.events.lane.depth", lane, l -> l.getQueue().size())
+                    .description("Tasks waiting in a processing lane, each the batch of one entity's events")
+                    .tag("lane", laneTag)
+                    .register(meterRegistry);
+            latencies[i] = Timer.builder("flumen.events.lane.latency")
+                    .description("Time spent running one task in a processing lane, the batch of one entity's events")
+                    .tag("lane", laneTag)
+                    .register(meterRegistry);
+        }
+        logger.info("Started {} event processing lanes.", count);
+    }
+
+    /**
+     * Queues a task on the lane that owns the given entity.
+     * @param entityId The id used to pick the lane. Tasks with the same id never run concurrently or out of order.
+     * @param task The work to run.
+     * @return A future completed when the task has run, or exceptionally if it threw.
+     */
+    public CompletableFuture<Void> submit(String entityId, Runnable task) {
+        int index = laneFor(entityId);
+        Timer latency = latencies[index];
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        lanes[index].execute(() -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+                result.complete(null);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+        return result;
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public int getQueueDepth(int lane) {
+        return lanes[lane].getQueue().size();
+    }
+
+    int laneFor(String entityId) {
+        if (entityId == null) {
+            return 0;
+        }
+        int hash = entityId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    /**
+     * Lets every lane finish the work already queued before the application context goes away.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            try {
+                if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                    logger.warn("Event lane did not drain in time, {} events dropped.", lane.shutdownNow().size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.shutdownNow();
+            }
+        }
+    }
+
+    private static void blockUntilQueued(Runnable runnable, ThreadPoolExecutor lane) {
+        if (lane.isShutdown()) {
+            throw new RejectedExecutionException("Event lane is shut down");
+        }
+        try {
+            lane.getQueue().put(runnable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for space in an event lane", e);
+        }
+    }
+}
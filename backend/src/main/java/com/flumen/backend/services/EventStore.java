@@ -2,70 +2,50 @@ package com.flumen.backend.services;
 
 import flumen.events.DomainEvent;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.orientechnologies.orient.core.db.ODatabaseSession;
-import com.orientechnologies.orient.core.record.OVertex;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Service;
-
-import java.util.ArrayList;
 import java.util.List;
-
-@Service
-public class EventStore {
-    
-    private final OrientDBService orientDBService;
-    private static final ObjectMapper objectMapper = new ObjectMapper()
-            .registerModule(new JavaTimeModule());
-    @Autowired
-    public EventStore(OrientDBService orientDBService) {
-        this.orientDBService = orientDBService;
-        initializeEventStore();
-    }
-
-    private void initializeEventStore() {
-        orientDBService.withSession(session -> {
-            if (session.getClass("Event") == null) {
-                session.createVertexClass("Event");
-            }
-        });
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of every event the backend has accepted. The backend is chosen with
+ * {@code eventstore.backend}: {@code file} (default) keeps a memory-mapped segment log on local disk,
+ * {@code orientdb} stores each event as an Event vertex.
+ */
+public interface EventStore {
+
+    void saveEvents(String aggregateId, List<DomainEvent> events);
+
+    /**
+     * @return Every stored event of the entity, oldest first.
+     */
+    List<DomainEvent> getEventsForEntity(String entityId);
+
+    /**
+     * Blocks until every event saved so far survives a crash. Stores that are durable as soon as
+     * {@link #saveEvents} returns have nothing to wait for.
+     */
+    default void awaitDurable() {
     }
 
-    public void saveEvents(String aggregateId, List<DomainEvent> events) {
-        orientDBService.withSession(session -> {
-            for (DomainEvent event : events) {
-                saveEvent(session, event);
-            }
-        });
+    /**
+     * @return Whether events can be read back in the order they were stored, see {@link #replayAfter}.
+     */
+    default boolean isReplayable() {
+        return false;
     }
 
-    private void saveEvent(ODatabaseSession session, DomainEvent event) {
-        OVertex eventVertex = session.newVertex("Event");
-        eventVertex.setProperty("eventId", event.getEventId());
-        eventVertex.setProperty("entityId", event.getEntityId());
-        eventVertex.setProperty("timestamp", event.getTimestamp());
-        eventVertex.setProperty("eventType", event.getEventType());
-        String eventDataJson;
-        try {
-            eventDataJson = objectMapper.writeValueAsString(event);
-            eventVertex.setProperty("eventData", eventDataJson);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-        }
-        eventVertex.save();
+    /**
+     * @return The position of the last stored event, or -1 if there is none. Positions grow with every event.
+     */
+    default long lastPosition() {
+        return -1;
     }
 
-    public List<DomainEvent> getEventsForEntity(String entityId) {
-        List<DomainEvent> events = new ArrayList<>();
-        orientDBService.withSession(session -> {
-            String query = "SELECT FROM Event WHERE entityId = ? ORDER BY timestamp ASC";
-            session.query(query, entityId).stream().forEach(result -> {
-                OVertex vertex = result.getVertex().get();
-                events.add((DomainEvent) vertex.getProperty("eventData"));
-            });
-        });
-        return events;
+    /**
+     * Calls the consumer with every event stored after the given position, in the order they were stored.
+     * Only stores that are {@link #isReplayable()} support this; graph checkpoints are disabled for the others,
+     * since a checkpoint could not be brought up to date after a restart.
+     */
+    default void replayAfter(long position, Consumer<DomainEvent> consumer) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot replay events by position");
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,415 @@
+package com.flumen.backend.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.domain.ProgressInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes checkpoints of the whole graph on local disk. A checkpoint holds every location and item
+ * together with the position of the last event in the event log it covers.
+ *
+ * The file is laid out as {@code [int magic][int version][long eventPosition][long takenAtMillis]
+ * [int locationCount][locations][int itemCount][items][int crc32c]}, the checksum covering everything before it.
+ * Strings are a length followed by UTF-8 bytes, -1 for null; nullable numbers are preceded by a presence byte;
+ * properties are embedded as JSON. Items refer to their location by id.
+ *
+ * Files are written under a temporary name and moved into place once forced to disk, so a crash never leaves a
+ * partial checkpoint under a final name. Checkpoints are only kept with an event store that can replay the
+ * events after them, see {@link EventStore#isReplayable()}.
+ *
+ * Changes that are not in the event log, such as those made through the REST API, are only in OrientDB until a
+ * checkpoint covers them. A marker file records that OrientDB is ahead of the newest checkpoint meanwhile.
+ */
+@Component
+public class GraphCheckpointFiles {
+    private static final Logger logger = LoggerFactory.getLogger(GraphCheckpointFiles.class);
+
+    private static final String PREFIX = "graph-";
+    private static final String SUFFIX = ".ckpt";
+    private static final String AHEAD_MARKER = "database-ahead";
+    private static final int MAGIC = 0x464C434B;
+    private static final int VERSION = 1;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> PROPERTIES = new TypeReference<>() {};
+
+    public record Checkpoint(long eventPosition, Instant takenAt, List<Location> locations, List<Item> items) {}
+
+    private final Path directory;
+    private final int retain;
+    private final boolean enabled;
+    // Changes recorded as missing from the event log, and whether the marker is on disk, guarded by this.
+    private long unloggedChanges;
+    private boolean markedAhead;
+
+    public GraphCheckpointFiles(
+            @Value("${graph.checkpoint.directory:data/checkpoints}") String directory,
+            @Value("${graph.checkpoint.retain:2}") int retain,
+            @Value("${graph.checkpoint.enabled:true}") boolean enabled,
+            EventStore eventStore) {
+        this.directory = Path.of(directory);
+        this.retain = Math.max(1, retain);
+        this.enabled = enabled && eventStore.isReplayable();
+        if (enabled && !this.enabled) {
+            logger.info("Graph checkpoints disabled, {} cannot replay the events after them.",
+                    eventStore.getClass().getSimpleName());
+        }
+        this.markedAhead = Files.exists(this.directory.resolve(AHEAD_MARKER));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The newest readable checkpoint, or null if there is none. Unreadable files are skipped.
+     */
+    public Checkpoint loadLatest() {
+        if (!enabled) {
+            return null;
+        }
+        List<Path> files = list();
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try {
+                return read(files.get(i));
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping unreadable graph checkpoint {}: {}", files.get(i).getFileName(), e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Whether OrientDB holds changes that the newest checkpoint and the event log after it miss.
+     */
+    public boolean isDatabaseAhead() {
+        return enabled && Files.exists(directory.resolve(AHEAD_MARKER));
+    }
+
+    /**
+     * Records a change that is not in the event log, once it is applied to the graph. The marker is forced to
+     * disk before this returns, so a restart before the next checkpoint knows to hydrate from OrientDB.
+     */
+    public synchronized void markDatabaseAhead() {
+        if (!enabled) {
+            return;
+        }
+        unloggedChanges++;
+        if (markedAhead) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(directory.resolve(AHEAD_MARKER),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            markedAhead = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not record a change missing from the event log", e);
+        }
+    }
+
+    /**
+     * @return The number of changes recorded by {@link #markDatabaseAhead()} so far, to pass to
+     *         {@link #clearDatabaseAhead(long)} once the graph copied after reading it is checkpointed.
+     */
+    public synchronized long unloggedChanges() {
+        return unloggedChanges;
+    }
+
+    /**
+     * Removes the marker after a checkpoint, unless changes were recorded since the graph was copied for it.
+     */
+    public synchronized void clearDatabaseAhead(long coveredChanges) {
+        if (!markedAhead || unloggedChanges != coveredChanges) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(AHEAD_MARKER));
+            markedAhead = false;
+        } catch (IOException e) {
+            logger.warn("Could not remove the graph checkpoint marker {}: {}", AHEAD_MARKER, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a new checkpoint and deletes the oldest ones beyond {@code graph.checkpoint.retain}.
+     * @return The size of the written file in bytes.
+     */
+    public long write(long eventPosition, List<Location> locations, List<Item> items) {
+        Instant takenAt = Instant.now();
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, takenAt.toEpochMilli(), SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temporary,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                CRC32C crc = new CRC32C();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new ChecksumOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(eventPosition);
+                out.writeLong(takenAt.toEpochMilli());
+                out.writeInt(locations.size());
+                for (Location location : locations) {
+                    writeLocation(out, location);
+                }
+                out.writeInt(items.size());
+                for (Item item : items) {
+                    writeItem(out, item);
+                }
+                out.flush();
+                out.writeInt((int) crc.getValue());
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            long size = Files.size(target);
+            prune();
+            return size;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write graph checkpoint " + target, e);
+        }
+    }
+
+    // ---- Writing ----
+
+    private static void writeLocation(DataOutputStream out, Location location) throws IOException {
+        writeString(out, location.getId());
+        writeString(out, location.getName());
+        writeDouble(out, location.getLatitude());
+        writeDouble(out, location.getLongitude());
+        writeDouble(out, location.getLength());
+        writeDouble(out, location.getSpeed());
+        writeString(out, location.getType());
+        out.writeByte(location.getActive() == null ? 0 : location.getActive() ? 2 : 1);
+        writeProperties(out, location.getProperties());
+        out.writeInt(location.getOutboundConnectionIds().size());
+        for (String target : location.getOutboundConnectionIds()) {
+            writeString(out, target);
+        }
+    }
+
+    private static void writeItem(DataOutputStream out, Item item) throws IOException {
+        writeString(out, item.getId());
+        writeString(out, item.getName());
+        writeDouble(out, item.getSpeed());
+        out.writeBoolean(item.isActive());
+        writeProperties(out, item.getProperties());
+        writeString(out, item.getLocation() != null ? item.getLocation().getId() : null);
+        ProgressInfo progress = item.getProgressInfo();
+        out.writeBoolean(progress != null);
+        if (progress != null) {
+            writeDouble(out, progress.getProgress());
+            out.writeBoolean(progress.getDatetime() != null);
+            if (progress.getDatetime() != null) {
+                out.writeLong(progress.getDatetime().getEpochSecond());
+                out.writeInt(progress.getDatetime().getNano());
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static void writeProperties(DataOutputStream out, Map<String, Object> properties) throws IOException {
+        writeString(out, properties != null ? objectMapper.writeValueAsString(properties) : null);
+    }
+
+    // ---- Reading ----
+
+    /**
+     * Maps the file and decodes it. Items are linked to the decoded location instances.
+     */
+    private static Checkpoint read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < Integer.BYTES * 2 || buffer.getInt(0) != MAGIC) {
+                throw new IllegalStateException("not a graph checkpoint");
+            }
+            if (buffer.getInt(Integer.BYTES) != VERSION) {
+                throw new IllegalStateException("unsupported version " + buffer.getInt(Integer.BYTES));
+            }
+            int bodyLength = buffer.limit() - Integer.BYTES;
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, bodyLength));
+            if ((int) crc.getValue() != buffer.getInt(bodyLength)) {
+                throw new IllegalStateException("checksum mismatch");
+            }
+
+            buffer.position(Integer.BYTES * 2);
+            long eventPosition = buffer.getLong();
+            Instant takenAt = Instant.ofEpochMilli(buffer.getLong());
+
+            int locationCount = buffer.getInt();
+            List<Location> locations = new ArrayList<>(locationCount);
+            Map<String, Location> locationsById = new HashMap<>(locationCount * 2);
+            for (int i = 0; i < locationCount; i++) {
+                Location location = readLocation(buffer);
+                locations.add(location);
+                locationsById.put(location.getId(), location);
+            }
+            int itemCount = buffer.getInt();
+            List<Item> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                items.add(readItem(buffer, locationsById));
+            }
+            return new Checkpoint(eventPosition, takenAt, locations, items);
+        }
+    }
+
+    private static Location readLocation(ByteBuffer buffer) throws IOException {
+        String id = readString(buffer);
+        String name = readString(buffer);
+        Double latitude = readDouble(buffer);
+        Double longitude = readDouble(buffer);
+        Double length = readDouble(buffer);
+        Double speed = readDouble(buffer);
+        String type = readString(buffer);
+        byte active = buffer.get();
+        Location location = new Location(id, name, latitude, longitude, length, speed, type,
+                active == 0 ? null : active == 2, readProperties(buffer));
+        int connections = buffer.getInt();
+        for (int i = 0; i < connections; i++) {
+            location.addConnectionTo(readString(buffer));
+        }
+        return location;
+    }
+
+    private static Item readItem(ByteBuffer buffer, Map<String, Location> locationsById) throws IOException {
+        String id = readString(buffer);
+        String name = readString(buffer);
+        Double speed = readDouble(buffer);
+        boolean active = buffer.get() != 0;
+        Map<String, Object> properties = readProperties(buffer);
+        String locationId = readString(buffer);
+        ProgressInfo progress = null;
+        if (buffer.get() != 0) {
+            Double value = readDouble(buffer);
+            Instant datetime = buffer.get() != 0 ? Instant.ofEpochSecond(buffer.getLong(), buffer.getInt()) : null;
+            progress = new ProgressInfo(value, datetime);
+        }
+        Location location = locationId != null ? locationsById.get(locationId) : null;
+        return new Item(id, name, speed, active, properties, location, location != null ? progress : null);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Double readDouble(ByteBuffer buffer) {
+        return buffer.get() != 0 ? buffer.getDouble() : null;
+    }
+
+    private static Map<String, Object> readProperties(ByteBuffer buffer) throws IOException {
+        String json = readString(buffer);
+        return json != null ? objectMapper.readValue(json, PROPERTIES) : null;
+    }
+
+    // ---- Files ----
+
+    private List<Path> list() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list graph checkpoints in " + directory, e);
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> files = list();
+        for (Path file : files.subList(0, Math.max(0, files.size() - retain))) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Updates a checksum with every byte written through it.
+     */
+    private static final class ChecksumOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final CRC32C crc;
+
+        ChecksumOutputStream(OutputStream target, CRC32C crc) {
+            this.target = target;
+            this.crc = crc;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            crc.update(b);
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            crc.update(bytes, offset, length);
+            target.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+    }
+}
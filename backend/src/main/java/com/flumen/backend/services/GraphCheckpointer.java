@@ -0,0 +1,118 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps startup independent of the length of the event history. The whole graph is checkpointed to local disk
+ * on a fixed delay and at shutdown; at startup the {@link GraphStore} hydrates from the newest checkpoint and
+ * this service replays only the events stored after it, before any new event is consumed.
+ *
+ * Changes made through the REST API are not in the event log. They reach OrientDB through the write-behind, and
+ * until a checkpoint covers them the {@link GraphCheckpointFiles} mark OrientDB as ahead, so that a restart
+ * hydrates from OrientDB instead of the checkpoint and replays the events after it on top.
+ */
+@Service
+public class GraphCheckpointer {
+    private static final Logger logger = LoggerFactory.getLogger(GraphCheckpointer.class);
+
+    private final GraphStore graphStore;
+    private final GraphWriteBehind graphWriteBehind;
+    private final GraphCheckpointFiles checkpointFiles;
+    private final EventStore eventStore;
+    private final ItemEventProcessor eventProcessor;
+    private final Timer writeTimer;
+
+    public GraphCheckpointer(GraphStore graphStore, GraphWriteBehind graphWriteBehind,
+            GraphCheckpointFiles checkpointFiles, EventStore eventStore, ItemEventProcessor eventProcessor,
+            MeterRegistry meterRegistry) {
+        this.graphStore = graphStore;
+        this.graphWriteBehind = graphWriteBehind;
+        this.checkpointFiles = checkpointFiles;
+        this.eventStore = eventStore;
+        this.eventProcessor = eventProcessor;
+        this.writeTimer = Timer.builder("flumen.graph.checkpoint.write")
+                .description("Time to write one checkpoint of the graph to disk")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs before the listener containers start, so the replayed events are applied before new ones.
+     */
+    @PostConstruct
+    public void replayTail() {
+        Long position = graphStore.getCheckpointPosition();
+        if (position == null) {
+            // Hydrated from OrientDB without a checkpoint, so there is no position in the event log to replay from.
+            return;
+        }
+        if (!eventStore.isReplayable()) {
+            throw new IllegalStateException("Hydrated from a checkpoint, but "
+                    + eventStore.getClass().getSimpleName() + " cannot replay the events after it");
+        }
+        long start = System.nanoTime();
+        AtomicLong replayed = new AtomicLong();
+        eventStore.replayAfter(position, event -> {
+            eventProcessor.replay(event);
+            replayed.incrementAndGet();
+        });
+        logger.info("Replayed {} events after position {} in {} ms.",
+                replayed.get(), position, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Records a change made outside the event log, after it is applied to the graph.
+     */
+    public void recordUnloggedChange() {
+        checkpointFiles.markDatabaseAhead();
+    }
+
+    /**
+     * Writes a checkpoint covering every event stored so far. Lanes store events only after applying them, so
+     * every event up to the position read first is already in the graph. Events applied while the graph is
+     * copied may be in the checkpoint as well; those that get stored are replayed after a restart, which leaves
+     * them as they were, and those whose append fails are retried.
+     */
+    @Scheduled(initialDelayString = "${graph.checkpoint.interval-ms:60000}",
+            fixedDelayString = "${graph.checkpoint.interval-ms:60000}")
+    public void checkpoint() {
+        if (!checkpointFiles.isEnabled()) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            long position = eventStore.lastPosition();
+            long unloggedChanges = checkpointFiles.unloggedChanges();
+            List<Location> locations = graphStore.getAllLocations();
+            List<Item> items = graphStore.getAllItems();
+            // OrientDB must hold at least the checkpointed state, it is not rewritten after hydrating from it.
+            graphWriteBehind.flush();
+            long size = checkpointFiles.write(position, locations, items);
+            checkpointFiles.clearDatabaseAhead(unloggedChanges);
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            logger.debug("Checkpointed {} locations and {} items at event position {} ({} bytes).",
+                    locations.size(), items.size(), position, size);
+        } catch (Exception e) {
+            logger.error("Graph checkpoint failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpoint();
+    }
+}
@@ -0,0 +1,164 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.models.graph.GraphDelta;
+import com.flumen.backend.models.response.ConnectionResponse;
+import com.flumen.backend.models.response.LocationResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Numbers every change made to the {@link GraphStore} with a monotonically increasing version and keeps the most
+ * recent ones in a ring buffer. Recording a change only touches the ring; the {@link WebSocketService} flusher
+ * takes the new deltas from it and pushes them to subscribers in version order.
+ *
+ * Versions restart from zero with every process; the epoch identifies the run they belong to.
+ *
+ * Items change with every position event, so the flusher only sends the newest delta of each item among the
+ * ones it takes; upserts carry the full state, so the newest one covers the others. Every sent delta names the
+ * version sent before it, so subscribers tell conflated versions from missed ones, which /api/graph/deltas
+ * still serves one by one.
+ */
+@Service
+public class GraphDeltaLog {
+
+    private final String epoch = UUID.randomUUID().toString();
+    private final GraphDelta[] ring;
+    private long version;
+    private long sentVersion;
+
+    public GraphDeltaLog(WebSocketService webSocketService, @Value("${graph.deltas.capacity:100000}") int capacity) {
+        this.ring = new GraphDelta[capacity];
+        webSocketService.publishGraphDeltasFrom(this::takeUnsent);
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public synchronized long currentVersion() {
+        return version;
+    }
+
+    public void itemUpserted(Item item) {
+        publish(itemUpsert(item));
+    }
+
+    public void itemRemoved(String id) {
+        GraphDelta delta = new GraphDelta();
+        delta.setType(GraphDelta.Type.ITEM_REMOVED);
+        delta.setId(id);
+        publish(delta);
+    }
+
+    public void locationUpserted(Location location) {
+        publish(locationUpsert(location));
+    }
+
+    public void locationRemoved(String id) {
+        GraphDelta delta = new GraphDelta();
+        delta.setType(GraphDelta.Type.LOCATION_REMOVED);
+        delta.setId(id);
+        publish(delta);
+    }
+
+    /**
+     * @return Every delta with a version greater than {@code since}, oldest first, or null when some of them
+     * have already been overwritten and the caller has to start again from a full snapshot.
+     */
+    public synchronized List<GraphDelta> since(long since) {
+        long oldest = Math.max(1, version - ring.length + 1);
+        if (since > version || since < oldest - 1) {
+            return null;
+        }
+        List<GraphDelta> deltas = new ArrayList<>((int) (version - since));
+        for (long v = since + 1; v <= version; v++) {
+            deltas.add(ring[(int) (v % ring.length)]);
+        }
+        return deltas;
+    }
+
+    /**
+     * The unversioned upsert carrying the current state of the item. The caller must hold its monitor
+     * or pass a detached copy.
+     */
+    static GraphDelta itemUpsert(Item item) {
+        GraphDelta delta = new GraphDelta();
+        delta.setType(GraphDelta.Type.ITEM_UPSERTED);
+        delta.setId(item.getId());
+        delta.setItem(GraphService.toItemResponse(item));
+        delta.setLocationId(item.getLocation() != null ? item.getLocation().getId() : null);
+        return delta;
+    }
+
+    /**
+     * The unversioned upsert carrying the current state of the location and its outgoing connections.
+     * The caller must hold its monitor or pass a detached copy.
+     */
+    static GraphDelta locationUpsert(Location location) {
+        LocationResponse response = GraphService.toLocationResponse(location);
+        List<ConnectionResponse> connections = new ArrayList<>();
+        for (String targetId : location.getOutboundConnectionIds()) {
+            connections.add(new ConnectionResponse(location.getId(), targetId, "out", null));
+        }
+        response.setConnections(connections);
+
+        GraphDelta delta = new GraphDelta();
+        delta.setType(GraphDelta.Type.LOCATION_UPSERTED);
+        delta.setId(location.getId());
+        delta.setLocation(response);
+        return delta;
+    }
+
+    /**
+     * @return The deltas recorded since the previous call, oldest first, with only the newest delta of each
+     * item. Deltas already overwritten in the ring are left out, which subscribers see as a gap: the first
+     * delta then names a previous version they have not seen.
+     */
+    List<GraphDelta> takeUnsent() {
+        long from;
+        List<GraphDelta> taken;
+        synchronized (this) {
+            from = Math.max(sentVersion, version - ring.length);
+            taken = new ArrayList<>((int) (version - from));
+            for (long v = from + 1; v <= version; v++) {
+                taken.add(ring[(int) (v % ring.length)]);
+            }
+            sentVersion = version;
+        }
+
+        Map<String, Long> newestItemVersions = new HashMap<>();
+        for (GraphDelta delta : taken) {
+            if (isItemDelta(delta)) {
+                newestItemVersions.put(delta.getId(), delta.getVersion());
+            }
+        }
+        List<GraphDelta> deltas = new ArrayList<>(taken.size());
+        long previous = from;
+        for (GraphDelta delta : taken) {
+            if (isItemDelta(delta) && newestItemVersions.get(delta.getId()) != delta.getVersion()) {
+                continue;
+            }
+            deltas.add(delta.sentAfter(previous));
+            previous = delta.getVersion();
+        }
+        return deltas;
+    }
+
+    private static boolean isItemDelta(GraphDelta delta) {
+        return delta.getType() == GraphDelta.Type.ITEM_UPSERTED || delta.getType() == GraphDelta.Type.ITEM_REMOVED;
+    }
+
+    private synchronized void publish(GraphDelta delta) {
+        delta.setVersion(++version);
+        ring[(int) (version % ring.length)] = delta;
+    }
+}
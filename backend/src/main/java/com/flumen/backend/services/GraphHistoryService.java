@@ -0,0 +1,164 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.domain.ProgressInfo;
+import com.flumen.backend.models.graph.GraphData;
+import com.flumen.backend.models.history.ItemState;
+import com.flumen.backend.models.history.LocationState;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reconstructs the graph as it was at a past instant from the state history in ClickHouse.
+ *
+ * The state history has the resolution of its write interval, so the graph is rebuilt in two steps: the last
+ * state of every entity at the start of the interval containing the instant, then the events logged from
+ * shortly before that start up to the instant, applied with the {@link EventApplier} the live graph uses.
+ * Events set state and carry their own timestamps, so applying one the history already reflects is harmless.
+ *
+ * The states at an interval start are kept in an LRU cache, so scrubbing through a timeline only reads the
+ * events of the interval from ClickHouse.
+ */
+@Service
+public class GraphHistoryService {
+    private static final Logger logger = LoggerFactory.getLogger(GraphHistoryService.class);
+
+    private record Base(List<LocationState> locations, List<ItemState> items) {}
+
+    private final ClickHouseService clickHouseService;
+    private final Duration interval;
+    private final Map<Instant, Base> bases;
+
+    public GraphHistoryService(ClickHouseService clickHouseService,
+            @Value("${clickhouse.state-history.interval-ms:10000}") long intervalMs,
+            @Value("${graph.history.cache-size:8}") int cacheSize) {
+        this.clickHouseService = clickHouseService;
+        this.interval = Duration.ofMillis(intervalMs);
+        this.bases = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Instant, Base> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return The graph at the given instant, without epoch or version.
+     */
+    public GraphData getGraphDataAt(Instant at) {
+        Instant now = Instant.now();
+        if (at.isAfter(now)) {
+            throw new IllegalArgumentException("Cannot reconstruct the graph at " + at + ", it is in the future");
+        }
+        Instant start = Instant.ofEpochMilli(at.toEpochMilli() - Math.floorMod(at.toEpochMilli(), interval.toMillis()));
+        Base base = base(start, now);
+
+        Map<String, Location> locations = new HashMap<>();
+        for (LocationState state : base.locations()) {
+            Location location = new Location(state.getLocationId(), state.getName(), state.getLatitude(),
+                    state.getLongitude(), state.getLength(), state.getSpeed(), state.getType(), state.getActive(),
+                    state.getProperties() != null ? new HashMap<>(state.getProperties()) : null);
+            state.getConnections().forEach(location::addConnectionTo);
+            locations.put(location.getId(), location);
+        }
+        Map<String, Item> items = new HashMap<>();
+        for (ItemState state : base.items()) {
+            Location location = state.getLocationId() != null ? locations.get(state.getLocationId()) : null;
+            ProgressInfo progress = location != null && state.getProgress() != null
+                    ? new ProgressInfo(state.getProgress(), state.getValidFrom())
+                    : null;
+            items.put(state.getItemId(), new Item(state.getItemId(), state.getName(), state.getSpeed(),
+                    state.isActive(), state.getProperties() != null ? new HashMap<>(state.getProperties()) : null,
+                    location, progress));
+        }
+
+        // A change is recorded up to one write interval after it was made, the second interval leaves room for
+        // passes that run late.
+        DetachedEntities entities = new DetachedEntities(locations, items);
+        clickHouseService.forEachEventBetween(start.minus(interval.multipliedBy(2)), at,
+                event -> EventApplier.apply(event, entities));
+        return GraphService.toGraphData(locations.values(), items.values());
+    }
+
+    /**
+     * The states at an interval start are only cached once the state history is complete up to it.
+     */
+    private Base base(Instant start, Instant now) {
+        synchronized (bases) {
+            Base cached = bases.get(start);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<LocationState> locations = new ArrayList<>();
+        List<ItemState> items = new ArrayList<>();
+        clickHouseService.forEachLocationStateAt(start, state -> {
+            if (!state.isDeleted()) {
+                locations.add(state);
+            }
+        });
+        clickHouseService.forEachItemStateAt(start, state -> {
+            if (!state.isDeleted()) {
+                items.add(state);
+            }
+        });
+        Base base = new Base(locations, items);
+        if (start.isBefore(now.minus(interval.multipliedBy(2)))) {
+            synchronized (bases) {
+                bases.put(start, base);
+            }
+        }
+        logger.debug("Loaded {} location and {} item states at {}.", locations.size(), items.size(), start);
+        return base;
+    }
+
+    /**
+     * A detached graph, which skips events about entities it does not have.
+     */
+    private record DetachedEntities(Map<String, Location> locations, Map<String, Item> items)
+            implements EventApplier.Entities {
+        @Override
+        public void addItem(Item item) {
+            items.putIfAbsent(item.getId(), item);
+        }
+
+        @Override
+        public void addLocation(Location location) {
+            locations.putIfAbsent(location.getId(), location);
+        }
+
+        @Override
+        public Location location(String id) {
+            return locations.get(id);
+        }
+
+        @Override
+        public void updateItem(String id, Consumer<Item> change) {
+            Item item = items.get(id);
+            if (item != null) {
+                change.accept(item);
+            }
+        }
+
+        @Override
+        public void updateLocation(String id, Consumer<Location> change) {
+            Location location = locations.get(id);
+            if (location != null) {
+                change.accept(location);
+            }
+        }
+    }
+}
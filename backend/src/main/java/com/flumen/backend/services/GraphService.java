@@ -1,138 +1,203 @@
 package com.flumen.backend.services;
 
-import com.flumen.backend.models.response.ItemResponse;
-import com.flumen.backend.models.Location;
-import com.flumen.backend.entities.ConnectedTo;
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
 import com.flumen.backend.models.graph.GraphData;
+import com.flumen.backend.models.graph.GraphDelta;
+import com.flumen.backend.models.graph.GraphDeltaPage;
+import com.flumen.backend.models.graph.GraphExportPage;
 import com.flumen.backend.models.response.ConnectionResponse;
 import com.flumen.backend.models.response.ItemResponse;
 import com.flumen.backend.models.response.LocationResponse;
-import com.orientechnologies.orient.core.db.ODatabaseSession;
-import com.orientechnologies.orient.core.record.OVertex;
-import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.executor.OResult;
-import com.orientechnologies.orient.core.sql.executor.OResultSet;
-import com.orientechnologies.orient.core.id.ORID;
-
-import org.modelmapper.ModelMapper;
-import org.modelmapper.convention.MatchingStrategies;
+
 import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class GraphService {
-    private final OrientDBService orientDBService;
-    private final ModelMapper modelMapper;
-
-    public GraphService(OrientDBService orientDBService) {
-        this.orientDBService = orientDBService;
-        this.modelMapper = new ModelMapper();
-        modelMapper.getConfiguration().setMatchingStrategy(MatchingStrategies.STRICT);
-        
-        // Configure custom mappings if needed
-        modelMapper.createTypeMap(Location.class, LocationResponse.class);
-        modelMapper.createTypeMap(ConnectedTo.class, ConnectionResponse.class);
+    private static final String LOCATION_CURSOR = "location:";
+    private static final String ITEM_CURSOR = "item:";
+    /**
+     * Larger page limits are lowered to this, so a request cannot make the page buffer arbitrarily large.
+     */
+    public static final int MAX_PAGE_LIMIT = 10_000;
+    private static final ObjectWriter exportWriter = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .writerFor(GraphDelta.class);
+
+    private final GraphStore graphStore;
+    private final GraphDeltaLog deltaLog;
+
+    public GraphService(GraphStore graphStore, GraphDeltaLog deltaLog) {
+        this.graphStore = graphStore;
+        this.deltaLog = deltaLog;
     }
 
+    /**
+     * Builds the full graph from the in-memory store. Every location carries the items positioned on it
+     * and both its outgoing and incoming connections; the top-level list holds each connection once.
+     * The version is read before the graph, so replaying deltas after it never misses a change.
+     */
     public GraphData getGraphData() {
+        long version = deltaLog.currentVersion();
+        List<Location> locations = graphStore.getAllLocations();
+        GraphData graphData = toGraphData(locations, graphStore.getAllItems());
+        graphData.setEpoch(deltaLog.getEpoch());
+        graphData.setVersion(version);
+        return graphData;
+    }
+
+    /**
+     * Builds a graph from detached locations and items, without epoch or version.
+     */
+    static GraphData toGraphData(Collection<Location> locations, Collection<Item> items) {
+        Map<String, List<ItemResponse>> itemsByLocation = new HashMap<>();
+        for (Item item : items) {
+            if (item.getLocation() != null) {
+                itemsByLocation.computeIfAbsent(item.getLocation().getId(), id -> new ArrayList<>())
+                        .add(toItemResponse(item));
+            }
+        }
+
+        Map<String, List<ConnectionResponse>> inboundByLocation = new HashMap<>();
+        List<ConnectionResponse> allConnections = new ArrayList<>();
+        for (Location location : locations) {
+            for (String targetId : location.getOutboundConnectionIds()) {
+                ConnectionResponse inbound = new ConnectionResponse(location.getId(), targetId, "in", null);
+                inboundByLocation.computeIfAbsent(targetId, id -> new ArrayList<>()).add(inbound);
+                allConnections.add(inbound);
+            }
+        }
+
         GraphData graphData = new GraphData();
-        List<LocationResponse> locations = new ArrayList<>();
-        
-        try (ODatabaseSession session = orientDBService.getSession()) {
-            String query = "SELECT *, in('HasPosition'):{*, @rid} as items, in('ConnectedTo'):{@rid, *} as in, out('ConnectedTo'):{*, @rid} as out FROM Location";
-            
-            try (OResultSet rs = session.query(query)) {
-                while (rs.hasNext()) {
-                    OVertex result = rs.next().toElement().asVertex().get();
-                    LocationResponse location = new LocationResponse();
-                    location.setId(result.getProperty("customId"));
-                    location.setName(result.getProperty("name"));
-                    location.setLatitude(result.getProperty("latitude"));
-                    location.setLongitude(result.getProperty("longitude"));
-                    location.setLength(((Number) result.getProperty("length")).doubleValue());
-                    location.setSpeed(((Number) result.getProperty("speed")).doubleValue());
-                    location.setActive(result.getProperty("active"));
-                    
-                    location.setProperties(result.getProperty("properties"));
-                    
-                    // Process items
-                    List<ODocument> itemResults = result.getProperty("items");
-                    if (itemResults != null) {
-                        List<ItemResponse> locationItems = itemResults.stream()
-                            .map(itemResult -> {
-                                ItemResponse item = new ItemResponse();
-                                item.setId(itemResult.field("customId"));
-                                item.setName(itemResult.field("name"));
-                                item.setSpeed(itemResult.field("speed"));
-                                item.setActive(itemResult.field("active"));
-                                item.setProperties(itemResult.field("properties"));
-                                return item;
-                            })
-                            .collect(Collectors.toList());
-                        location.setItems(locationItems);
-                    }
-                    
-                    List<ConnectionResponse> locationConnections = new ArrayList<>();
-                    
-                    // Process outgoing connections
-                    List<ODocument> outResults = result.getProperty("out");
-                    if (outResults != null) {
-                        outResults.forEach(outResult -> {
-                            ConnectionResponse conn = new ConnectionResponse();
-                            conn.setSourceId(location.getId());
-                            conn.setTargetId(outResult.field("customId"));
-                            conn.setDirection("out");
-                        
-                            conn.setProperties(outResult.field("properties"));
-  
-                            locationConnections.add(conn);
-                        });
-                    }
-                    
-                    // Process incoming connections
-                    List<ODocument> inResults = result.getProperty("in");
-                    if (inResults != null) {
-                        inResults.forEach(inResult -> {
-                            ConnectionResponse conn = new ConnectionResponse();
-                            conn.setSourceId(inResult.field("customId"));
-                            conn.setTargetId(location.getId());
-                            conn.setDirection("in");
-
-                            conn.setProperties(inResult.field("properties"));
-                            locationConnections.add(conn);
-                        });
-                    }
-                    
-                    location.setConnections(locationConnections);
-                    locations.add(location);
-                }
+        for (Location location : locations) {
+            List<ConnectionResponse> connections = new ArrayList<>();
+            for (String targetId : location.getOutboundConnectionIds()) {
+                connections.add(new ConnectionResponse(location.getId(), targetId, "out", null));
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Error fetching graph data", e);
+            connections.addAll(inboundByLocation.getOrDefault(location.getId(), List.of()));
+
+            LocationResponse response = toLocationResponse(location);
+            response.setItems(itemsByLocation.getOrDefault(location.getId(), new ArrayList<>()));
+            response.setConnections(connections);
+            graphData.addLocation(response);
         }
-        
-        // Convert locations to responses using ModelMapper
-        List<LocationResponse> locationResponses = locations.stream()
-            .map(location -> modelMapper.map(location, LocationResponse.class))
-            .collect(Collectors.toList());
-        graphData.setLocations(locationResponses);
-        
-        // Collect all connections and convert using ModelMapper
-        List<ConnectionResponse> allConnections = locations.stream()
-            .flatMap(location -> location.getConnections().stream())
-            .filter(connection -> connection.getDirection().equals("in"))
-            .map(connection -> {
-                ConnectionResponse response = modelMapper.map(connection, ConnectionResponse.class);
-                // Ensure IDs are properly set and not Optional.empty
-                response.setSourceId(connection.getSourceId());
-                response.setTargetId(connection.getTargetId());
-                return response;
-            })
-            .collect(Collectors.toList());
-        graphData.setConnections(allConnections);
-        
+        graphData.addConnections(allConnections);
+
         return graphData;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the changes made after the given version of this server run, or a full snapshot when the
+     * client belongs to another run or has fallen behind the retained history.
+     */
+    public GraphDeltaPage getDeltasSince(String epoch, long since) {
+        if (deltaLog.getEpoch().equals(epoch)) {
+            List<GraphDelta> deltas = deltaLog.since(since);
+            if (deltas != null) {
+                long version = deltas.isEmpty() ? since : deltas.get(deltas.size() - 1).getVersion();
+                return new GraphDeltaPage(deltaLog.getEpoch(), version, deltas, null);
+            }
+        }
+        GraphData snapshot = getGraphData();
+        return new GraphDeltaPage(snapshot.getEpoch(), snapshot.getVersion(), List.of(), snapshot);
+    }
+
+    public String getEpoch() {
+        return deltaLog.getEpoch();
+    }
+
+    public long currentVersion() {
+        return deltaLog.currentVersion();
+    }
+
+    /**
+     * Writes the graph as newline-delimited upsert records, all locations first and then all items.
+     * Each record is built from the live aggregate and written straight to the stream, so the export never
+     * holds more than one record in memory. Read {@link #currentVersion()} before starting: replaying the
+     * deltas after it brings the export up to date.
+     */
+    public void writeExport(OutputStream out) throws IOException {
+        try (JsonGenerator generator = exportWriter.createGenerator(out)) {
+            for (Location location : graphStore.locations()) {
+                GraphDelta record;
+                synchronized (location) {
+                    record = GraphDeltaLog.locationUpsert(location);
+                }
+                exportWriter.writeValue(generator, record);
+                generator.writeRaw('\n');
+            }
+            for (Item item : graphStore.items()) {
+                GraphDelta record;
+                synchronized (item) {
+                    record = GraphDeltaLog.itemUpsert(item);
+                }
+                exportWriter.writeValue(generator, record);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} upsert records following the cursor of the previous page, or from the start
+     * when the cursor is null. Locations come first, then items, each in id order. A limit above
+     * {@link #MAX_PAGE_LIMIT} is lowered to it.
+     */
+    public GraphExportPage getExportPage(String cursor, int requestedLimit) {
+        if (requestedLimit <= 0) {
+            throw new IllegalArgumentException("The page limit must be positive");
+        }
+        int limit = Math.min(requestedLimit, MAX_PAGE_LIMIT);
+        long version = deltaLog.currentVersion();
+        List<GraphDelta> records = new ArrayList<>(limit);
+
+        String itemsAfter;
+        if (cursor == null || cursor.startsWith(LOCATION_CURSOR)) {
+            String after = cursor == null ? null : cursor.substring(LOCATION_CURSOR.length());
+            List<Location> locations = graphStore.locationsAfter(after, limit);
+            locations.forEach(location -> records.add(GraphDeltaLog.locationUpsert(location)));
+            if (locations.size() == limit) {
+                String next = LOCATION_CURSOR + locations.get(locations.size() - 1).getId();
+                return new GraphExportPage(deltaLog.getEpoch(), version, records, next);
+            }
+            itemsAfter = null;
+        } else if (cursor.startsWith(ITEM_CURSOR)) {
+            itemsAfter = cursor.substring(ITEM_CURSOR.length());
+        } else {
+            throw new IllegalArgumentException("Invalid graph page cursor " + cursor);
+        }
+
+        int remaining = limit - records.size();
+        List<Item> items = graphStore.itemsAfter(itemsAfter, remaining);
+        items.forEach(item -> records.add(GraphDeltaLog.itemUpsert(item)));
+        String next = items.size() == remaining ? ITEM_CURSOR + items.get(items.size() - 1).getId() : null;
+        return new GraphExportPage(deltaLog.getEpoch(), version, records, next);
+    }
+
+    static LocationResponse toLocationResponse(Location location) {
+        LocationResponse response = new LocationResponse();
+        response.setId(location.getId());
+        response.setName(location.getName());
+        response.setLatitude(location.getLatitude());
+        response.setLongitude(location.getLongitude());
+        response.setLength(location.getLength());
+        response.setSpeed(location.getSpeed());
+        response.setType(location.getType());
+        response.setActive(location.getActive());
+        response.setProperties(location.getProperties());
+        return response;
+    }
+
+    static ItemResponse toItemResponse(Item item) {
+        return new ItemResponse(item.getId(), item.getName(), item.getSpeed(), item.isActive(), item.getProperties());
+    }
+}
@@ -0,0 +1,783 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.domain.ProgressInfo;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.sql.executor.OResult;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The authoritative, in-process copy of the graph. Items and locations are hydrated at startup from the newest
+ * checkpoint on local disk, or from OrientDB when there is none or OrientDB is ahead of it. Every change is
+ * applied here first. The ids of changed aggregates are collected so that {@link GraphWriteBehind} can persist
+ * them asynchronously.
+ *
+ * Each aggregate is mutated while holding its own monitor, so changes to different entities never contend.
+ * Every change is also recorded in the {@link GraphDeltaLog} while that monitor is held, so the deltas of
+ * one entity are versioned in the order they were applied.
+ */
+@Service
+public class GraphStore {
+    private static final Logger logger = LoggerFactory.getLogger(GraphStore.class);
+
+    private final OrientDBService orientDBService;
+    private final VertexLookup vertexLookup;
+    private final GraphDeltaLog deltaLog;
+    private final GraphCheckpointFiles checkpointFiles;
+    // Position of the last event covered by the newest checkpoint, null if hydrated without one.
+    private volatile Long checkpointPosition;
+
+    private final Map<String, Item> items = new ConcurrentHashMap<>();
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    // Ids in sorted order, for paging through the graph with a stable cursor.
+    private final NavigableSet<String> itemIds = new ConcurrentSkipListSet<>();
+    private final NavigableSet<String> locationIds = new ConcurrentSkipListSet<>();
+
+    private final Set<String> dirtyItems = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyLocations = ConcurrentHashMap.newKeySet();
+    private final Set<String> deletedItems = ConcurrentHashMap.newKeySet();
+    private final Set<String> deletedLocations = ConcurrentHashMap.newKeySet();
+
+    private final List<ItemListener> itemListeners = new CopyOnWriteArrayList<>();
+    private final List<LocationListener> locationListeners = new CopyOnWriteArrayList<>();
+
+    public GraphStore(OrientDBService orientDBService, VertexLookup vertexLookup, GraphDeltaLog deltaLog,
+            GraphCheckpointFiles checkpointFiles) {
+        this.orientDBService = orientDBService;
+        this.vertexLookup = vertexLookup;
+        this.deltaLog = deltaLog;
+        this.checkpointFiles = checkpointFiles;
+    }
+
+    @PostConstruct
+    public void hydrate() {
+        long start = System.nanoTime();
+        GraphCheckpointFiles.Checkpoint checkpoint = checkpointFiles.loadLatest();
+        if (checkpoint != null && checkpointFiles.isDatabaseAhead()) {
+            // OrientDB holds at least the checkpointed state, plus changes made outside the event log since.
+            hydrateFromDatabase();
+            checkpointPosition = checkpoint.eventPosition();
+            logger.info("OrientDB is ahead of the checkpoint of {}, hydrated from it instead in {} ms.",
+                    checkpoint.takenAt(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return;
+        }
+        if (checkpoint != null) {
+            for (Location location : checkpoint.locations()) {
+                location.clearChanges();
+                locations.put(location.getId(), location);
+                locationIds.add(location.getId());
+            }
+            for (Item item : checkpoint.items()) {
+                items.put(item.getId(), item);
+                itemIds.add(item.getId());
+            }
+            checkpointPosition = checkpoint.eventPosition();
+            logger.info("Hydrated in-memory graph with {} locations and {} items from the checkpoint of {} in {} ms.",
+                    locations.size(), items.size(), checkpoint.takenAt(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return;
+        }
+
+        hydrateFromDatabase();
+        logger.info("Hydrated in-memory graph with {} locations and {} items.", locations.size(), items.size());
+    }
+
+    private void hydrateFromDatabase() {
+        // Unlike withSession, a failed read fails startup, rather than serving an empty graph as authoritative.
+        try (ODatabaseSession session = orientDBService.getSession()) {
+            forEachPersistedLocation(session, location -> {
+                locations.put(location.getId(), location);
+                locationIds.add(location.getId());
+            });
+            forEachPersistedItem(session, item -> {
+                items.put(item.getId(), item);
+                itemIds.add(item.getId());
+            });
+        }
+    }
+
+    /**
+     * Reloads the graph from OrientDB, for when another instance has written part of it, e.g. the entities of a
+     * partition this instance takes over. An aggregate with changes the write-behind has not taken yet keeps its
+     * in-memory state, and so does one changed while it is reloaded. Aggregates gone from the database are
+     * dropped unless they changed here. Must not run concurrently with a write-behind pass, see
+     * {@link GraphWriteBehind#flushAndRefresh()}.
+     */
+    void refreshFromDatabase() {
+        long start = System.nanoTime();
+        Set<String> goneLocations = new HashSet<>(locationIds);
+        Set<String> goneItems = new HashSet<>(itemIds);
+        int[] refreshed = new int[1];
+        // Unlike withSession, a failed read must reach the caller, which would otherwise consume on a stale graph.
+        try (ODatabaseSession session = orientDBService.getSession()) {
+            forEachPersistedLocation(session, loaded -> {
+                goneLocations.remove(loaded.getId());
+                if (refreshLocation(loaded)) {
+                    refreshed[0]++;
+                }
+            });
+            forEachPersistedItem(session, loaded -> {
+                goneItems.remove(loaded.getId());
+                if (refreshItem(loaded)) {
+                    refreshed[0]++;
+                }
+            });
+        }
+        int dropped = 0;
+        for (String id : goneItems) {
+            Item item = items.get(id);
+            if (item != null && isUnchanged(item) && items.remove(id, item)) {
+                itemGone(id);
+                dropped++;
+            }
+        }
+        for (String id : goneLocations) {
+            Location location = locations.get(id);
+            if (location != null && isUnchanged(location) && locations.remove(id, location)) {
+                locationGone(id);
+                dropped++;
+            }
+        }
+        logger.info("Refreshed in-memory graph from OrientDB in {} ms: {} aggregates reloaded, {} dropped.",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), refreshed[0], dropped);
+    }
+
+    private boolean refreshLocation(Location loaded) {
+        if (deletedLocations.contains(loaded.getId())) {
+            return false;
+        }
+        Location location = locations.putIfAbsent(loaded.getId(), loaded);
+        if (location == null) {
+            location = loaded;
+            locationIds.add(loaded.getId());
+        } else {
+            synchronized (location) {
+                if (!isUnchanged(location) || !location.refreshFrom(loaded)) {
+                    return false;
+                }
+            }
+        }
+        synchronized (location) {
+            Location result = location.copy();
+            deltaLog.locationUpserted(result);
+            notifyLocationChanged(result);
+        }
+        return true;
+    }
+
+    private boolean refreshItem(Item loaded) {
+        if (deletedItems.contains(loaded.getId())) {
+            return false;
+        }
+        Item item = items.putIfAbsent(loaded.getId(), loaded);
+        if (item == null) {
+            item = loaded;
+            itemIds.add(loaded.getId());
+        } else {
+            synchronized (item) {
+                if (!isUnchanged(item) || !item.refreshFrom(loaded)) {
+                    return false;
+                }
+            }
+        }
+        synchronized (item) {
+            Item result = item.copy();
+            deltaLog.itemUpserted(result);
+            notifyItemChanged(result);
+        }
+        return true;
+    }
+
+    private boolean isUnchanged(Item item) {
+        synchronized (item) {
+            return !item.hasChanges() && !dirtyItems.contains(item.getId());
+        }
+    }
+
+    private boolean isUnchanged(Location location) {
+        synchronized (location) {
+            return !location.hasChanges() && !dirtyLocations.contains(location.getId());
+        }
+    }
+
+    /**
+     * @return The position in the event log up to which the hydrated state is complete, or null if there was
+     *         no checkpoint to hydrate from.
+     */
+    public Long getCheckpointPosition() {
+        return checkpointPosition;
+    }
+
+    // ---- Reads ----
+
+    public Item getItem(String id) {
+        Item item = items.get(id);
+        if (item == null) {
+            throw new NoSuchElementException(String.format("No item found with id %s", id));
+        }
+        synchronized (item) {
+            return item.copy();
+        }
+    }
+
+    public Location getLocation(String id) {
+        Location location = locations.get(id);
+        if (location == null) {
+            throw new NoSuchElementException(String.format("No location found with id %s", id));
+        }
+        synchronized (location) {
+            return location.copy();
+        }
+    }
+
+    /**
+     * @return The id of the location the item is on, or null if it is not positioned or there is no such item.
+     */
+    public String findItemLocationId(String id) {
+        Item item = items.get(id);
+        Location location = item != null ? item.getLocation() : null;
+        return location != null ? location.getId() : null;
+    }
+
+    /**
+     * @return A detached copy of the item, or null if there is none with this id.
+     */
+    public Item findItem(String id) {
+        Item item = items.get(id);
+        if (item == null) {
+            return null;
+        }
+        synchronized (item) {
+            return item.copy();
+        }
+    }
+
+    /**
+     * @return A detached copy of the location, or null if there is none with this id.
+     */
+    public Location findLocation(String id) {
+        Location location = locations.get(id);
+        if (location == null) {
+            return null;
+        }
+        synchronized (location) {
+            return location.copy();
+        }
+    }
+
+    public List<Item> getAllItems() {
+        List<Item> copies = new ArrayList<>(items.size());
+        for (Item item : items.values()) {
+            synchronized (item) {
+                copies.add(item.copy());
+            }
+        }
+        return copies;
+    }
+
+    public List<Location> getAllLocations() {
+        List<Location> copies = new ArrayList<>(locations.size());
+        for (Location location : locations.values()) {
+            synchronized (location) {
+                copies.add(location.copy());
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Live view of the stored locations. Callers must not mutate the returned aggregates.
+     */
+    public Collection<Location> locations() {
+        return locations.values();
+    }
+
+    /**
+     * Live view of the stored items. Callers must not mutate the returned aggregates.
+     */
+    public Collection<Item> items() {
+        return items.values();
+    }
+
+    /**
+     * Detached copies of up to {@code limit} items in id order, starting after the given id,
+     * or from the first item if it is null.
+     */
+    public List<Item> itemsAfter(String after, int limit) {
+        List<Item> copies = new ArrayList<>(Math.min(limit, items.size()));
+        for (String id : after == null ? itemIds : itemIds.tailSet(after, false)) {
+            if (copies.size() == limit) {
+                break;
+            }
+            Item item = items.get(id);
+            if (item != null) {
+                synchronized (item) {
+                    copies.add(item.copy());
+                }
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Detached copies of up to {@code limit} locations in id order, starting after the given id,
+     * or from the first location if it is null.
+     */
+    public List<Location> locationsAfter(String after, int limit) {
+        List<Location> copies = new ArrayList<>(Math.min(limit, locations.size()));
+        for (String id : after == null ? locationIds : locationIds.tailSet(after, false)) {
+            if (copies.size() == limit) {
+                break;
+            }
+            Location location = locations.get(id);
+            if (location != null) {
+                synchronized (location) {
+                    copies.add(location.copy());
+                }
+            }
+        }
+        return copies;
+    }
+
+    public boolean containsItem(String id) {
+        return items.containsKey(id);
+    }
+
+    public boolean containsLocation(String id) {
+        return locations.containsKey(id);
+    }
+
+    // ---- Writes ----
+
+    public Item addItem(Item item) {
+        if (items.putIfAbsent(item.getId(), item) != null) {
+            throw new IllegalArgumentException("Item with ID " + item.getId() + " already exists.");
+        }
+        itemIds.add(item.getId());
+        deletedItems.remove(item.getId());
+        dirtyItems.add(item.getId());
+        Item result;
+        synchronized (item) {
+            // The vertex may not exist yet, or be left over from an item with this id deleted since.
+            item.markAllChanged();
+            result = item.copy();
+            deltaLog.itemUpserted(result);
+            notifyItemChanged(result);
+        }
+        return result;
+    }
+
+    public Location addLocation(Location location) {
+        if (locations.putIfAbsent(location.getId(), location) != null) {
+            throw new IllegalArgumentException("Location with ID " + location.getId() + " already exists.");
+        }
+        locationIds.add(location.getId());
+        deletedLocations.remove(location.getId());
+        dirtyLocations.add(location.getId());
+        Location result;
+        synchronized (location) {
+            location.markAllChanged();
+            result = location.copy();
+            deltaLog.locationUpserted(result);
+            notifyLocationChanged(result);
+        }
+        return result;
+    }
+
+    /**
+     * Applies a change to a stored item under its monitor and marks it for persistence.
+     * @return A detached copy of the item after the change.
+     */
+    public Item updateItem(String id, Consumer<Item> change) {
+        Item item = items.get(id);
+        if (item == null) {
+            throw new NoSuchElementException(String.format("No item found with id %s", id));
+        }
+        Item result;
+        synchronized (item) {
+            change.accept(item);
+            result = item.copy();
+            deltaLog.itemUpserted(result);
+            notifyItemChanged(result);
+        }
+        dirtyItems.add(id);
+        return result;
+    }
+
+    /**
+     * Applies a change to a stored location under its monitor and marks it for persistence.
+     * @return A detached copy of the location after the change.
+     */
+    public Location updateLocation(String id, Consumer<Location> change) {
+        Location location = locations.get(id);
+        if (location == null) {
+            throw new NoSuchElementException(String.format("No location found with id %s", id));
+        }
+        Location result;
+        synchronized (location) {
+            change.accept(location);
+            result = location.copy();
+            deltaLog.locationUpserted(result);
+            notifyLocationChanged(result);
+        }
+        dirtyLocations.add(id);
+        return result;
+    }
+
+    /**
+     * Resolves the stored location instance, so that an item's position references the live aggregate.
+     */
+    Location liveLocation(String id) {
+        Location location = locations.get(id);
+        if (location == null) {
+            throw new NoSuchElementException(String.format("No location found with id %s", id));
+        }
+        return location;
+    }
+
+    public void removeItem(String id) {
+        if (items.remove(id) == null) {
+            throw new NoSuchElementException(String.format("No item found with id %s", id));
+        }
+        deletedItems.add(id);
+        itemGone(id);
+    }
+
+    public void removeLocation(String id) {
+        if (locations.remove(id) == null) {
+            throw new NoSuchElementException(String.format("No location found with id %s", id));
+        }
+        deletedLocations.add(id);
+        locationGone(id);
+    }
+
+    /**
+     * Drops what refers to an item just removed from the map.
+     */
+    private void itemGone(String id) {
+        itemIds.remove(id);
+        dirtyItems.remove(id);
+        deltaLog.itemRemoved(id);
+        itemListeners.forEach(listener -> listener.itemRemoved(id));
+    }
+
+    /**
+     * Drops what refers to a location just removed from the map, including the connections and positions on it.
+     */
+    private void locationGone(String id) {
+        locationIds.remove(id);
+        dirtyLocations.remove(id);
+        deltaLog.locationRemoved(id);
+        locationListeners.forEach(listener -> listener.locationRemoved(id));
+
+        // Deleting the vertex drops its edges, mirror that in memory. The connections and positions are read
+        // without the monitors, as snapshots, and each change is made under the monitor of the aggregate.
+        for (Location other : locations.values()) {
+            if (other.getOutboundConnectionIds().contains(id)) {
+                updateLocation(other.getId(), l -> l.removeConnectionTo(id));
+            }
+        }
+        for (Item item : items.values()) {
+            Location position = item.getLocation();
+            if (position != null && id.equals(position.getId())) {
+                updateItem(item.getId(), positioned -> {
+                    // The item may have moved on since it was checked.
+                    if (positioned.getLocation() == position) {
+                        positioned.clearPosition();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Registers a listener that sees every item after each change. Listeners are called while the item's
+     * monitor is held, so they see the changes of one item in order and must return quickly.
+     */
+    public void addItemListener(ItemListener listener) {
+        itemListeners.add(listener);
+        for (Item item : items.values()) {
+            synchronized (item) {
+                listener.itemChanged(item.copy());
+            }
+        }
+    }
+
+    private void notifyItemChanged(Item item) {
+        for (ItemListener listener : itemListeners) {
+            listener.itemChanged(item);
+        }
+    }
+
+    public interface ItemListener {
+        void itemChanged(Item item);
+
+        void itemRemoved(String id);
+    }
+
+    /**
+     * Registers a listener that sees every location after each change, under the same rules as
+     * {@link #addItemListener}.
+     */
+    public void addLocationListener(LocationListener listener) {
+        locationListeners.add(listener);
+        for (Location location : locations.values()) {
+            synchronized (location) {
+                listener.locationChanged(location.copy());
+            }
+        }
+    }
+
+    private void notifyLocationChanged(Location location) {
+        for (LocationListener listener : locationListeners) {
+            listener.locationChanged(location);
+        }
+    }
+
+    public interface LocationListener {
+        void locationChanged(Location location);
+
+        void locationRemoved(String id);
+    }
+
+    // ---- Write-behind support ----
+
+    /**
+     * Takes the ids of every item changed since the last call, together with a detached copy of each that
+     * carries its changes.
+     */
+    List<Item> drainDirtyItems() {
+        List<Item> drained = new ArrayList<>();
+        for (String id : List.copyOf(dirtyItems)) {
+            dirtyItems.remove(id);
+            Item item = items.get(id);
+            if (item != null) {
+                synchronized (item) {
+                    drained.add(item.takeChanges());
+                }
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Takes the ids of every location changed since the last call, together with a detached copy of each that
+     * carries its changes.
+     */
+    List<Location> drainDirtyLocations() {
+        List<Location> drained = new ArrayList<>();
+        for (String id : List.copyOf(dirtyLocations)) {
+            dirtyLocations.remove(id);
+            Location location = locations.get(id);
+            if (location != null) {
+                synchronized (location) {
+                    drained.add(location.takeChanges());
+                }
+            }
+        }
+        return drained;
+    }
+
+    List<String> drainDeletedItems() {
+        List<String> drained = List.copyOf(deletedItems);
+        drained.forEach(deletedItems::remove);
+        return drained;
+    }
+
+    List<String> drainDeletedLocations() {
+        List<String> drained = List.copyOf(deletedLocations);
+        drained.forEach(deletedLocations::remove);
+        return drained;
+    }
+
+    /**
+     * Marks an item for a full rewrite, e.g. after writing its changes failed.
+     */
+    void markItemDirty(String id) {
+        Item item = items.get(id);
+        if (item != null) {
+            synchronized (item) {
+                item.markAllChanged();
+            }
+            dirtyItems.add(id);
+        }
+    }
+
+    /**
+     * Marks a location for a full rewrite, e.g. after writing its changes failed.
+     */
+    void markLocationDirty(String id) {
+        Location location = locations.get(id);
+        if (location != null) {
+            synchronized (location) {
+                location.markAllChanged();
+            }
+            dirtyLocations.add(id);
+        }
+    }
+
+    /**
+     * Queues the changes of an item again after writing them failed on a conflict, so that the next pass
+     * writes them, and any made since, onto the current record.
+     */
+    void requeueItem(Item failed) {
+        Item item = items.get(failed.getId());
+        if (item != null) {
+            synchronized (item) {
+                item.restoreChanges(failed);
+            }
+            dirtyItems.add(item.getId());
+        }
+    }
+
+    /**
+     * Queues the changes of a location again after writing them failed on a conflict.
+     */
+    void requeueLocation(Location failed) {
+        Location location = locations.get(failed.getId());
+        if (location != null) {
+            synchronized (location) {
+                location.restoreChanges(failed);
+            }
+            dirtyLocations.add(location.getId());
+        }
+    }
+
+    void markItemDeleted(String id) {
+        if (!items.containsKey(id)) {
+            deletedItems.add(id);
+        }
+    }
+
+    void markLocationDeleted(String id) {
+        if (!locations.containsKey(id)) {
+            deletedLocations.add(id);
+        }
+    }
+
+    public int getPendingWrites() {
+        return dirtyItems.size() + dirtyLocations.size() + deletedItems.size() + deletedLocations.size();
+    }
+
+    // ---- Hydration helpers ----
+
+    private void forEachPersistedLocation(ODatabaseSession session, Consumer<Location> action) {
+        String locationQuery = "SELECT @rid AS rid, customId, name, latitude, longitude, length, speed, type, active, properties, "
+                + "out('ConnectedTo').customId AS outbound FROM Location";
+        try (OResultSet rs = session.query(locationQuery)) {
+            while (rs.hasNext()) {
+                OResult row = rs.next();
+                Location location = resultToLocation(row);
+                vertexLookup.remember("Location", location.getId(), row.getProperty("rid"));
+                action.accept(location);
+            }
+        }
+    }
+
+    /**
+     * Positions refer to the locations in the map, so locations are loaded first.
+     */
+    private void forEachPersistedItem(ODatabaseSession session, Consumer<Item> action) {
+        String itemQuery = "SELECT @rid AS rid, customId, name, speed, active, properties, "
+                + "out('HasPosition').customId AS locationIds, outE('HasPosition').progress AS progress, "
+                + "outE('HasPosition').datetime AS datetimes FROM Item";
+        try (OResultSet rs = session.query(itemQuery)) {
+            while (rs.hasNext()) {
+                OResult row = rs.next();
+                Item item = resultToItem(row);
+                vertexLookup.remember("Item", item.getId(), row.getProperty("rid"));
+                action.accept(item);
+            }
+        }
+    }
+
+    private Location resultToLocation(OResult row) {
+        Location location = new Location(
+            row.getProperty("customId"),
+            row.getProperty("name"),
+            toDouble(row.getProperty("latitude")),
+            toDouble(row.getProperty("longitude")),
+            toDouble(row.getProperty("length")),
+            toDouble(row.getProperty("speed")),
+            row.getProperty("type"),
+            row.getProperty("active"),
+            row.getProperty("properties")
+        );
+        List<String> outbound = row.getProperty("outbound");
+        if (outbound != null) {
+            outbound.forEach(location::addConnectionTo);
+        }
+        location.clearChanges();
+        return location;
+    }
+
+    private Item resultToItem(OResult row) {
+        Location location = null;
+        ProgressInfo progressInfo = null;
+
+        String locationId = first(row.getProperty("locationIds"));
+        if (locationId != null) {
+            location = locations.get(locationId);
+            Number progress = first(row.getProperty("progress"));
+            Object datetime = first(row.getProperty("datetimes"));
+            if (progress != null && datetime != null) {
+                progressInfo = new ProgressInfo(progress.doubleValue(), toInstant(datetime));
+            }
+        }
+
+        Boolean active = row.getProperty("active");
+        return new Item(
+            row.getProperty("customId"),
+            row.getProperty("name"),
+            toDouble(row.getProperty("speed")),
+            Boolean.TRUE.equals(active),
+            row.getProperty("properties"),
+            location,
+            progressInfo
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T first(Object value) {
+        if (value instanceof List<?> list) {
+            return list.isEmpty() ? null : (T) list.get(0);
+        }
+        return (T) value;
+    }
+
+    private static Double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : null;
+    }
+
+    private static Instant toInstant(Object value) {
+        if (value instanceof Date date) {
+            return date.toInstant();
+        }
+        if (value instanceof Instant instant) {
+            return instant;
+        }
+        return Instant.parse(value.toString());
+    }
+}
@@ -0,0 +1,288 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Persists the aggregates changed in the {@link GraphStore} to OrientDB. Runs on a fixed delay, so all changes
+ * made to an aggregate between two runs are coalesced into a single write, which sets only the properties and
+ * edges that changed.
+ *
+ * Each pass writes its aggregates in batches of {@code graph.write-behind.batch-size}, one {@link UnitOfWork}
+ * per batch: a single session, transaction and commit, with every vertex looked up at most once. When a batch
+ * fails to commit it is rolled back and its aggregates are written one by one, so that one bad aggregate only
+ * delays itself to the next pass.
+ *
+ * A commit conflicts when a record changed after the unit loaded it, e.g. the edges of a location shared with
+ * another instance. Only the properties changed here and the connections added or removed here are written, so
+ * the batch is written again at once onto the current version of the conflicting record, keeping the other
+ * writer's changes to it. An aggregate that still conflicts keeps its changes queued for the next pass instead
+ * of waiting for it.
+ *
+ * Against a remote server, items that did not move are written with {@link UpdateCommands}: atomic updates by
+ * customId that need no vertex loaded, one script and round trip per batch. Embedded, loading vertices by their
+ * cached record id costs no round trip and is cheaper than planning the statements.
+ */
+@Service
+public class GraphWriteBehind {
+    private static final Logger logger = LoggerFactory.getLogger(GraphWriteBehind.class);
+
+    private final GraphStore graphStore;
+    private final ItemService itemService;
+    private final LocationService locationService;
+    private final OrientDBService orientDBService;
+    private final VertexLookup vertexLookup;
+    private final int batchSize;
+    private final Timer flushTimer;
+    private final Counter committed;
+    private final Counter rolledBack;
+    private final Counter updateCommands;
+    private final Counter conflicts;
+    private final Counter conflictsRequeued;
+    private final Timer conflictResolution;
+
+    public GraphWriteBehind(GraphStore graphStore, ItemService itemService, LocationService locationService,
+            OrientDBService orientDBService, VertexLookup vertexLookup, MeterRegistry meterRegistry,
+            @Value("${graph.write-behind.batch-size:500}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("graph.write-behind.batch-size must be at least 1, was " + batchSize);
+        }
+        this.graphStore = graphStore;
+        this.itemService = itemService;
+        this.locationService = locationService;
+        this.orientDBService = orientDBService;
+        this.vertexLookup = vertexLookup;
+        this.batchSize = batchSize;
+        this.flushTimer = Timer.builder("flumen.graph.write-behind.flush")
+                .description("Duration of one write-behind pass to OrientDB")
+                .register(meterRegistry);
+        this.committed = Counter.builder("flumen.orientdb.transactions")
+                .description("OrientDB transactions run by the write-behind")
+                .tag("result", "committed")
+                .register(meterRegistry);
+        this.rolledBack = Counter.builder("flumen.orientdb.transactions")
+                .description("OrientDB transactions run by the write-behind")
+                .tag("result", "rolled-back")
+                .register(meterRegistry);
+        this.updateCommands = Counter.builder("flumen.graph.write-behind.update-commands")
+                .description("Items written by atomic update statements instead of through their vertex")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("flumen.orientdb.conflicts")
+                .description("Write-behind commits that failed on a record changed since it was loaded")
+                .register(meterRegistry);
+        this.conflictsRequeued = Counter.builder("flumen.orientdb.conflicts.requeued")
+                .description("Aggregates left to the next write-behind pass after a conflict")
+                .register(meterRegistry);
+        this.conflictResolution = Timer.builder("flumen.orientdb.conflict.resolution")
+                .description("Duration of writing a conflicting batch again onto the current records")
+                .register(meterRegistry);
+        Gauge.builder("flumen.graph.write-behind.pending", graphStore, GraphStore::getPendingWrites)
+                .description("Aggregates changed in memory and not yet written to OrientDB")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${graph.write-behind.interval-ms:100}")
+    public synchronized void flush() {
+        if (graphStore.getPendingWrites() == 0) {
+            return;
+        }
+        flushTimer.record(() -> {
+            // Location vertices first, then their connections and the items' position edges, so that every edge
+            // finds its target vertex. Vertices are deleted last, taking the edges pointing at them along.
+            List<Location> locations = graphStore.drainDirtyLocations();
+            List<Item> items = graphStore.drainDirtyItems();
+            List<String> deletedItems = graphStore.drainDeletedItems();
+            List<String> deletedLocations = graphStore.drainDeletedLocations();
+
+            write("location", locations, Location::getId, locationService::saveLocation,
+                    graphStore::requeueLocation, location -> graphStore.markLocationDirty(location.getId()));
+            write("connections of location", locations.stream()
+                            .filter(Location::hasConnectionChanges)
+                            .toList(),
+                    Location::getId, locationService::saveConnections,
+                    graphStore::requeueLocation, location -> graphStore.markLocationDirty(location.getId()));
+            List<Item> moved = new ArrayList<>();
+            List<Item> inPlace = new ArrayList<>();
+            for (Item item : items) {
+                if (item.hasChanges()) {
+                    (orientDBService.isRemote() && itemService.canUpdateInPlace(item) ? inPlace : moved).add(item);
+                }
+            }
+            moved.addAll(updateInPlace(inPlace));
+            write("item", moved, Item::getId, itemService::saveItem,
+                    graphStore::requeueItem, item -> graphStore.markItemDirty(item.getId()));
+            write("deleted item", deletedItems, Function.identity(), itemService::deleteItemVertex,
+                    graphStore::markItemDeleted, graphStore::markItemDeleted);
+            write("deleted location", deletedLocations, Function.identity(), locationService::deleteLocationVertex,
+                    graphStore::markLocationDeleted, graphStore::markLocationDeleted);
+
+            logger.debug("Write-behind persisted {} locations and {} items, deleted {} items and {} locations.",
+                    locations.size(), items.size(), deletedItems.size(), deletedLocations.size());
+        });
+    }
+
+    /**
+     * Writes what is pending, then reloads the graph from OrientDB, so that the state other instances persisted
+     * is picked up without overwriting changes made here. Holding the monitor keeps a scheduled pass from draining
+     * aggregates while they are compared.
+     */
+    public synchronized void flushAndRefresh() {
+        flush();
+        graphStore.refreshFromDatabase();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * @param requeue Queues the changes of an aggregate again after a conflict.
+     * @param rewrite Queues a full rewrite of an aggregate after any other failure, which may have left its
+     *     record in an unknown state.
+     */
+    private <T> void write(String kind, List<T> aggregates, Function<T, String> idOf,
+            BiConsumer<UnitOfWork, T> write, Consumer<T> requeue, Consumer<T> rewrite) {
+        for (int from = 0; from < aggregates.size(); from += batchSize) {
+            List<T> batch = aggregates.subList(from, Math.min(aggregates.size(), from + batchSize));
+            Exception batchFailure;
+            try {
+                inUnit(batch, write);
+                continue;
+            } catch (OConcurrentModificationException conflict) {
+                if (resolveConflict(conflict, batch, write)) {
+                    continue;
+                }
+                batchFailure = conflict;
+            } catch (Exception e) {
+                batchFailure = e;
+            }
+            if (batch.size() == 1) {
+                retryOnNextPass(kind, idOf, batch.get(0), batchFailure, requeue, rewrite);
+                continue;
+            }
+            logger.debug("Write-behind batch of {} {}s failed, writing them one by one: {}",
+                    batch.size(), kind, batchFailure.getMessage());
+            for (T aggregate : batch) {
+                try {
+                    inUnit(List.of(aggregate), write);
+                } catch (Exception e) {
+                    if (e instanceof OConcurrentModificationException) {
+                        conflicts.increment();
+                    }
+                    retryOnNextPass(kind, idOf, aggregate, e, requeue, rewrite);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a batch whose commit conflicted again, with the conflicting record evicted so that it is read in
+     * its current version. Every write sets values from the in-memory graph, so applying them again onto that
+     * version keeps the other writer's change to the record along with ours.
+     * @return Whether the batch is now committed.
+     */
+    private <T> boolean resolveConflict(OConcurrentModificationException conflict, List<T> batch,
+            BiConsumer<UnitOfWork, T> write) {
+        conflicts.increment();
+        long start = System.nanoTime();
+        try {
+            inUnit(unit -> {
+                unit.evict(conflict.getRid());
+                batch.forEach(aggregate -> write.accept(unit, aggregate));
+            });
+            return true;
+        } catch (Exception e) {
+            logger.debug("Write-behind batch of {} still failed after reloading {}: {}",
+                    batch.size(), conflict.getRid(), e.getMessage());
+            if (e instanceof OConcurrentModificationException) {
+                conflicts.increment();
+            }
+            return false;
+        } finally {
+            conflictResolution.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T> void retryOnNextPass(String kind, Function<T, String> idOf, T aggregate, Exception failure,
+            Consumer<T> requeue, Consumer<T> rewrite) {
+        if (failure instanceof OConcurrentModificationException) {
+            logger.debug("Write-behind for {} {} conflicted, retrying on next pass: {}",
+                    kind, idOf.apply(aggregate), failure.getMessage());
+            conflictsRequeued.increment();
+            requeue.accept(aggregate);
+        } else {
+            logger.warn("Write-behind failed for {} {}, retrying on next pass: {}",
+                    kind, idOf.apply(aggregate), failure.getMessage());
+            rewrite.accept(aggregate);
+        }
+    }
+
+    /**
+     * Writes the items with update commands, a batch per transaction.
+     * @return The items of the batches that failed, to be written through their vertex instead.
+     */
+    private List<Item> updateInPlace(List<Item> items) {
+        List<Item> failed = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += batchSize) {
+            List<Item> batch = items.subList(from, Math.min(items.size(), from + batchSize));
+            UpdateCommands commands = new UpdateCommands();
+            batch.forEach(item -> itemService.addUpdateCommands(commands, item));
+            Set<String> missed = new HashSet<>();
+            try {
+                inUnit(unit -> missed.addAll(commands.execute(unit.session())));
+            } catch (Exception e) {
+                logger.debug("Update commands for {} items failed, writing them through their vertex: {}",
+                        batch.size(), e.getMessage());
+                failed.addAll(batch);
+                continue;
+            }
+            updateCommands.increment(batch.size() - missed.size());
+            // An item without a vertex or position edge to update is rewritten in full on the next pass.
+            for (String id : missed) {
+                logger.debug("Update commands found nothing to update for item {}, rewriting it on next pass.", id);
+                graphStore.markItemDirty(id);
+            }
+        }
+        return failed;
+    }
+
+    private <T> void inUnit(List<T> batch, BiConsumer<UnitOfWork, T> write) {
+        inUnit(unit -> batch.forEach(aggregate -> write.accept(unit, aggregate)));
+    }
+
+    private void inUnit(Consumer<UnitOfWork> work) {
+        try (UnitOfWork unit = new UnitOfWork(orientDBService.getSession(), vertexLookup)) {
+            try {
+                work.accept(unit);
+                unit.commit();
+            } catch (RuntimeException e) {
+                rolledBack.increment();
+                throw e;
+            }
+            committed.increment();
+        }
+    }
+}
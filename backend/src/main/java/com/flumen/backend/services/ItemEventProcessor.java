@@ -1,184 +1,282 @@
 package com.flumen.backend.services;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import javax.annotation.PreDestroy;
+
 import com.flumen.backend.domain.Item;
 import com.flumen.backend.domain.Location;
 import flumen.events.DomainEvent;
-import flumen.events.ItemActivatedEvent;
-import flumen.events.ItemCreatedEvent;
-import flumen.events.ItemDeactivatedEvent;
 import flumen.events.ItemPositionChangedEvent;
-import flumen.events.ItemPropertiesUpdatedEvent;
-import flumen.events.ItemSpeedChangedEvent;
-import flumen.events.LocationConnectionCreatedEvent;
-import flumen.events.LocationCreatedEvent;
-import flumen.events.LocationPropertiesUpdatedEvent;
-import com.flumen.backend.models.UpdateModel;
-import com.flumen.backend.models.input.ItemInput;
-import com.flumen.backend.models.input.LocationInput;
-import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
-
-import java.util.HashMap;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @Service
 public class ItemEventProcessor {
     private static final Logger logger = LoggerFactory.getLogger(ItemEventProcessor.class);
 
     private final EventStore eventStore;
-    private final OrientDBService orientDBService;
-    private final ClickHouseService clickHouseService;
-    private final ItemService itemService;
-    private final LocationService locationService;
+    private final ClickHouseEventSink clickHouseEventSink;
     private final WebSocketService webSocketService;
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private final GraphStore graphStore;
+    private final EventLaneExecutor eventLanes;
+    private final RecentEventIds recentEventIds;
+    private final Counter staleRetries;
+    private final EventApplier.Entities liveEntities = new LiveEntities();
+    // Timestamp of the latest event applied per entity, to recognize retries overtaken by newer events.
+    private final Map<String, Instant> lastAppliedAt = new ConcurrentHashMap<>();
 
     public ItemEventProcessor(
             EventStore eventStore, 
-            OrientDBService orientDBService,
-            ClickHouseService clickHouseService,
-            ItemService itemService,
-            LocationService locationService,
-            WebSocketService webSocketService) {
+            ClickHouseEventSink clickHouseEventSink,
+            WebSocketService webSocketService,
+            GraphStore graphStore,
+            EventLaneExecutor eventLanes,
+            RecentEventIds recentEventIds,
+            MeterRegistry meterRegistry) {
         this.eventStore = eventStore;
-        this.orientDBService = orientDBService;
-        this.clickHouseService = clickHouseService;
-        this.itemService = itemService;
-        this.locationService = locationService;
+        this.clickHouseEventSink = clickHouseEventSink;
         this.webSocketService = webSocketService;
+        this.graphStore = graphStore;
+        this.eventLanes = eventLanes;
+        this.recentEventIds = recentEventIds;
+        this.staleRetries = Counter.builder("flumen.events.retries.stale")
+                .description("Retried events skipped because their entity applied a newer event since")
+                .register(meterRegistry);
     }
 
     public CompletableFuture<Void> process(DomainEvent event) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                // 1. Store the event in OrientDB
-                eventStore.saveEvents(event.getEntityId(), List.of(event));
-                
-                // 2. Store the event in ClickHouse
-                clickHouseService.saveEvent(event);
-                
-                // 3. Update the read model using existing services
-                processEvent(event);
-                
-                logger.info("Successfully processed event: {} for item: {}", 
-                    event.getEventType(), event.getEntityId());
-            } catch (Exception e) {
-                logger.error("Error processing event: {} for item: {}", 
-                    event.getEventType(), event.getEntityId(), e);
-                throw e;
-            }
+        return processBatch(List.of(event)).get(0);
+    }
+
+    public List<CompletableFuture<Void>> processBatch(List<DomainEvent> events) {
+        return processBatch(events, event -> false);
+    }
+
+    /**
+     * Runs a batch of events through the pipeline. The events of each entity are applied in order on that
+     * entity's lane; different entities proceed in parallel. The events that applied are then stored with one
+     * append and queued for ClickHouse, so that a failed event is never logged as if it had happened. Events
+     * that were applied recently, such as broker redeliveries, are skipped and reported as applied.
+     *
+     * An event delivered again after it failed is skipped as well when its entity has applied a newer event
+     * since, which the retry would otherwise overwrite with older state.
+     *
+     * @param retried Tells the events that are delivered again after failing.
+     * @return One future per event, in the order of the batch, completed once the event has been applied.
+     */
+    public List<CompletableFuture<Void>> processBatch(List<DomainEvent> events, Predicate<DomainEvent> retried) {
+        return processBatch(events, retried, event -> true);
+    }
+
+    /**
+     * Moves an item onto the next location as predicted by the {@link ProgressEngine}, through the same lane,
+     * event log and ClickHouse sink as received events. The move is dropped if an event has moved the item off
+     * the location it was predicted to leave, since an observed move wins over a prediction.
+     *
+     * @return Completed once the move has been applied or dropped.
+     */
+    public CompletableFuture<Void> processPredictedMove(ItemPositionChangedEvent move, String fromLocationId) {
+        return processBatch(List.of(move), event -> false,
+                event -> fromLocationId.equals(graphStore.findItemLocationId(event.getEntityId()))).get(0);
+    }
+
+    /**
+     * @param applicable Checked on the lane right before an event is applied, an event it rejects is skipped.
+     */
+    private List<CompletableFuture<Void>> processBatch(List<DomainEvent> events, Predicate<DomainEvent> retried,
+            Predicate<DomainEvent> applicable) {
+        List<CompletableFuture<Void>> results = new ArrayList<>(events.size());
+        Map<String, List<Integer>> indexesByEntity = new LinkedHashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            results.add(new CompletableFuture<>());
+            indexesByEntity.computeIfAbsent(events.get(i).getEntityId(), id -> new ArrayList<>()).add(i);
+        }
+
+        indexesByEntity.forEach((entityId, indexes) -> {
+            submitToLane(entityId, () -> {
+                List<DomainEvent> applied = new ArrayList<>(indexes.size());
+                List<CompletableFuture<Void>> appliedResults = new ArrayList<>(indexes.size());
+                // Applied in this task but only remembered once logged, so copies within the batch are caught here.
+                Set<String> appliedIds = new HashSet<>();
+                for (int index : indexes) {
+                    DomainEvent event = events.get(index);
+                    CompletableFuture<Void> result = results.get(index);
+                    if (appliedIds.contains(event.getEventId()) || recentEventIds.seen(entityId, event.getEventId())) {
+                        logger.debug("Skipping duplicate event {}", event.getEventId());
+                        result.complete(null);
+                        continue;
+                    }
+                    if (retried.test(event) && isStale(event)) {
+                        logger.debug("Skipping retried event {}, {} has applied a newer event since",
+                                event.getEventId(), entityId);
+                        staleRetries.increment();
+                        result.complete(null);
+                        continue;
+                    }
+                    if (!applicable.test(event)) {
+                        logger.debug("Skipping event {}, no longer applicable to {}", event.getEventId(), entityId);
+                        result.complete(null);
+                        continue;
+                    }
+                    try {
+                        // Apply the event to the in-memory graph, persisted to OrientDB by the write-behind
+                        processEvent(event);
+                        recordApplied(event);
+                        if (event.getEventId() != null) {
+                            appliedIds.add(event.getEventId());
+                        }
+                        applied.add(event);
+                        appliedResults.add(result);
+
+                        logger.debug("Successfully processed event: {} for item: {}",
+                            event.getEventType(), event.getEntityId());
+                    } catch (Exception e) {
+                        logger.error("Error processing event: {} for item: {}",
+                            event.getEventType(), event.getEntityId(), e);
+                        result.completeExceptionally(e);
+                    }
+                }
+                if (applied.isEmpty()) {
+                    return;
+                }
+
+                // Store the applied events in the event log and queue them for the next batched ClickHouse insert
+                eventStore.saveEvents(entityId, applied);
+                for (int i = 0; i < applied.size(); i++) {
+                    DomainEvent event = applied.get(i);
+                    clickHouseEventSink.enqueue(event);
+                    recentEventIds.add(entityId, event.getEventId());
+                    appliedResults.get(i).complete(null);
+                }
+            }).whenComplete((ignored, failure) -> {
+                // The append failed, or the lane rejected the task. Events applied before a failed append stay
+                // applied in memory but are reported failed, so that they are retried and logged then.
+                if (failure != null) {
+                    indexes.forEach(i -> results.get(i).completeExceptionally(failure));
+                }
+            });
         });
+        return results;
     }
 
-/**
- * A generic helper that executes a database operation and retries it
- * automatically if a OConcurrentModificationException occurs.
- *
- * @param operation The block of code to execute.
- */
-private void executeWithRetry(Runnable operation) {
-    final int MAX_RETRIES = 3;
-    int attempt = 0;
-
-    while (true) { // Loop indefinitely until success or permanent failure
+    /**
+     * Submits to the entity's lane, turning a rejection into a failed task so that it fails the entity's events
+     * like a failed append, rather than escaping and leaving their futures pending.
+     */
+    private CompletableFuture<Void> submitToLane(String entityId, Runnable task) {
         try {
-            operation.run();
-            return; // Operation was successful, exit the method.
-        } catch (OConcurrentModificationException e) {
-            attempt++;
-            if (attempt >= MAX_RETRIES) {
-                logger.error("Operation failed after {} retries due to persistent concurrent modification.", MAX_RETRIES, e);
-                throw e; // Give up and re-throw the exception.
-            }
-
-            logger.warn("Concurrent modification detected. Retrying attempt {}/{}.", attempt, MAX_RETRIES);
-            
-            try {
-                Thread.sleep(50 + new Random().nextInt(50)); // Wait before next attempt
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Retry attempt was interrupted", ie);
-            }
+            return eventLanes.submit(entityId, task);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
         }
     }
-}
 
-   private void processEvent(DomainEvent event) {
-    executeWithRetry(() -> {
-        switch (event) {
-            case ItemCreatedEvent e -> {
-                var item = new ItemInput(e);
-                itemService.createItem(item);
-            }
-
-            case ItemPositionChangedEvent e -> {
-                var item = itemService.getItemById(e.getEntityId());
-                var location = locationService.getLocationById(e.getLocationId());
-                item.updatePosition(location);
-                itemService.fullUpdateItem(item);
-                webSocketService.broadcastPositionUpdate(item.getId(), location.getId());
-            }
-
-            case ItemSpeedChangedEvent e -> {
-                var item = itemService.getItemById(e.getEntityId());
-                item.updateSpeed(e);
-                itemService.fullUpdateItem(item);
-            }
-
-            case ItemDeactivatedEvent e -> { // Corrected type
-                var item = itemService.getItemById(e.getEntityId());
-                item.stop();
-                Map<String, Object> updateData = new HashMap<>();
-                updateData.put("active", item.isActive());
-                itemService.updateItem(new UpdateModel(item.getId(), updateData));
-            }
-
-            case ItemActivatedEvent e -> {
-                var item = itemService.getItemById(e.getEntityId());
-                item.resume();
-                Map<String, Object> updateData = new HashMap<>();
-                updateData.put("active", item.isActive());
-                itemService.updateItem(new UpdateModel(item.getId(), updateData));
-            }
-
-            case ItemPropertiesUpdatedEvent e -> {
-                var item = itemService.getItemById(e.getEntityId());
-                item.updateProperties(e);
-                Map<String, Object> updateData = new HashMap<>();
-                updateData.put("properties", item.getProperties());
-                itemService.updateItem(new UpdateModel(item.getId(), updateData));
-            }
-
-            case LocationCreatedEvent e -> {
-                var location = new LocationInput(e);
-                locationService.createLocation(location);
-            }
-
-            case LocationPropertiesUpdatedEvent e -> {
-                var location = locationService.getLocationById(e.getEntityId());
-                location.updateProperties(e);
-                Map<String, Object> updateData = new HashMap<>();
-                updateData.put("properties", location.getProperties());
-                locationService.updateLocation(new UpdateModel(location.getId(), updateData));
-            }
-
-            case LocationConnectionCreatedEvent e -> {
-                var fromLocation = locationService.getLocationById(e.getEntityId());
-
-                fromLocation.addConnectionTo(e.getLocation2Id());
-
-                locationService.fullUpdateLocation(fromLocation);
-            }
-
-            default -> logger.warn("Unknown event type: {}", event.getClass().getSimpleName());
-            }
-        });
+    /**
+     * Drains the lanes while the event store is still open, since their tasks append to it. Spring destroys this
+     * processor before the lanes and the event store it depends on, but sets no order between those two.
+     */
+    @PreDestroy
+    public void shutdown() {
+        eventLanes.shutdown();
+    }
+
+    /**
+     * @return Whether the entity of the event has applied an event with a later timestamp.
+     */
+    private boolean isStale(DomainEvent event) {
+        Instant last = lastAppliedAt.get(event.getEntityId());
+        return last != null && event.getTimestamp() != null && event.getTimestamp().isBefore(last);
+    }
+
+    private void recordApplied(DomainEvent event) {
+        if (event.getTimestamp() != null) {
+            lastAppliedAt.merge(event.getEntityId(), event.getTimestamp(), (a, b) -> b.isAfter(a) ? b : a);
+        }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Applies an event read back from the event log at startup, without storing it again. The event is
+     * remembered as applied, so a redelivery of it by the broker is skipped.
+     *
+     * Events set state and carry their own timestamps, so applying one that the hydrated state already
+     * reflects leaves that state as it was. Events that fail here failed when they first arrived too.
+     */
+    void replay(DomainEvent event) {
+        try {
+            processEvent(event);
+            recordApplied(event);
+        } catch (Exception e) {
+            logger.debug("Replayed event {} not applied: {}", event.getEventId(), e.getMessage());
+        }
+        recentEventIds.add(event.getEntityId(), event.getEventId());
+    }
+
+    /**
+     * Blocks until every event stored so far is durable in the event log.
+     */
+    public void awaitDurable() {
+        eventStore.awaitDurable();
+    }
+
+    /**
+     * Applies an event to the in-memory graph. Every change is made under the monitor of its aggregate, so
+     * events never conflict with each other; conflicts with the stored graph are resolved by
+     * {@link GraphWriteBehind} when it writes the changes.
+     */
+    void processEvent(DomainEvent event) {
+        if (!EventApplier.apply(event, liveEntities)) {
+            logger.warn("Unknown event type: {}", event.getClass().getSimpleName());
+            return;
+        }
+        if (event instanceof ItemPositionChangedEvent e) {
+            webSocketService.broadcastPositionUpdate(e.getEntityId(), e.getLocationId());
+        }
+    }
+
+    /**
+     * The live graph, which fails an event about an entity it does not have, so the event is retried.
+     */
+    private class LiveEntities implements EventApplier.Entities {
+        @Override
+        public void addItem(Item item) {
+            graphStore.addItem(item);
+        }
+
+        @Override
+        public void addLocation(Location location) {
+            graphStore.addLocation(location);
+        }
+
+        @Override
+        public Location location(String id) {
+            return graphStore.liveLocation(id);
+        }
+
+        @Override
+        public void updateItem(String id, Consumer<Item> change) {
+            graphStore.updateItem(id, change);
+        }
+
+        @Override
+        public void updateLocation(String id, Consumer<Location> change) {
+            graphStore.updateLocation(id, change);
+        }
+    }
+}
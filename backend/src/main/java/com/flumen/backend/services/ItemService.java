@@ -4,16 +4,10 @@ import com.flumen.backend.domain.Item;
 import com.flumen.backend.domain.Location;
 import com.flumen.backend.models.UpdateModel;
 import com.flumen.backend.models.input.ItemInput;
-import com.flumen.backend.utils.OrientDBUtils;
-import com.orientechnologies.orient.core.db.ODatabaseSession;
 import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
 import com.orientechnologies.orient.core.record.ODirection;
 import com.orientechnologies.orient.core.record.OEdge;
 import com.orientechnologies.orient.core.record.OVertex;
-import com.orientechnologies.orient.core.sql.executor.OResult;
-import com.orientechnologies.orient.core.sql.executor.OResultSet;
-import com.orientechnologies.orient.core.id.ORecordId;
-import com.orientechnologies.orient.core.id.ORID;
 
 import org.springframework.stereotype.Service;
 
@@ -24,81 +18,78 @@ import java.util.Objects;
 
 @Service
 public class ItemService {
-    private final OrientDBService orientDBService;
-    private final UpdateService updateService;
-    public ItemService(EventStore eventStore, OrientDBService orientDBService, UpdateService updateService) {
-        this.orientDBService = orientDBService;
-        this.updateService = updateService;
+    private final GraphStore graphStore;
+
+    public ItemService(GraphStore graphStore) {
+        this.graphStore = graphStore;
     }
 
     public List<Item> getAllItems() {
-        List<Item> items = new ArrayList<>();
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            try (OResultSet rs = db.query("SELECT * FROM Item")) {
-                while (rs.hasNext()) {
-                    OResult row = rs.next();
-                    row.getVertex().ifPresent(vertex -> {
-                        Item item = vertexToItem(vertex);
-                        items.add(item);
-                    });
-                }
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Error while fetching items: " + e.getMessage(), e);
-        }
-    
-        return items;
+        return graphStore.getAllItems();
     }
-    
 
     public Item getItemById(String id) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            var itemInDb = OrientDBUtils.loadAndValidateVertexByCustomId(db, id);
-            Item item = vertexToItem(itemInDb);
-            return item;
-        } catch (Exception e) {
-            throw new RuntimeException("Error while fetching item with ID " + id + ": " + e.getMessage(), e);
-        }
+        return graphStore.getItem(id);
     }
 
     public Item createItem(ItemInput item) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            if (OrientDBUtils.checkIfAlreadyExists(db, item.getId())) {
-                throw new IllegalArgumentException("Item with ID " + item.getId() + " already exists.");
-            }
-    
-            OVertex vertex = db.newVertex("Item");
-            vertex.setProperty("customId", item.getId());
-            vertex.setProperty("name", item.getName());
-            vertex.setProperty("speed", item.getSpeed());
-            vertex.setProperty("active", item.getActive());
-            vertex.setProperty("properties", item.getProperties());
-    
-            vertex.save();
-            return vertexToItem(vertex);
-        } catch (Exception e) {
-            throw new RuntimeException(
-                    "Error while creating item with ID " + item.getId() + ": " + e.getMessage(), e);
-        }
+        return graphStore.addItem(new Item(
+            item.getId(),
+            item.getName(),
+            item.getSpeed(),
+            Boolean.TRUE.equals(item.getActive()),
+            item.getProperties()
+        ));
     }
-    
 
     public Item updateItem(UpdateModel model) {
-        return  vertexToItem(this.updateService.updateVertex(model));
+        return graphStore.updateItem(model.getId(), item -> item.applyChanges(model.getProperties()));
     }
 
-    public Item fullUpdateItem(Item item) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            OVertex itemVertex = OrientDBUtils.loadAndValidateVertexByCustomId(db, item.getId());
+    /**
+     * Writes the changes of the given item to OrientDB in the given unit of work, creating its vertex if it does
+     * not exist yet. Only the vertex properties that changed are set, and the position edge is only looked at
+     * when the position or the progress changed.
+     * Called by the write-behind, never on the request or event path.
+     */
+    public void saveItem(UnitOfWork unit, Item item) {
+        if (!item.hasChanges()) {
+            return;
+        }
+        try {
+            OVertex itemVertex = unit.findOrCreate("Item", item.getId());
     
-            // 1. Update the simple properties of the Item vertex
-            itemVertex.setProperty("name", item.getName());
-            itemVertex.setProperty("speed", item.getSpeed());
-            itemVertex.setProperty("active", item.isActive());
-            itemVertex.setProperty("properties", item.getProperties());
+            // 1. Update the changed properties of the Item vertex
+            boolean vertexChanged = false;
+            if (item.hasChanged(Item.Change.NAME)) {
+                itemVertex.setProperty("name", item.getName());
+                vertexChanged = true;
+            }
+            if (item.hasChanged(Item.Change.SPEED)) {
+                itemVertex.setProperty("speed", item.getSpeed());
+                vertexChanged = true;
+            }
+            if (item.hasChanged(Item.Change.ACTIVE)) {
+                itemVertex.setProperty("active", item.isActive());
+                vertexChanged = true;
+            }
+            if (item.hasChanged(Item.Change.PROPERTIES) || !item.mergedPropertyKeys().isEmpty()) {
+                itemVertex.setProperty("properties", item.getProperties());
+                vertexChanged = true;
+            }
+            if (vertexChanged) {
+                itemVertex.save();
+            }
     
-            // 2. Reconcile the 'HasPosition' edge (the improved logic)
-            OEdge positionEdge = reconcilePosition(db, itemVertex, item.getLocation());
+            // 2. Reconcile the 'HasPosition' edge, or just find it when only the progress changed
+            OEdge positionEdge;
+            if (item.hasChanged(Item.Change.POSITION)) {
+                positionEdge = reconcilePosition(unit, itemVertex, item.getLocation());
+            } else if (item.hasChanged(Item.Change.PROGRESS)) {
+                positionEdge = currentPosition(itemVertex);
+            } else {
+                return;
+            }
     
             // 3. Update the properties on the edge (progress, etc.)
             //    The reconcilePosition method conveniently returns the correct edge to work with.
@@ -107,42 +98,89 @@ public class ItemService {
                 positionEdge.setProperty("datetime", item.getProgressInfo().getDatetime());
                 positionEdge.save();
             }
-            
-            // 4. Save the item vertex itself
-            itemVertex.save();
-            
-            // 5. Return the fully persisted domain object
-            return vertexToItem(itemVertex);
-    
         }
         catch (OConcurrentModificationException oce) {
             throw oce;
         } catch (Exception e) {
-            throw new RuntimeException("Error during full update of item with ID " + item.getId(), e);
+            throw new RuntimeException("Error while saving item with ID " + item.getId(), e);
         }
     }
 
+    /**
+     * @return Whether the changes of the item can be written by {@link #addUpdateCommands}. A moved item needs
+     * its vertex loaded to replace the position edge.
+     */
+    public boolean canUpdateInPlace(Item item) {
+        return !item.hasChanged(Item.Change.POSITION);
+    }
+
+    /**
+     * Adds the changes of the given item to the commands as atomic updates: one indexed update of the vertex,
+     * which merges single keys into the properties map, and one of the position edge if the progress changed.
+     * Only for items that {@link #canUpdateInPlace} and whose vertex therefore exists.
+     */
+    public void addUpdateCommands(UpdateCommands commands, Item item) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (item.hasChanged(Item.Change.NAME)) {
+            assignments.add("name = ?");
+            args.add(item.getName());
+        }
+        if (item.hasChanged(Item.Change.SPEED)) {
+            assignments.add("speed = ?");
+            args.add(item.getSpeed());
+        }
+        if (item.hasChanged(Item.Change.ACTIVE)) {
+            assignments.add("active = ?");
+            args.add(item.isActive());
+        }
+        if (item.hasChanged(Item.Change.PROPERTIES)) {
+            assignments.add("properties = ?");
+            args.add(item.getProperties());
+        }
+        for (String key : item.mergedPropertyKeys()) {
+            assignments.add("properties[?] = ?");
+            args.add(key);
+            args.add(item.getProperties().get(key));
+        }
+        if (!assignments.isEmpty()) {
+            args.add(item.getId());
+            commands.add(item.getId(), "UPDATE Item SET " + String.join(", ", assignments) + " WHERE customId = ?",
+                    args.toArray());
+        }
+
+        if (item.hasChanged(Item.Change.PROGRESS) && item.getProgressInfo() != null) {
+            commands.add(item.getId(),
+                    "UPDATE (SELECT expand(outE('HasPosition')) FROM Item WHERE customId = ?) SET progress = ?, datetime = ?",
+                    item.getId(), item.getProgressInfo().getProgress(), item.getProgressInfo().getDatetime());
+        }
+    }
+
+    private static OEdge currentPosition(OVertex itemVertex) {
+        Iterator<OEdge> edges = itemVertex.getEdges(ODirection.OUT, "HasPosition").iterator();
+        return edges.hasNext() ? edges.next() : null;
+    }
+
     /**
      * Ensures the item's 'HasPosition' edge in the database correctly points to the desired location.
      * This method performs a database write (delete or create) only if the item's location has actually changed.
      *
-     * @param db The active ODatabaseSession.
+     * @param unit The unit of work the item is written in.
      * @param itemVertex The OVertex for the item being updated.
      * @param desiredLocation The Location domain object representing the item's desired position. Can be null.
      * @return The current and correct OEdge representing the item's position, or null if the item should have no position.
      */
-    private OEdge reconcilePosition(ODatabaseSession db, OVertex itemVertex, Location desiredLocation) {
+    private OEdge reconcilePosition(UnitOfWork unit, OVertex itemVertex, Location desiredLocation) {
         // === Step 1: Get the current state from the database ===
         
         // An item should only have one 'HasPosition' edge, but we query robustly.
-        Iterator<OEdge> currentEdges = itemVertex.getEdges(ODirection.OUT, "HasPosition").iterator();
-        OEdge currentEdge = currentEdges.hasNext() ? currentEdges.next() : null;
+        OEdge currentEdge = currentPosition(itemVertex);
         String currentPositionId = null;
 
         if (currentEdge != null) {
             OVertex currentTargetVertex = currentEdge.getTo();
             if (currentTargetVertex != null) {
-                currentPositionId = currentTargetVertex.getProperty("id");
+                currentPositionId = currentTargetVertex.getProperty("customId");
             }
         }
         
@@ -170,7 +208,7 @@ public class ItemService {
         // This handles both moving from null -> new, and from old -> new.
         if (desiredPositionId != null) {
             // Load the vertex for the new location.
-            OVertex toLocationVertex = OrientDBUtils.loadAndValidateVertexByCustomId(db, desiredPositionId);
+            OVertex toLocationVertex = unit.load("Location", desiredPositionId);
             // Create the new edge and return it.
             return itemVertex.addEdge(toLocationVertex, "HasPosition");
         }
@@ -180,26 +218,17 @@ public class ItemService {
     }
 
     public void deleteItem(String id) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            OVertex toLocationVertex = OrientDBUtils.loadAndValidateVertexByCustomId(db, id);
-            toLocationVertex.delete();
-        } catch (Exception e) {
-            throw new RuntimeException("Error while deleting item with ID " + id + ": " + e.getMessage(), e);
-        }
+        graphStore.removeItem(id);
     }
-    
 
-    private Item vertexToItem(OVertex vertex) {
-        if (vertex == null) {
-            throw new IllegalArgumentException("Attempted to convert a null vertex to item.");
+    /**
+     * Deletes the item vertex from OrientDB in the given unit of work if it was ever persisted.
+     */
+    public void deleteItemVertex(UnitOfWork unit, String id) {
+        try {
+            unit.delete("Item", id);
+        } catch (Exception e) {
+            throw new RuntimeException("Error while deleting item with ID " + id + ": " + e.getMessage(), e);
         }
-        return new Item(
-            vertex.getProperty("customId"),
-            vertex.getProperty("name"),
-            vertex.getProperty("speed"),
-            vertex.getProperty("active"),
-            vertex.getProperty("properties")
-        );
     }
-    
 }
@@ -1,27 +1,18 @@
 package com.flumen.backend.services;
 
-import com.flumen.backend.config.RequestLoggingFilter;
 import com.flumen.backend.domain.Location;
-import flumen.events.DomainEvent;
 import com.flumen.backend.models.UpdateModel;
 import com.flumen.backend.models.input.LocationInput;
-import com.flumen.backend.utils.OrientDBUtils;
-import com.orientechnologies.orient.core.db.ODatabaseSession;
 import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
-import com.orientechnologies.orient.core.id.ORID;
-import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.ODirection;
 import com.orientechnologies.orient.core.record.OEdge;
 import com.orientechnologies.orient.core.record.OVertex;
-import com.orientechnologies.orient.core.sql.executor.OResult;
-import com.orientechnologies.orient.core.sql.executor.OResultSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -31,120 +22,156 @@ import java.util.Set;
 @Service
 public class LocationService {
 
-    private final OrientDBService orientDBService;
-    private final UpdateService updateService;
+    private final GraphStore graphStore;
     private static final Logger logger = LoggerFactory.getLogger(LocationService.class);
 
     @Autowired
-    public LocationService(OrientDBService orientDBService, UpdateService updateService) {
-        this.orientDBService = orientDBService;
-        this.updateService = updateService;
+    public LocationService(GraphStore graphStore) {
+        this.graphStore = graphStore;
     }
 
     public List<Location> getAllLocations() {
-        List<Location> locations = new ArrayList<>();
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            try (OResultSet rs = db.query("SELECT * FROM Location")) {
-                while (rs.hasNext()) {
-                    OResult row = rs.next();
-                    row.getVertex().ifPresent(vertex -> {
-                        Location location = vertexToLocation(vertex);
-                        locations.add(location);
-                    });
-                }
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Error while fetching locations: " + e.getMessage(), e);
-        }
-
-        return locations;
+        return graphStore.getAllLocations();
     }
 
     public Location getLocationById(String id) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            var vertex = OrientDBUtils.loadAndValidateVertexByCustomId(db, id);
-            Location location = vertexToLocation(vertex);
-            return location;
-        } catch (Exception e) {
-            throw new RuntimeException("Error while fetching location with ID " + id + ": " + e.getMessage(), e);
-        }
+        return graphStore.getLocation(id);
     }
 
     public Location createLocation(LocationInput location) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            if (OrientDBUtils.checkIfAlreadyExists(db, location.getId())) {
-                throw new IllegalArgumentException("Location with name " + location.getName() + " already exists.");
-            }
-            OVertex vertex = db.newVertex("Location");
-            vertex.setProperty("name", location.getName());
-            vertex.setProperty("customId", location.getId());
-            vertex.setProperty("latitude", location.getLatitude());
-            vertex.setProperty("longitude", location.getLongitude());
-            vertex.setProperty("length", location.getLength());
-            vertex.setProperty("speed", location.getSpeed());
-            vertex.setProperty("type", location.getType());
-            vertex.setProperty("active", location.getActive());
-            vertex.save();
-            return vertexToLocation(vertex);
-        } catch (Exception e) {
-            throw new RuntimeException(
-                    "Error while creating location with name " + location.getName() + ": " + e.getMessage(), e);
-        }
+        return graphStore.addLocation(new Location(
+            location.getId(),
+            location.getName(),
+            location.getLatitude(),
+            location.getLongitude(),
+            location.getLength(),
+            location.getSpeed(),
+            location.getType(),
+            location.getActive(),
+            location.getProperties()
+        ));
     }
 
     public Location updateLocation(UpdateModel model) {
-        return vertexToLocation(this.updateService.updateVertex(model));
+        return graphStore.updateLocation(model.getId(), location -> location.applyChanges(model.getProperties()));
     }
 
-    public Location fullUpdateLocation(Location location) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            OVertex locationVertex = OrientDBUtils.loadAndValidateVertexByCustomId(db, location.getId());
-    
-            locationVertex.setProperty("name", location.getName());
-            locationVertex.setProperty("latitude", location.getLatitude());
-            locationVertex.setProperty("longitude", location.getLongitude());
-            locationVertex.setProperty("length", location.getLength());
-            locationVertex.setProperty("speed", location.getSpeed());
-            locationVertex.setProperty("type", location.getType());
-            locationVertex.setProperty("active", location.getActive());
-            locationVertex.setProperty("properties", location.getProperties());
-            
-            reconcileConnections(db, locationVertex, location.getOutboundConnectionIds());
-    
-            locationVertex.save();
-            
-            return vertexToLocation(locationVertex);
+    /**
+     * Writes the changed properties of the given location to OrientDB in the given unit of work, creating its
+     * vertex if it does not exist yet. Its connections are written separately by {@link #saveConnections}, once
+     * every location they point to exists.
+     * Called by the write-behind, never on the request or event path.
+     */
+    public void saveLocation(UnitOfWork unit, Location location) {
+        if (!location.hasChanges()) {
+            return;
+        }
+        try {
+            OVertex locationVertex = unit.findOrCreate("Location", location.getId());
     
+            boolean vertexChanged = false;
+            vertexChanged |= setIfChanged(locationVertex, location, Location.Change.NAME, "name", location.getName());
+            vertexChanged |= setIfChanged(locationVertex, location, Location.Change.LATITUDE, "latitude", location.getLatitude());
+            vertexChanged |= setIfChanged(locationVertex, location, Location.Change.LONGITUDE, "longitude", location.getLongitude());
+            vertexChanged |= setIfChanged(locationVertex, location, Location.Change.LENGTH, "length", location.getLength());
+            vertexChanged |= setIfChanged(locationVertex, location, Location.Change.SPEED, "speed", location.getSpeed());
+            vertexChanged |= setIfChanged(locationVertex, location, Location.Change.TYPE, "type", location.getType());
+            vertexChanged |= setIfChanged(locationVertex, location, Location.Change.ACTIVE, "active", location.getActive());
+            vertexChanged |= setIfChanged(locationVertex, location, Location.Change.PROPERTIES, "properties", location.getProperties());
+            if (vertexChanged) {
+                locationVertex.save();
+            }
         }
         catch (OConcurrentModificationException oce) {
             throw oce;
         } catch (Exception e) {
-            throw new RuntimeException("Error during full update of location with ID " + location.getId(), e);
+            throw new RuntimeException("Error while saving location with ID " + location.getId(), e);
         }
     }
 
-    public void deleteLocation(String id) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            OVertex toLocationVertex = OrientDBUtils.loadAndValidateVertexByCustomId(db, id);
-            toLocationVertex.delete();
+    /**
+     * Writes the outbound connections of the given location to OrientDB in the given unit of work, if they changed.
+     * Connections replaced as a whole replace the edges, otherwise only the edges of the connections added or
+     * removed here are written, so that connections other instances made to the location are kept.
+     */
+    public void saveConnections(UnitOfWork unit, Location location) {
+        if (!location.hasConnectionChanges()) {
+            return;
+        }
+        try {
+            OVertex fromVertex = unit.load("Location", location.getId());
+            if (location.hasChanged(Location.Change.CONNECTIONS)) {
+                reconcileConnections(unit, fromVertex, location.getOutboundConnectionIds());
+            } else {
+                applyConnectionChanges(unit, fromVertex, location.addedConnectionIds(), location.removedConnectionIds());
+            }
+        }
+        catch (OConcurrentModificationException oce) {
+            throw oce;
         } catch (Exception e) {
-            throw new RuntimeException("Error while deleting location with ID " + id + ": " + e.getMessage(), e);
+            throw new RuntimeException("Error while saving connections of location with ID " + location.getId(), e);
         }
     }
 
+    private static boolean setIfChanged(OVertex vertex, Location location, Location.Change change, String name, Object value) {
+        if (!location.hasChanged(change)) {
+            return false;
+        }
+        vertex.setProperty(name, value);
+        return true;
+    }
+
+    public void deleteLocation(String id) {
+        graphStore.removeLocation(id);
+    }
+
     /**
-     * A helper method to efficiently update the 'ConnectedTo' edges for a location.
-     * It compares the current state in the DB with the desired state from the domain object
-     * and only adds/removes the edges that have changed.
+     * Deletes the location vertex, and with it all of its edges, from OrientDB in the given unit of work
+     * if it was ever persisted.
      */
-    private void reconcileConnections(ODatabaseSession db, OVertex fromVertex, Set<String> desiredConnectionIds) {
-        Map<String, OEdge> currentEdges = new HashMap<>();
+    public void deleteLocationVertex(UnitOfWork unit, String id) {
+        try {
+            unit.delete("Location", id);
+        } catch (Exception e) {
+            throw new RuntimeException("Error while deleting location with ID " + id + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void applyConnectionChanges(UnitOfWork unit, OVertex fromVertex, Set<String> added, Set<String> removed) {
+        Map<String, OEdge> currentEdges = connectionEdges(fromVertex);
+        for (String idToDelete : removed) {
+            OEdge edgeToDelete = currentEdges.get(idToDelete);
+            if (edgeToDelete != null) {
+                edgeToDelete.delete();
+                logger.info("Deleted connection from {} to {}", fromVertex.getProperty("customId"), idToDelete);
+            }
+        }
+        for (String idToAdd : added) {
+            if (!currentEdges.containsKey(idToAdd)) {
+                fromVertex.addEdge(unit.load("Location", idToAdd), "ConnectedTo").save();
+                logger.info("Created connection from {} to {}", fromVertex.getProperty("customId"), idToAdd);
+            }
+        }
+    }
+
+    private static Map<String, OEdge> connectionEdges(OVertex fromVertex) {
+        Map<String, OEdge> edges = new HashMap<>();
         for (OEdge edge : fromVertex.getEdges(ODirection.OUT, "ConnectedTo")) {
             OVertex connectedVertex = edge.getTo();
             if (connectedVertex != null) {
-                currentEdges.put(connectedVertex.getProperty("id"), edge);
+                edges.put(connectedVertex.getProperty("customId"), edge);
             }
         }
+        return edges;
+    }
+
+    /**
+     * A helper method to efficiently update the 'ConnectedTo' edges for a location.
+     * It compares the current state in the DB with the desired state from the domain object
+     * and only adds/removes the edges that have changed.
+     */
+    private void reconcileConnections(UnitOfWork unit, OVertex fromVertex, Set<String> desiredConnectionIds) {
+        Map<String, OEdge> currentEdges = connectionEdges(fromVertex);
         Set<String> currentConnectionIds = currentEdges.keySet();
 
         Set<String> idsToDelete = new HashSet<>(currentConnectionIds);
@@ -153,33 +180,16 @@ public class LocationService {
         for (String idToDelete : idsToDelete) {
             OEdge edgeToDelete = currentEdges.get(idToDelete);
             edgeToDelete.delete();
-            logger.info("Deleted connection from {} to {}", fromVertex.getProperty("id"), idToDelete);
+            logger.info("Deleted connection from {} to {}", fromVertex.getProperty("customId"), idToDelete);
         }
 
         Set<String> idsToAdd = new HashSet<>(desiredConnectionIds);
         idsToAdd.removeAll(currentConnectionIds);
 
         for (String idToAdd : idsToAdd) {
-            OVertex toLocationVertex = OrientDBUtils.loadAndValidateVertexByCustomId(db, idToAdd);
+            OVertex toLocationVertex = unit.load("Location", idToAdd);
             fromVertex.addEdge(toLocationVertex, "ConnectedTo").save();
-            logger.info("Created connection from {} to {}", fromVertex.getProperty("id"), idToAdd);
-        }
-    }
-
-    private Location vertexToLocation(OVertex vertex) {
-        if (vertex == null) {
-            throw new IllegalArgumentException("Attempted to convert a null vertex to location.");
+            logger.info("Created connection from {} to {}", fromVertex.getProperty("customId"), idToAdd);
         }
-        return new Location(
-            vertex.getProperty("customId"),
-            vertex.getProperty("name"),
-            vertex.getProperty("latitude"),
-            vertex.getProperty("longitude"),
-            vertex.getProperty("length"),
-            vertex.getProperty("speed"),
-            vertex.getProperty("type"),
-            vertex.getProperty("active"),
-            vertex.getProperty("properties")
-        );
     }
 }
@@ -0,0 +1,99 @@
+package com.flumen.backend.services;
+
+import flumen.events.DomainEvent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.OVertex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@ConditionalOnProperty(name = "eventstore.backend", havingValue = "orientdb")
+public class OrientDBEventStore implements EventStore {
+    private static final Logger logger = LoggerFactory.getLogger(OrientDBEventStore.class);
+
+    private final OrientDBService orientDBService;
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule());
+    @Autowired
+    public OrientDBEventStore(OrientDBService orientDBService) {
+        this.orientDBService = orientDBService;
+        initializeEventStore();
+    }
+
+    private void initializeEventStore() {
+        orientDBService.withSession(session -> {
+            OClass eventClass = session.getClass("Event");
+            if (eventClass == null) {
+                eventClass = session.createVertexClass("Event");
+                eventClass.createProperty("entityId", OType.STRING);
+            }
+            if (eventClass.getClassIndex("Event.entityId") == null) {
+                eventClass.createIndex("Event.entityId", OClass.INDEX_TYPE.NOTUNIQUE, "entityId");
+            }
+        });
+    }
+
+    /**
+     * Stores the events in one transaction. Unlike withSession, a failure reaches the caller, which must not
+     * report the events as stored.
+     */
+    @Override
+    public void saveEvents(String aggregateId, List<DomainEvent> events) {
+        try (ODatabaseSession session = orientDBService.getSession()) {
+            session.begin();
+            try {
+                for (DomainEvent event : events) {
+                    saveEvent(session, event);
+                }
+                session.commit();
+            } catch (RuntimeException e) {
+                session.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private void saveEvent(ODatabaseSession session, DomainEvent event) {
+        OVertex eventVertex = session.newVertex("Event");
+        eventVertex.setProperty("eventId", event.getEventId());
+        eventVertex.setProperty("entityId", event.getEntityId());
+        eventVertex.setProperty("timestamp", event.getTimestamp());
+        eventVertex.setProperty("eventType", event.getEventType());
+        try {
+            eventVertex.setProperty("eventData", objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Could not serialize event " + event.getEventId(), e);
+        }
+        eventVertex.save();
+    }
+
+    @Override
+    public List<DomainEvent> getEventsForEntity(String entityId) {
+        List<DomainEvent> events = new ArrayList<>();
+        orientDBService.withSession(session -> {
+            String query = "SELECT FROM Event WHERE entityId = ? ORDER BY timestamp ASC";
+            session.query(query, entityId).stream().forEach(result -> {
+                String eventData = result.getProperty("eventData");
+                try {
+                    events.add(objectMapper.readValue(eventData, DomainEvent.class));
+                } catch (JsonProcessingException e) {
+                    logger.error("Skipping unreadable event for entity {}", entityId, e);
+                }
+            });
+        });
+        return events;
+    }
+} 
\ No newline at end of file
@@ -37,7 +37,14 @@ public class OrientDBService {
 
     @PostConstruct
     public void init() {
-        orientDB = new OrientDB(dbUrl, username, password, OrientDBConfig.defaultConfig());
+        if (dbUrl.startsWith("memory:")) {
+            // Embedded, non-persistent database (orientdb.url=memory:), for benchmarks and local experiments.
+            orientDB = new OrientDB("embedded:", OrientDBConfig.defaultConfig());
+            orientDB.execute("CREATE DATABASE main MEMORY IF NOT EXISTS USERS (" + username
+                    + " IDENTIFIED BY '" + password + "' ROLE admin)").close();
+        } else {
+            orientDB = new OrientDB(dbUrl, username, password, OrientDBConfig.defaultConfig());
+        }
 
         OrientDBConfig poolConfig = OrientDBConfig.builder()
                 .addConfig(OGlobalConfiguration.DB_POOL_MIN, 5)
@@ -125,4 +132,11 @@ public class OrientDBService {
     public ODatabaseSession getSession() {
         return pool.acquire();
     }
+
+    /**
+     * @return Whether the database is reached over the network, rather than embedded in this process.
+     */
+    public boolean isRemote() {
+        return dbUrl.startsWith("remote:");
+    }
 }
@@ -1,9 +1,6 @@
 package com.flumen.backend.services;
 
-import com.flumen.backend.utils.OrientDBUtils;
-import com.orientechnologies.orient.core.db.ODatabaseSession;
-import com.orientechnologies.orient.core.record.ODirection;
-import com.orientechnologies.orient.core.record.OElement;
+import com.flumen.backend.domain.Item;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,45 +11,24 @@ public class PositionService {
 
     private static final Logger logger = LoggerFactory.getLogger(PositionService.class);
 
-    private final OrientDBService orientDBService;
+    private final GraphStore graphStore;
 
     @Autowired
-    public PositionService(OrientDBService orientDBService) {
-        this.orientDBService = orientDBService;
+    public PositionService(GraphStore graphStore) {
+        this.graphStore = graphStore;
     }
 
     public void createConnection(String itemId, String locationId) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            OElement item = OrientDBUtils.loadAndValidateVertexByCustomId(db, itemId);
-            OElement location = OrientDBUtils.loadAndValidateVertexByCustomId(db, locationId);
-
-            item.asVertex().get().addEdge(location.asVertex().get(), "HasPosition");
-            item.save();
-        }
+        var location = graphStore.liveLocation(locationId);
+        graphStore.updateItem(itemId, item -> item.placeAt(location));
     }
 
     public void moveConnection(String itemId, String newLocationId) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            OElement item = OrientDBUtils.loadAndValidateVertexByCustomId(db, itemId);
-            OElement newLocation = OrientDBUtils.loadAndValidateVertexByCustomId(db, newLocationId);
-
-            var edges = item.asVertex().get().getEdges(ODirection.OUT, "HasPosition");
-            for (var edge : edges) {
-                edge.delete();
-            }
-            item.asVertex().get().addEdge(newLocation.asVertex().get(), "HasPosition");
-            item.save();
-        }
+        var newLocation = graphStore.liveLocation(newLocationId);
+        graphStore.updateItem(itemId, item -> item.placeAt(newLocation));
     }
 
     public void deleteConnections(String itemId) {
-        try (ODatabaseSession db = orientDBService.getSession()) {
-            OElement item = OrientDBUtils.loadAndValidateVertexByCustomId(db, itemId);
-
-            var edges = item.asVertex().get().getEdges(ODirection.OUT, "HasPosition");
-            for (var edge : edges) {
-                edge.delete();
-            }
-        }
+        graphStore.updateItem(itemId, Item::clearPosition);
     }
 }
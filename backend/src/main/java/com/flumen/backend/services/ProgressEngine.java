@@ -0,0 +1,276 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import flumen.events.ItemPositionChangedEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Predicts where moving items are between events. Every positioned item occupies a slot in a set of parallel
+ * primitive arrays holding its location, progress, progress rate and the time the progress was taken at.
+ * On every tick the progress of moving items is advanced and published to /topic/progress, in frames of at most
+ * {@code progress.max-frame-size} updates.
+ *
+ * The arrays are owned by the ticker thread. Lanes only queue the changes of their items, which the next tick
+ * applies before advancing, so a lane never waits for a tick and the tick never waits for a lane.
+ *
+ * An item reaching the end of a location with exactly one outbound connection is moved onto it, as of the
+ * moment it crossed, so producers only need to report moves where the route branches. The move is submitted
+ * to the {@link ItemEventProcessor} as a position event, so it is applied on the item's lane and logged like a
+ * received one. At any other location end the item waits until an event places it.
+ */
+@Service
+public class ProgressEngine implements GraphStore.ItemListener {
+    private static final Logger logger = LoggerFactory.getLogger(ProgressEngine.class);
+
+    private final GraphStore graphStore;
+    private final WebSocketService webSocketService;
+    private final ItemEventProcessor eventProcessor;
+    private final long tickMs;
+    private final int maxFrameSize;
+    private final ScheduledExecutorService ticker;
+
+    // Changes of tracked items, applied in order by the next tick.
+    private final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+    private volatile int trackedCount;
+
+    // Slot bookkeeping and the per-slot state, confined to the ticker thread.
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private int[] freeSlots;
+    private int freeCount;
+    private int highWater;
+
+    private String[] itemIds;
+    private String[] locationIds;
+    private double[] progress;
+    private double[] rate;          // progress per millisecond, 0 when not moving
+    private long[] progressAtMillis;
+
+    private final Timer tickTimer;
+    private final Counter crossingCounter;
+
+    public ProgressEngine(GraphStore graphStore, WebSocketService webSocketService, ItemEventProcessor eventProcessor,
+            @Value("${progress.tick-ms:50}") long tickMs,
+            @Value("${progress.initial-capacity:1024}") int initialCapacity,
+            @Value("${progress.max-frame-size:5000}") int maxFrameSize,
+            MeterRegistry meterRegistry) {
+        if (maxFrameSize < 1) {
+            throw new IllegalArgumentException("progress.max-frame-size must be at least 1, was " + maxFrameSize);
+        }
+        this.graphStore = graphStore;
+        this.webSocketService = webSocketService;
+        this.eventProcessor = eventProcessor;
+        this.tickMs = tickMs;
+        this.maxFrameSize = maxFrameSize;
+
+        int capacity = Math.max(16, initialCapacity);
+        this.freeSlots = new int[capacity];
+        this.itemIds = new String[capacity];
+        this.locationIds = new String[capacity];
+        this.progress = new double[capacity];
+        this.rate = new double[capacity];
+        this.progressAtMillis = new long[capacity];
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "progress-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.tickTimer = Timer.builder("flumen.progress.tick")
+                .description("Duration of one progress interpolation tick")
+                .register(meterRegistry);
+        this.crossingCounter = Counter.builder("flumen.progress.crossings")
+                .description("Moves onto the next location predicted by the progress engine and applied")
+                .register(meterRegistry);
+        Gauge.builder("flumen.progress.tracked", this, ProgressEngine::getTrackedCount)
+                .description("Positioned items tracked by the progress engine")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        graphStore.addItemListener(this);
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdown();
+    }
+
+    /**
+     * @return The items tracked as of the last tick.
+     */
+    public int getTrackedCount() {
+        return trackedCount;
+    }
+
+    @Override
+    public void itemChanged(Item item) {
+        Location location = item.getLocation();
+        // Progress restored without a time, e.g. from a checkpoint, cannot be advanced.
+        if (location == null || item.getProgressInfo() == null || item.getProgressInfo().getDatetime() == null) {
+            changes.add(Change.removed(item.getId()));
+            return;
+        }
+        Double length = location.getLength();
+        boolean moving = item.isActive() && item.getSpeed() != null && length != null && length > 0;
+        changes.add(new Change(item.getId(), location.getId(), item.getProgressInfo().getProgress(),
+                item.getProgressInfo().getDatetime().toEpochMilli(), moving ? item.getSpeed() / length : 0));
+    }
+
+    @Override
+    public void itemRemoved(String id) {
+        changes.add(Change.removed(id));
+    }
+
+    void tick() {
+        try {
+            tickTimer.record(() -> {
+                applyChanges();
+                List<Crossing> crossings = new ArrayList<>();
+                List<WebSocketService.ProgressUpdate> updates = advance(System.currentTimeMillis(), crossings);
+                for (int from = 0; from < updates.size(); from += maxFrameSize) {
+                    webSocketService.broadcastProgress(
+                            updates.subList(from, Math.min(updates.size(), from + maxFrameSize)));
+                }
+                crossings.forEach(this::moveToNextLocation);
+            });
+        } catch (Exception e) {
+            logger.warn("Progress tick failed: {}", e.getMessage());
+        }
+    }
+
+    private void applyChanges() {
+        Change change;
+        while ((change = changes.poll()) != null) {
+            if (change.locationId() == null) {
+                release(change.itemId());
+                continue;
+            }
+            Integer slot = slotsById.get(change.itemId());
+            if (slot == null) {
+                slot = allocate(change.itemId());
+            }
+            locationIds[slot] = change.locationId();
+            progress[slot] = change.progress();
+            progressAtMillis[slot] = change.progressAtMillis();
+            rate[slot] = change.rate();
+        }
+        trackedCount = slotsById.size();
+    }
+
+    private List<WebSocketService.ProgressUpdate> advance(long now, List<Crossing> crossings) {
+        List<WebSocketService.ProgressUpdate> frame = new ArrayList<>();
+        for (int i = 0; i < highWater; i++) {
+            if (itemIds[i] == null || rate[i] <= 0) {
+                continue;
+            }
+            double advanced = progress[i] + rate[i] * (now - progressAtMillis[i]);
+            if (advanced >= 1.0) {
+                long crossedAt = now - (long) ((advanced - 1.0) / rate[i]);
+                crossings.add(new Crossing(itemIds[i], locationIds[i], crossedAt));
+                advanced = 1.0;
+                rate[i] = 0;
+            }
+            progress[i] = advanced;
+            progressAtMillis[i] = now;
+            frame.add(new WebSocketService.ProgressUpdate(itemIds[i], locationIds[i], advanced));
+        }
+        return frame;
+    }
+
+    private void moveToNextLocation(Crossing crossing) {
+        try {
+            Set<String> outbound = graphStore.liveLocation(crossing.locationId()).getOutboundConnectionIds();
+            if (outbound.size() != 1) {
+                return;
+            }
+            Instant crossedAt = Instant.ofEpochMilli(crossing.crossedAtMillis());
+            ItemPositionChangedEvent move =
+                    new ItemPositionChangedEvent(crossing.itemId(), outbound.iterator().next(), crossedAt);
+            eventProcessor.processPredictedMove(move, crossing.locationId()).whenComplete((ignored, failure) -> {
+                if (failure == null) {
+                    crossingCounter.increment();
+                } else {
+                    logger.debug("Predicted move of {} not applied: {}", crossing.itemId(), failure.getMessage());
+                }
+            });
+        } catch (NoSuchElementException e) {
+            // The item or one of the locations was removed meanwhile.
+        }
+    }
+
+    private int allocate(String id) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWater == itemIds.length) {
+                grow();
+            }
+            slot = highWater++;
+        }
+        itemIds[slot] = id;
+        slotsById.put(id, slot);
+        return slot;
+    }
+
+    private void release(String id) {
+        Integer slot = slotsById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        itemIds[slot] = null;
+        locationIds[slot] = null;
+        rate[slot] = 0;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void grow() {
+        int capacity = itemIds.length * 2;
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+        itemIds = Arrays.copyOf(itemIds, capacity);
+        locationIds = Arrays.copyOf(locationIds, capacity);
+        progress = Arrays.copyOf(progress, capacity);
+        rate = Arrays.copyOf(rate, capacity);
+        progressAtMillis = Arrays.copyOf(progressAtMillis, capacity);
+    }
+
+    /**
+     * The state of an item as of one change, or its removal when it has no location.
+     */
+    private record Change(String itemId, String locationId, double progress, long progressAtMillis, double rate) {
+        static Change removed(String itemId) {
+            return new Change(itemId, null, 0, 0, 0);
+        }
+    }
+
+    private record Crossing(String itemId, String locationId, long crossedAtMillis) {}
+}
@@ -0,0 +1,88 @@
+package com.flumen.backend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Remembers the ids of the most recently applied events, so that redelivered events can be skipped.
+ *
+ * Ids are kept in fixed-size windows picked by entity id, each evicting its oldest id once full. All events
+ * of an entity share a window, and they are handled on one processing lane, so a duplicate is always
+ * checked against the events applied before it. The windows only live in memory: events redelivered
+ * after a restart, or to another instance, are applied again.
+ */
+@Service
+public class RecentEventIds {
+    private static final int WINDOWS = 64;
+
+    private final Window[] windows = new Window[WINDOWS];
+    private final Counter duplicates;
+
+    public RecentEventIds(MeterRegistry meterRegistry, @Value("${events.dedupe.capacity:100000}") int capacity) {
+        int windowSize = Math.max(1, capacity / WINDOWS);
+        for (int i = 0; i < WINDOWS; i++) {
+            windows[i] = new Window(windowSize);
+        }
+        this.duplicates = Counter.builder("flumen.events.duplicates")
+                .description("Redelivered events skipped because they were already applied")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return True if the event was already applied recently.
+     */
+    public boolean seen(String entityId, String eventId) {
+        if (eventId == null) {
+            return false;
+        }
+        boolean seen = windowFor(entityId).contains(eventId);
+        if (seen) {
+            duplicates.increment();
+        }
+        return seen;
+    }
+
+    public void add(String entityId, String eventId) {
+        if (eventId != null) {
+            windowFor(entityId).add(eventId);
+        }
+    }
+
+    private Window windowFor(String entityId) {
+        int hash = entityId != null ? entityId.hashCode() : 0;
+        return windows[Math.floorMod(hash ^ (hash >>> 16), WINDOWS)];
+    }
+
+    private static final class Window {
+        private final String[] ring;
+        private final Set<String> ids;
+        private int next;
+
+        Window(int size) {
+            this.ring = new String[size];
+            this.ids = new HashSet<>(size * 2);
+        }
+
+        synchronized boolean contains(String id) {
+            return ids.contains(id);
+        }
+
+        synchronized void add(String id) {
+            if (!ids.add(id)) {
+                return;
+            }
+            String evicted = ring[next];
+            if (evicted != null) {
+                ids.remove(evicted);
+            }
+            ring[next] = id;
+            next = (next + 1) % ring.length;
+        }
+    }
+}
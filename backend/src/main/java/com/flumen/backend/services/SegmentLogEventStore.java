@@ -0,0 +1,594 @@
+package com.flumen.backend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import flumen.events.BinaryEventCodec;
+import flumen.events.DomainEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Event store backed by an append-only log of fixed-size, memory-mapped segment files.
+ *
+ * Each record is laid out as {@code [int length][int crc32c][long sequence][short idLength][entityId][payload]},
+ * where length and checksum cover everything after them and idLength is unsigned, limiting entity ids to
+ * 65 535 UTF-8 bytes. The payload is the event in the binary codec, or JSON
+ * for events the codec cannot carry and for logs written before it existed. The length is written last, so a torn write is
+ * detected on recovery and the log is truncated at the last intact record.
+ *
+ * Appends only copy into the mapping; a background thread forces dirty pages to disk every
+ * {@code eventstore.fsync-interval-ms}, covering all appends made since the previous pass with one fsync.
+ * With {@code eventstore.await-fsync=true} appends wait for the pass that covers them. A pass that fails is retried
+ * on the next one, and until a pass succeeds every waiter fails with its error instead of waiting.
+ *
+ * On startup only the newest segments are scanned before the log opens. Older segments were forced when they
+ * were rolled and are indexed by a background thread, so opening the log does not take longer as history grows.
+ * Reads that need the older segments wait for that index.
+ */
+@Service
+@ConditionalOnProperty(name = "eventstore.backend", havingValue = "file", matchIfMissing = true)
+public class SegmentLogEventStore implements EventStore {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLogEventStore.class);
+
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER = Integer.BYTES + Integer.BYTES;
+    private static final int MAX_ID_LENGTH = 0xFFFF;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule());
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long fsyncIntervalNanos;
+    private final boolean awaitFsync;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Map<String, PositionList> positionsByEntity = new ConcurrentHashMap<>();
+    // Positions in the segments indexed in the background, all older than those in positionsByEntity.
+    private final Map<String, PositionList> sealedPositions = new ConcurrentHashMap<>();
+    private final CountDownLatch sealedIndexed = new CountDownLatch(1);
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Object durableMonitor = new Object();
+
+    private long nextSequence;
+    private long durableSequence = -1;
+    // Why the events after durableSequence are not on disk, null while syncing works. Guarded by durableMonitor.
+    private Throwable syncFailure;
+
+    private final Timer appendTimer;
+    private final Timer fsyncTimer;
+    private final Thread syncer;
+    private volatile boolean running = true;
+
+    public SegmentLogEventStore(
+            MeterRegistry meterRegistry,
+            @Value("${eventstore.directory:data/events}") String directory,
+            @Value("${eventstore.segment-size-mb:64}") int segmentSizeMb,
+            @Value("${eventstore.fsync-interval-ms:5}") long fsyncIntervalMs,
+            @Value("${eventstore.await-fsync:false}") boolean awaitFsync) throws IOException {
+        this.directory = Path.of(directory);
+        long segmentBytes = segmentSizeMb * 1024L * 1024L;
+        // A segment is mapped as a single buffer, which int offsets address.
+        if (segmentSizeMb < 1 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("eventstore.segment-size-mb must be between 1 and "
+                    + Integer.MAX_VALUE / (1024 * 1024) + ", was " + segmentSizeMb);
+        }
+        this.segmentSize = (int) segmentBytes;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+        this.awaitFsync = awaitFsync;
+        this.appendTimer = Timer.builder("flumen.eventstore.append")
+                .description("Time to append a batch of events to the segment log")
+                .register(meterRegistry);
+        this.fsyncTimer = Timer.builder("flumen.eventstore.fsync")
+                .description("Time to force one group of appends to disk")
+                .register(meterRegistry);
+
+        Files.createDirectories(this.directory);
+        int sealed = recover();
+        this.durableSequence = nextSequence - 1;
+
+        Thread indexer = new Thread(() -> indexSealed(sealed), "eventstore-index");
+        indexer.setDaemon(true);
+        indexer.start();
+
+        this.syncer = new Thread(this::runSyncLoop, "eventstore-fsync");
+        this.syncer.setDaemon(true);
+        this.syncer.start();
+        logger.info("Segment event log opened at {} with {} segments and {} events.",
+                this.directory.toAbsolutePath(), segments.size(), nextSequence);
+    }
+
+    @Override
+    public void saveEvents(String aggregateId, List<DomainEvent> events) {
+        long start = System.nanoTime();
+        List<ByteBuffer> records = new ArrayList<>(events.size());
+        List<String> entityIds = new ArrayList<>(events.size());
+        for (DomainEvent event : events) {
+            String entityId = event.getEntityId() != null ? event.getEntityId() : "";
+            records.add(encode(entityId, event));
+            entityIds.add(entityId);
+        }
+
+        long lastSequence;
+        appendLock.lock();
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                long position = append(records.get(i));
+                positionsByEntity.computeIfAbsent(entityIds.get(i), id -> new PositionList()).add(position);
+            }
+            lastSequence = nextSequence - 1;
+        } finally {
+            appendLock.unlock();
+        }
+        appendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (awaitFsync) {
+            awaitDurable(lastSequence);
+        }
+    }
+
+    @Override
+    public List<DomainEvent> getEventsForEntity(String entityId) {
+        awaitSealedIndex();
+        List<DomainEvent> events = new ArrayList<>();
+        for (PositionList positions : List.of(
+                sealedPositions.getOrDefault(entityId, PositionList.EMPTY),
+                positionsByEntity.getOrDefault(entityId, PositionList.EMPTY))) {
+            for (long position : positions.snapshot()) {
+                events.add(read(position));
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public boolean isReplayable() {
+        return true;
+    }
+
+    /**
+     * @return The sequence number of the last appended event, or -1 if the log is empty.
+     */
+    @Override
+    public long lastPosition() {
+        appendLock.lock();
+        try {
+            return nextSequence - 1;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the log from the first segment that can hold events after the given sequence number. Segments that
+     * are still being indexed in the background are waited for, so a recent position replays without waiting.
+     */
+    @Override
+    public void replayAfter(long position, Consumer<DomainEvent> consumer) {
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (i + 1 < segments.size()) {
+                long nextFirst = segments.get(i + 1).firstSequence;
+                if (nextFirst >= 0 && nextFirst <= position + 1) {
+                    continue;
+                }
+            }
+            if (!segment.indexed) {
+                awaitSealedIndex();
+            }
+            int end = segment.writePosition;
+            int offset = 0;
+            while (offset < end) {
+                if (segment.buffer.getLong(offset + RECORD_HEADER) > position) {
+                    consumer.accept(read(((long) segment.index << 32) | offset));
+                }
+                offset += RECORD_HEADER + segment.buffer.getInt(offset);
+            }
+        }
+    }
+
+    @Override
+    public void awaitDurable() {
+        long lastSequence;
+        appendLock.lock();
+        try {
+            lastSequence = nextSequence - 1;
+        } finally {
+            appendLock.unlock();
+        }
+        LockSupport.unpark(syncer);
+        awaitDurable(lastSequence);
+    }
+
+    /**
+     * Blocks until every event up to and including the given sequence has been forced to disk.
+     * @throws IllegalStateException If the last pass failed to force them, or the log was closed before.
+     */
+    public void awaitDurable(long sequence) {
+        synchronized (durableMonitor) {
+            while (durableSequence < sequence) {
+                if (syncFailure != null) {
+                    throw new IllegalStateException("Event log is not durable up to event " + sequence, syncFailure);
+                }
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the event log to sync", e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        LockSupport.unpark(syncer);
+        try {
+            syncer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (durableMonitor) {
+            if (syncFailure == null) {
+                syncFailure = new IllegalStateException("Event log is closed");
+            }
+            durableMonitor.notifyAll();
+        }
+        appendLock.lock();
+        try {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            logger.error("Error closing event log segments", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // ---- Writing ----
+
+    private ByteBuffer encode(String entityId, DomainEvent event) {
+        try {
+            byte[] id = entityId.getBytes(StandardCharsets.UTF_8);
+            if (id.length > MAX_ID_LENGTH) {
+                throw new IllegalArgumentException("Entity id of event " + event.getEventId() + " is longer than "
+                        + MAX_ID_LENGTH + " bytes");
+            }
+            byte[] payload = serialize(event);
+            long recordLength = (long) RECORD_HEADER + Long.BYTES + Short.BYTES + id.length + payload.length;
+            if (recordLength > segmentSize) {
+                throw new IllegalArgumentException("Event " + event.getEventId() + " does not fit in a log segment");
+            }
+            int bodyLength = (int) recordLength - RECORD_HEADER;
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + bodyLength);
+            record.putInt(bodyLength);
+            record.putInt(0); // checksum, set once the sequence is known
+            record.putLong(0L); // sequence, assigned under the append lock
+            record.putShort((short) id.length);
+            record.put(id);
+            record.put(payload);
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not serialize event " + event.getEventId(), e);
+        }
+    }
+
+    private static byte[] serialize(DomainEvent event) throws IOException {
+        try {
+            return BinaryEventCodec.encode(event);
+        } catch (IllegalArgumentException e) {
+            // Event ids that are not UUIDs have no binary form.
+            return objectMapper.writeValueAsBytes(event);
+        }
+    }
+
+    /**
+     * Writes one encoded record at the end of the active segment. Must hold the append lock.
+     * @return The position of the record, segment index in the high word and offset in the low word.
+     */
+    private long append(ByteBuffer record) {
+        Segment active = segments.get(segments.size() - 1);
+        if (active.writePosition + record.capacity() > segmentSize) {
+            active = roll(active);
+        }
+
+        record.putLong(RECORD_HEADER, nextSequence++);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER, record.capacity() - RECORD_HEADER);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+
+        int offset = active.writePosition;
+        if (offset == 0) {
+            active.firstSequence = record.getLong(RECORD_HEADER);
+        }
+        // Body and checksum first, length last: a record only becomes visible to recovery once complete.
+        active.buffer.put(offset + Integer.BYTES, record.array(), Integer.BYTES, record.capacity() - Integer.BYTES);
+        active.buffer.putInt(offset, record.getInt(0));
+        active.writePosition = offset + record.capacity();
+
+        return ((long) active.index << 32) | offset;
+    }
+
+    private Segment roll(Segment full) {
+        full.buffer.force();
+        full.syncedPosition = full.writePosition;
+        try {
+            Segment next = openSegment(full.index + 1);
+            next.indexed = true;
+            segments.add(next);
+            logger.info("Rolled event log to segment {}", next.path.getFileName());
+            return next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create event log segment", e);
+        }
+    }
+
+    private void runSyncLoop() {
+        while (running) {
+            LockSupport.parkNanos(fsyncIntervalNanos);
+            trySync();
+        }
+        trySync();
+    }
+
+    /**
+     * Runs one pass, recording its failure for the waiters rather than letting it end the sync thread.
+     */
+    private void trySync() {
+        try {
+            sync();
+        } catch (RuntimeException | InternalError e) {
+            // An I/O error while forcing a mapping surfaces as an InternalError.
+            logger.error("Could not force the event log to disk, retrying on the next pass", e);
+            synchronized (durableMonitor) {
+                syncFailure = e;
+                durableMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void sync() {
+        Segment active;
+        int from;
+        int to;
+        long target;
+        appendLock.lock();
+        try {
+            active = segments.get(segments.size() - 1);
+            from = active.syncedPosition;
+            to = active.writePosition;
+            target = nextSequence - 1;
+        } finally {
+            appendLock.unlock();
+        }
+        if (target <= durableSequence) {
+            return;
+        }
+        if (to > from) {
+            long start = System.nanoTime();
+            active.buffer.force(from, to - from);
+            active.syncedPosition = to;
+            fsyncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        synchronized (durableMonitor) {
+            durableSequence = target;
+            syncFailure = null;
+            durableMonitor.notifyAll();
+        }
+    }
+
+    // ---- Reading and recovery ----
+
+    private DomainEvent read(long position) {
+        Segment segment = segments.get((int) (position >>> 32));
+        int offset = (int) position;
+        ByteBuffer view = segment.buffer.duplicate();
+        int bodyLength = view.getInt(offset);
+        int idLength = Short.toUnsignedInt(view.getShort(offset + RECORD_HEADER + Long.BYTES));
+        int payloadOffset = offset + RECORD_HEADER + Long.BYTES + Short.BYTES + idLength;
+        byte[] payload = new byte[bodyLength - Long.BYTES - Short.BYTES - idLength];
+        view.get(payloadOffset, payload);
+        try {
+            return BinaryEventCodec.isBinary(payload)
+                    ? BinaryEventCodec.decode(payload)
+                    : objectMapper.readValue(payload, DomainEvent.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt event at segment " + segment.index + " offset " + offset, e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Corrupt event at segment " + segment.index + " offset " + offset, e);
+        }
+    }
+
+    /**
+     * Opens every segment and scans the newest ones: the segment being appended to, and before it any that are
+     * empty, which happens right after a roll.
+     * @return The number of older segments, left to {@link #indexSealed}.
+     */
+    private int recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            segments.add(openSegment(i));
+        }
+        if (segments.isEmpty()) {
+            segments.add(openSegment(0));
+        }
+
+        int live = segments.size() - 1;
+        while (live > 0 && segments.get(live).firstSequence < 0) {
+            live--;
+        }
+        for (int i = live; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            long last = scan(segment, positionsByEntity, i == segments.size() - 1);
+            if (last >= 0) {
+                nextSequence = last + 1;
+            } else {
+                segment.firstSequence = -1; // only a torn record, cleared by the scan
+            }
+            segment.indexed = true;
+        }
+        return live;
+    }
+
+    private void indexSealed(int count) {
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                Segment segment = segments.get(i);
+                scan(segment, sealedPositions, false);
+                segment.indexed = true;
+            }
+            if (count > 0) {
+                logger.info("Indexed {} older event log segments in {} ms.",
+                        count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not index the older event log segments", e);
+        } finally {
+            sealedIndexed.countDown();
+        }
+    }
+
+    private void awaitSealedIndex() {
+        try {
+            sealedIndexed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the event log index", e);
+        }
+    }
+
+    /**
+     * Adds the records of one segment to the given entity index and places its write position after the last
+     * intact record.
+     * @return The sequence number of the last record, or -1 if the segment is empty.
+     */
+    private long scan(Segment segment, Map<String, PositionList> index, boolean last) {
+        ByteBuffer view = segment.buffer.duplicate();
+        int offset = 0;
+        long sequence = -1;
+        CRC32C crc = new CRC32C();
+        while (offset + RECORD_HEADER <= segmentSize) {
+            int bodyLength = view.getInt(offset);
+            // Subtracted rather than added, so that a torn length cannot overflow past the check.
+            if (bodyLength <= 0 || bodyLength > segmentSize - offset - RECORD_HEADER) {
+                break;
+            }
+            crc.reset();
+            crc.update(view.slice(offset + RECORD_HEADER, bodyLength));
+            if ((int) crc.getValue() != view.getInt(offset + Integer.BYTES)) {
+                logger.warn("Truncating event log segment {} at offset {}: checksum mismatch", segment.path.getFileName(), offset);
+                break;
+            }
+            sequence = view.getLong(offset + RECORD_HEADER);
+            int idLength = Short.toUnsignedInt(view.getShort(offset + RECORD_HEADER + Long.BYTES));
+            byte[] id = new byte[idLength];
+            view.get(offset + RECORD_HEADER + Long.BYTES + Short.BYTES, id);
+            index.computeIfAbsent(new String(id, StandardCharsets.UTF_8), key -> new PositionList())
+                    .add(((long) segment.index << 32) | offset);
+            offset += RECORD_HEADER + bodyLength;
+        }
+        if (last && offset + Integer.BYTES <= segmentSize && view.getInt(offset) != 0) {
+            // Clear the torn tail so it cannot be mistaken for a record after new appends.
+            byte[] zeros = new byte[segmentSize - offset];
+            segment.buffer.put(offset, zeros);
+            segment.buffer.force();
+        }
+        segment.writePosition = offset;
+        segment.syncedPosition = offset;
+        return sequence;
+    }
+
+    private Segment openSegment(int index) throws IOException {
+        Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        Segment segment = new Segment(index, path, channel, buffer);
+        if (buffer.getInt(0) > 0) {
+            segment.firstSequence = buffer.getLong(RECORD_HEADER);
+        }
+        return segment;
+    }
+
+    private static final class Segment {
+        final int index;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        volatile int writePosition;
+        volatile int syncedPosition;
+        volatile long firstSequence = -1;
+        // Whether the records of this segment are in an entity index, set once at startup or on creation.
+        volatile boolean indexed;
+
+        Segment(int index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Growable list of record positions for one entity, in append order.
+     */
+    private static final class PositionList {
+        static final PositionList EMPTY = new PositionList();
+
+        private long[] positions = new long[4];
+        private int size;
+
+        synchronized void add(long position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(positions, size);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.models.graph.ViewportCluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Grid index over the coordinates of the locations, kept up to date by listening to the {@link GraphStore}.
+ * Longitude is the x axis and latitude the y axis; locations without coordinates are not indexed.
+ *
+ * The index also tracks which items are on which location, and the inbound connections of every location,
+ * so that a viewport can be answered without scanning the graph.
+ */
+@Service
+public class SpatialIndex implements GraphStore.LocationListener, GraphStore.ItemListener {
+
+    // The item count is shared with itemCounts, so that clustering reads it without a lookup per location.
+    private record Point(String id, double x, double y, AtomicInteger items) {}
+
+    private final GraphStore graphStore;
+    private final double cellSize;
+
+    // Guarded by this. Location changes are rare, so one lock is enough.
+    private final Map<Long, List<Point>> cells = new HashMap<>();
+    private final Map<String, Point> points = new HashMap<>();
+    private final Map<String, Set<String>> outbound = new HashMap<>();
+    private final Map<String, Set<String>> inbound = new HashMap<>();
+
+    // Items move all the time, these are updated without locking. Changes of one item arrive in order.
+    private final Map<String, String> itemLocations = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> itemsByLocation = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> itemCounts = new ConcurrentHashMap<>();
+
+    public SpatialIndex(GraphStore graphStore, @Value("${graph.viewport.cell-size:1.0}") double cellSize) {
+        this.graphStore = graphStore;
+        this.cellSize = cellSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        graphStore.addLocationListener(this);
+        graphStore.addItemListener(this);
+    }
+
+    // ---- Listeners ----
+
+    @Override
+    public synchronized void locationChanged(Location location) {
+        String id = location.getId();
+        Point previous = points.remove(id);
+        if (previous != null) {
+            removeFromCell(previous);
+        }
+        if (location.getLongitude() != null && location.getLatitude() != null) {
+            Point point = new Point(id, location.getLongitude(), location.getLatitude(), itemCountOf(id));
+            points.put(id, point);
+            cells.computeIfAbsent(cellOf(point.x(), point.y()), cell -> new ArrayList<>(2)).add(point);
+        }
+
+        Set<String> targets = new HashSet<>(location.getOutboundConnectionIds());
+        Set<String> previousTargets = outbound.put(id, targets);
+        if (previousTargets != null) {
+            for (String target : previousTargets) {
+                if (!targets.contains(target)) {
+                    removeInbound(target, id);
+                }
+            }
+        }
+        for (String target : targets) {
+            inbound.computeIfAbsent(target, t -> new HashSet<>()).add(id);
+        }
+    }
+
+    @Override
+    public synchronized void locationRemoved(String id) {
+        Point previous = points.remove(id);
+        if (previous != null) {
+            removeFromCell(previous);
+        }
+        Set<String> targets = outbound.remove(id);
+        if (targets != null) {
+            targets.forEach(target -> removeInbound(target, id));
+        }
+    }
+
+    @Override
+    public void itemChanged(Item item) {
+        String locationId = item.getLocation() != null ? item.getLocation().getId() : null;
+        String previous = locationId != null
+                ? itemLocations.put(item.getId(), locationId)
+                : itemLocations.remove(item.getId());
+        if (previous != null && !previous.equals(locationId)) {
+            removeItemAt(previous, item.getId());
+        }
+        if (locationId != null
+                && itemsByLocation.computeIfAbsent(locationId, id -> ConcurrentHashMap.newKeySet()).add(item.getId())) {
+            itemCountOf(locationId).incrementAndGet();
+        }
+    }
+
+    @Override
+    public void itemRemoved(String id) {
+        String previous = itemLocations.remove(id);
+        if (previous != null) {
+            removeItemAt(previous, id);
+        }
+    }
+
+    // ---- Queries ----
+
+    /**
+     * @return The ids of the locations inside the box, bounds included.
+     */
+    public synchronized List<String> locationsIn(double minX, double minY, double maxX, double maxY) {
+        List<String> found = new ArrayList<>();
+        forEachInside(minX, minY, maxX, maxY, point -> found.add(point.id()));
+        return found;
+    }
+
+    /**
+     * Groups the locations inside the box into a {@code columns} x {@code rows} grid spanning the box.
+     * @return One cluster per non-empty grid cell.
+     */
+    public synchronized List<ViewportCluster> clustersIn(double minX, double minY, double maxX, double maxY, int columns, int rows) {
+        double width = Math.max(maxX - minX, Double.MIN_NORMAL) / columns;
+        double height = Math.max(maxY - minY, Double.MIN_NORMAL) / rows;
+        // Accumulated per grid cell in flat arrays, a zoomed out viewport covers every location.
+        int size = columns * rows;
+        int[] counts = new int[size];
+        long[] items = new long[size];
+        double[] sumX = new double[size];
+        double[] sumY = new double[size];
+        double[] lowX = new double[size];
+        double[] lowY = new double[size];
+        double[] highX = new double[size];
+        double[] highY = new double[size];
+        forEachInside(minX, minY, maxX, maxY, point -> {
+            int column = Math.min(columns - 1, (int) ((point.x() - minX) / width));
+            int row = Math.min(rows - 1, (int) ((point.y() - minY) / height));
+            int i = column * rows + row;
+            if (counts[i]++ == 0) {
+                lowX[i] = highX[i] = point.x();
+                lowY[i] = highY[i] = point.y();
+            } else {
+                lowX[i] = Math.min(lowX[i], point.x());
+                lowY[i] = Math.min(lowY[i], point.y());
+                highX[i] = Math.max(highX[i], point.x());
+                highY[i] = Math.max(highY[i], point.y());
+            }
+            sumX[i] += point.x();
+            sumY[i] += point.y();
+            items[i] += point.items().get();
+        });
+
+        List<ViewportCluster> clusters = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (counts[i] > 0) {
+                clusters.add(new ViewportCluster(sumY[i] / counts[i], sumX[i] / counts[i],
+                        lowY[i], lowX[i], highY[i], highX[i], counts[i], items[i]));
+            }
+        }
+        return clusters;
+    }
+
+    public Set<String> itemsAt(String locationId) {
+        Set<String> ids = itemsByLocation.get(locationId);
+        return ids != null ? ids : Set.of();
+    }
+
+    /**
+     * @return The ids of the locations with a connection to the given one.
+     */
+    public synchronized Set<String> inboundOf(String locationId) {
+        Set<String> sources = inbound.get(locationId);
+        return sources != null ? Set.copyOf(sources) : Set.of();
+    }
+
+    // ---- Internals ----
+
+    private void forEachInside(double minX, double minY, double maxX, double maxY, Consumer<Point> action) {
+        double firstColumn = Math.floor(minX / cellSize);
+        double lastColumn = Math.floor(maxX / cellSize);
+        double firstRow = Math.floor(minY / cellSize);
+        double lastRow = Math.floor(maxY / cellSize);
+
+        // A box much larger than the occupied area spans more cells than there are non-empty ones. The span is
+        // computed in double, a huge box would overflow the cell numbers as longs.
+        double spanned = (lastColumn - firstColumn + 1) * (lastRow - firstRow + 1);
+        if (!(spanned <= cells.size())) {
+            for (List<Point> cell : cells.values()) {
+                forEachInside(cell, minX, minY, maxX, maxY, action);
+            }
+            return;
+        }
+        // Counted loops, a cell number saturated at Long.MAX_VALUE must not wrap around.
+        long columns = (long) (lastColumn - firstColumn + 1);
+        long rows = (long) (lastRow - firstRow + 1);
+        for (long column = 0; column < columns; column++) {
+            for (long row = 0; row < rows; row++) {
+                List<Point> cell = cells.get(key((long) firstColumn + column, (long) firstRow + row));
+                if (cell != null) {
+                    forEachInside(cell, minX, minY, maxX, maxY, action);
+                }
+            }
+        }
+    }
+
+    private static void forEachInside(List<Point> cell, double minX, double minY, double maxX, double maxY,
+            Consumer<Point> action) {
+        for (int i = 0; i < cell.size(); i++) {
+            Point point = cell.get(i);
+            if (point.x() >= minX && point.x() <= maxX && point.y() >= minY && point.y() <= maxY) {
+                action.accept(point);
+            }
+        }
+    }
+
+    private long cellOf(double x, double y) {
+        return key((long) Math.floor(x / cellSize), (long) Math.floor(y / cellSize));
+    }
+
+    /**
+     * Packs a cell into one long. The packing is scrambled with an invertible mix, so that keys stay unique
+     * but neighbouring cells do not collide in {@link Long#hashCode()}, as they would for cells on a diagonal.
+     */
+    static long key(long column, long row) {
+        long key = (column << 32) | (row & 0xFFFFFFFFL);
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+
+    private AtomicInteger itemCountOf(String locationId) {
+        return itemCounts.computeIfAbsent(locationId, id -> new AtomicInteger());
+    }
+
+    private void removeFromCell(Point point) {
+        long cell = cellOf(point.x(), point.y());
+        List<Point> points = cells.get(cell);
+        if (points != null && points.remove(point) && points.isEmpty()) {
+            cells.remove(cell);
+        }
+    }
+
+    private void removeInbound(String target, String source) {
+        Set<String> sources = inbound.get(target);
+        if (sources != null && sources.remove(source) && sources.isEmpty()) {
+            inbound.remove(target);
+        }
+    }
+
+    private void removeItemAt(String locationId, String itemId) {
+        Set<String> ids = itemsByLocation.get(locationId);
+        if (ids != null && ids.remove(itemId)) {
+            itemCounts.get(locationId).decrementAndGet();
+        }
+    }
+}
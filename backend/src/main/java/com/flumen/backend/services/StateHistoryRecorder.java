@@ -0,0 +1,142 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.models.history.ItemState;
+import com.flumen.backend.models.history.LocationState;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the state history of items and locations in ClickHouse. Changes seen in the {@link GraphStore} are
+ * collected per entity, and every {@code clickhouse.state-history.interval-ms} the entities whose state differs
+ * from the last row written for them get one new row each. The interval is the resolution of the history:
+ * several changes to an entity within one interval are recorded as its last state, valid from when that
+ * change was made.
+ */
+@Service
+public class StateHistoryRecorder implements GraphStore.ItemListener, GraphStore.LocationListener {
+    private static final Logger logger = LoggerFactory.getLogger(StateHistoryRecorder.class);
+
+    private final GraphStore graphStore;
+    private final ClickHouseService clickHouseService;
+    private final Counter rowsWritten;
+
+    private final Map<String, ItemState> pendingItems = new ConcurrentHashMap<>();
+    private final Map<String, LocationState> pendingLocations = new ConcurrentHashMap<>();
+    // Last row written per entity, only touched by flush.
+    private final Map<String, ItemState> writtenItems = new HashMap<>();
+    private final Map<String, LocationState> writtenLocations = new HashMap<>();
+
+    public StateHistoryRecorder(GraphStore graphStore, ClickHouseService clickHouseService,
+            MeterRegistry meterRegistry) {
+        this.graphStore = graphStore;
+        this.clickHouseService = clickHouseService;
+        this.rowsWritten = Counter.builder("flumen.history.rows")
+                .description("State history rows written to ClickHouse")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registering replays the current graph, so the first flush writes the state every entity starts from.
+     */
+    @PostConstruct
+    public void start() {
+        graphStore.addLocationListener(this);
+        graphStore.addItemListener(this);
+    }
+
+    // ---- Listeners ----
+
+    @Override
+    public void itemChanged(Item item) {
+        pendingItems.put(item.getId(), ItemState.of(item, Instant.now()));
+    }
+
+    @Override
+    public void itemRemoved(String id) {
+        pendingItems.put(id, ItemState.deleted(id, Instant.now()));
+    }
+
+    @Override
+    public void locationChanged(Location location) {
+        pendingLocations.put(location.getId(), LocationState.of(location, Instant.now()));
+    }
+
+    @Override
+    public void locationRemoved(String id) {
+        pendingLocations.put(id, LocationState.deleted(id, Instant.now()));
+    }
+
+    // ---- Writing ----
+
+    @Scheduled(initialDelayString = "${clickhouse.state-history.interval-ms:10000}",
+            fixedDelayString = "${clickhouse.state-history.interval-ms:10000}")
+    public synchronized void flush() {
+        List<LocationState> locations = drain(pendingLocations);
+        List<ItemState> items = drain(pendingItems);
+        locations.removeIf(state -> state.sameStateAs(writtenLocations.get(state.getLocationId())));
+        items.removeIf(state -> state.sameStateAs(writtenItems.get(state.getItemId())));
+
+        try {
+            clickHouseService.saveLocationStates(locations);
+            locations.forEach(state -> remember(writtenLocations, state.getLocationId(), state, state.isDeleted()));
+        } catch (Exception e) {
+            logger.warn("Writing {} location states failed, retrying on next pass: {}", locations.size(), e.getMessage());
+            locations.forEach(state -> pendingLocations.putIfAbsent(state.getLocationId(), state));
+            locations = List.of();
+        }
+        try {
+            clickHouseService.saveItemStates(items);
+            items.forEach(state -> remember(writtenItems, state.getItemId(), state, state.isDeleted()));
+        } catch (Exception e) {
+            logger.warn("Writing {} item states failed, retrying on next pass: {}", items.size(), e.getMessage());
+            items.forEach(state -> pendingItems.putIfAbsent(state.getItemId(), state));
+            items = List.of();
+        }
+
+        rowsWritten.increment(locations.size() + items.size());
+        if (!locations.isEmpty() || !items.isEmpty()) {
+            logger.debug("State history recorded {} locations and {} items.", locations.size(), items.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static <T> List<T> drain(Map<String, T> pending) {
+        List<T> drained = new ArrayList<>(pending.size());
+        for (String id : List.copyOf(pending.keySet())) {
+            T state = pending.remove(id);
+            if (state != null) {
+                drained.add(state);
+            }
+        }
+        return drained;
+    }
+
+    private static <T> void remember(Map<String, T> written, String id, T state, boolean deleted) {
+        if (deleted) {
+            written.remove(id);
+        } else {
+            written.put(id, state);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.flumen.backend.services;
+
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.OVertex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * One OrientDB session and transaction shared by a batch of writes. Vertices are resolved once per unit and
+ * kept for the following writes, so an item written after its location finds the location vertex without
+ * another lookup, even before the location was committed. Closing a unit that was not committed rolls it back.
+ *
+ * A unit is confined to the thread that opened it.
+ */
+public class UnitOfWork implements AutoCloseable {
+
+    private record Created(String vertexClass, OVertex vertex) {}
+
+    private final ODatabaseSession db;
+    private final VertexLookup vertexLookup;
+    private final Map<String, OVertex> vertices = new HashMap<>();
+    private final List<Created> created = new ArrayList<>();
+    private boolean committed;
+
+    public UnitOfWork(ODatabaseSession db, VertexLookup vertexLookup) {
+        this.db = db;
+        this.vertexLookup = vertexLookup;
+        try {
+            db.begin();
+        } catch (RuntimeException e) {
+            db.close();
+            throw e;
+        }
+    }
+
+    public ODatabaseSession session() {
+        return db;
+    }
+
+    /**
+     * Drops a record from the session cache, so that the next load reads its current version.
+     */
+    public void evict(ORID rid) {
+        db.getLocalCache().deleteRecord(rid);
+    }
+
+    public Optional<OVertex> find(String vertexClass, String customId) {
+        String key = key(vertexClass, customId);
+        OVertex vertex = vertices.get(key);
+        if (vertex == null) {
+            vertex = vertexLookup.find(db, vertexClass, customId).orElse(null);
+            if (vertex != null) {
+                vertices.put(key, vertex);
+            }
+        }
+        return Optional.ofNullable(vertex);
+    }
+
+    public OVertex load(String vertexClass, String customId) {
+        return find(vertexClass, customId)
+                .orElseThrow(() -> new NoSuchElementException(String.format("No %s found with id %s", vertexClass, customId)));
+    }
+
+    /**
+     * @return The vertex with the given id, created in this unit if it does not exist yet.
+     */
+    public OVertex findOrCreate(String vertexClass, String customId) {
+        return find(vertexClass, customId).orElseGet(() -> {
+            OVertex vertex = db.newVertex(vertexClass);
+            vertex.setProperty("customId", customId);
+            vertices.put(key(vertexClass, customId), vertex);
+            created.add(new Created(vertexClass, vertex));
+            return vertex;
+        });
+    }
+
+    /**
+     * Deletes the vertex, and with it all of its edges, if it exists.
+     */
+    public void delete(String vertexClass, String customId) {
+        find(vertexClass, customId).ifPresent(vertex -> {
+            vertex.delete();
+            created.removeIf(entry -> entry.vertex() == vertex);
+        });
+        vertices.remove(key(vertexClass, customId));
+        vertexLookup.evict(vertexClass, customId);
+    }
+
+    /**
+     * Commits the transaction. The record ids of the vertices created in it are only final once committed,
+     * so they are handed to the {@link VertexLookup} here.
+     */
+    public void commit() {
+        db.commit();
+        committed = true;
+        for (Created entry : created) {
+            vertexLookup.remember(entry.vertexClass(), entry.vertex());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!committed && db.getTransaction().isActive()) {
+                db.rollback();
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    private static String key(String vertexClass, String customId) {
+        return vertexClass + '\u0000' + customId;
+    }
+}
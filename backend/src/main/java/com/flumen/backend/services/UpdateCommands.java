@@ -0,0 +1,97 @@
+package com.flumen.backend.services;
+
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.sql.executor.OResult;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A batch of atomic {@code UPDATE} statements, each tagged with the id of the aggregate it writes. The
+ * statements set values without reading the record first, so they need no loaded vertex and cannot conflict
+ * with a stale copy of one. The batch runs as one SQL script, so against a remote server it costs a single
+ * round trip.
+ */
+public class UpdateCommands {
+
+    private record Command(String aggregateId, String sql, Object[] args) {}
+
+    private final List<Command> commands = new ArrayList<>();
+
+    /**
+     * Adds a statement with positional {@code ?} parameters.
+     */
+    public void add(String aggregateId, String sql, Object... args) {
+        commands.add(new Command(aggregateId, sql, args));
+    }
+
+    /**
+     * Runs the statements in the current transaction of the session.
+     * @return The ids of the aggregates with a statement that matched no record.
+     */
+    public Set<String> execute(ODatabaseSession db) {
+        if (commands.isEmpty()) {
+            return Set.of();
+        }
+        long[] counts = executeScript(db);
+        Set<String> missed = new LinkedHashSet<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                missed.add(commands.get(i).aggregateId());
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * Numbers the parameters of every statement apart, keeps the count of each statement in a variable and
+     * returns them all at the end.
+     */
+    private long[] executeScript(ODatabaseSession db) {
+        StringBuilder script = new StringBuilder();
+        StringBuilder counts = new StringBuilder("RETURN [");
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < commands.size(); i++) {
+            Command command = commands.get(i);
+            script.append("LET $c").append(i).append(" = ");
+            int arg = 0;
+            for (char c : command.sql().toCharArray()) {
+                if (c == '?') {
+                    String name = "p" + params.size();
+                    params.put(name, command.args()[arg++]);
+                    script.append(':').append(name);
+                } else {
+                    script.append(c);
+                }
+            }
+            script.append(";\n");
+            counts.append(i > 0 ? ", " : "").append("$c").append(i).append(".count");
+        }
+        script.append(counts).append("];");
+
+        long[] result = new long[commands.size()];
+        try (OResultSet rs = db.execute("sql", script.toString(), params)) {
+            OResult row = rs.next();
+            List<?> values = row.getProperty("value");
+            for (int i = 0; i < result.length; i++) {
+                result[i] = countOf(values.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The count of one statement, which a script returns wrapped in a list.
+     */
+    private static long countOf(Object value) {
+        if (value instanceof List<?> list) {
+            return list.isEmpty() ? 0 : countOf(list.get(0));
+        }
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.utils.OrientDBUtils;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.exception.ORecordNotFoundException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.OElement;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.OVertex;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves Item and Location vertices by customId. Known ids are loaded directly by record id from an
+ * in-process {@code customId -> ORID} cache; unknown ids fall back to the unique index of the vertex class.
+ * A cached id whose record was deleted or reused is detected on load and looked up again.
+ */
+@Service
+public class VertexLookup {
+
+    private final Map<String, Map<String, ORID>> ridsByClass = Map.of(
+            "Item", new ConcurrentHashMap<>(),
+            "Location", new ConcurrentHashMap<>());
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public VertexLookup(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("flumen.orientdb.lookup.cache")
+                .description("Vertex lookups served from the record id cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("flumen.orientdb.lookup.cache")
+                .description("Vertex lookups served from the record id cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    public Optional<OVertex> find(ODatabaseSession db, String vertexClass, String customId) {
+        Map<String, ORID> rids = ridsFor(vertexClass);
+        ORID rid = rids.get(customId);
+        if (rid != null) {
+            OVertex vertex = loadByRid(db, rid, customId);
+            if (vertex != null) {
+                hits.increment();
+                return Optional.of(vertex);
+            }
+            rids.remove(customId, rid);
+        }
+
+        misses.increment();
+        Optional<OVertex> found = OrientDBUtils.findVertexByCustomId(db, vertexClass, customId);
+        found.ifPresent(vertex -> remember(vertexClass, vertex));
+        return found;
+    }
+
+    public OVertex load(ODatabaseSession db, String vertexClass, String customId) {
+        return find(db, vertexClass, customId)
+                .orElseThrow(() -> new NoSuchElementException(String.format("No %s found with id %s", vertexClass, customId)));
+    }
+
+    /**
+     * Caches the record id of a saved vertex. Vertices that were never saved have no stable id and are skipped.
+     */
+    public void remember(String vertexClass, OVertex vertex) {
+        remember(vertexClass, vertex.getProperty("customId"), vertex.getIdentity());
+    }
+
+    public void remember(String vertexClass, String customId, ORID rid) {
+        if (customId != null && rid != null && rid.isPersistent()) {
+            ridsFor(vertexClass).put(customId, rid.copy());
+        }
+    }
+
+    public void evict(String vertexClass, String customId) {
+        ridsFor(vertexClass).remove(customId);
+    }
+
+    private Map<String, ORID> ridsFor(String vertexClass) {
+        Map<String, ORID> rids = ridsByClass.get(vertexClass);
+        if (rids == null) {
+            throw new IllegalArgumentException("No lookup cache for vertex class " + vertexClass);
+        }
+        return rids;
+    }
+
+    private OVertex loadByRid(ODatabaseSession db, ORID rid, String customId) {
+        try {
+            ORecord record = db.load(rid);
+            if (record instanceof OElement element) {
+                OVertex vertex = element.asVertex().orElse(null);
+                if (vertex != null && Objects.equals(customId, vertex.getProperty("customId"))) {
+                    return vertex;
+                }
+            }
+        } catch (ORecordNotFoundException e) {
+            // Deleted since it was cached, fall through to the index.
+        }
+        return null;
+    }
+}
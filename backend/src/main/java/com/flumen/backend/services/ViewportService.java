@@ -0,0 +1,118 @@
+package com.flumen.backend.services;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.models.graph.ViewportData;
+import com.flumen.backend.models.response.ConnectionResponse;
+import com.flumen.backend.models.response.ItemResponse;
+import com.flumen.backend.models.response.LocationResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answers viewport queries from the {@link SpatialIndex}. Close up, the viewport holds the locations inside
+ * the box with their items and connections; zoomed out, or when the box holds too many locations, it holds
+ * a grid of clusters instead, counting locations and items.
+ */
+@Service
+public class ViewportService {
+
+    private final GraphStore graphStore;
+    private final GraphDeltaLog deltaLog;
+    private final SpatialIndex spatialIndex;
+    private final int detailZoom;
+    private final int maxLocations;
+    private final int clusterGrid;
+
+    public ViewportService(GraphStore graphStore, GraphDeltaLog deltaLog, SpatialIndex spatialIndex,
+            @Value("${graph.viewport.detail-zoom:14}") int detailZoom,
+            @Value("${graph.viewport.max-locations:5000}") int maxLocations,
+            @Value("${graph.viewport.cluster-grid:32}") int clusterGrid) {
+        this.graphStore = graphStore;
+        this.deltaLog = deltaLog;
+        this.spatialIndex = spatialIndex;
+        this.detailZoom = detailZoom;
+        this.maxLocations = maxLocations;
+        this.clusterGrid = clusterGrid;
+    }
+
+    /**
+     * @param bbox The box as {@code minLongitude,minLatitude,maxLongitude,maxLatitude}.
+     * @param zoom The zoom level of the map, or null to only cluster boxes with too many locations.
+     */
+    public ViewportData getViewport(String bbox, Integer zoom) {
+        double[] box = parseBox(bbox);
+        ViewportData viewport = new ViewportData();
+        viewport.setEpoch(deltaLog.getEpoch());
+        viewport.setVersion(deltaLog.currentVersion());
+
+        List<String> locationIds = zoom != null && zoom < detailZoom
+                ? null
+                : spatialIndex.locationsIn(box[0], box[1], box[2], box[3]);
+        if (locationIds == null || locationIds.size() > maxLocations) {
+            viewport.setClustered(true);
+            viewport.setClusters(spatialIndex.clustersIn(box[0], box[1], box[2], box[3], clusterGrid, clusterGrid));
+            return viewport;
+        }
+
+        Set<String> inside = new HashSet<>(locationIds);
+        for (String id : locationIds) {
+            Location location = graphStore.findLocation(id);
+            if (location == null) {
+                continue;
+            }
+            List<ConnectionResponse> connections = new ArrayList<>();
+            for (String targetId : location.getOutboundConnectionIds()) {
+                ConnectionResponse connection = new ConnectionResponse(id, targetId, "out", null);
+                connections.add(connection);
+                viewport.getConnections().add(connection);
+            }
+            for (String sourceId : spatialIndex.inboundOf(id)) {
+                ConnectionResponse connection = new ConnectionResponse(sourceId, id, "in", null);
+                connections.add(connection);
+                // Connections between two locations in the box are already listed from their source.
+                if (!inside.contains(sourceId)) {
+                    viewport.getConnections().add(connection);
+                }
+            }
+
+            List<ItemResponse> items = new ArrayList<>();
+            for (String itemId : spatialIndex.itemsAt(id)) {
+                Item item = graphStore.findItem(itemId);
+                if (item != null) {
+                    items.add(GraphService.toItemResponse(item));
+                }
+            }
+
+            LocationResponse response = GraphService.toLocationResponse(location);
+            response.setItems(items);
+            response.setConnections(connections);
+            viewport.getLocations().add(response);
+        }
+        return viewport;
+    }
+
+    private static double[] parseBox(String bbox) {
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("bbox must be minLongitude,minLatitude,maxLongitude,maxLatitude");
+        }
+        double[] box = new double[4];
+        for (int i = 0; i < 4; i++) {
+            box[i] = Double.parseDouble(parts[i].trim());
+            if (!Double.isFinite(box[i])) {
+                throw new IllegalArgumentException("bbox coordinates must be finite numbers");
+            }
+        }
+        if (box[0] > box[2] || box[1] > box[3]) {
+            throw new IllegalArgumentException("bbox minimum must not exceed its maximum");
+        }
+        return box;
+    }
+}
@@ -1,26 +1,146 @@
 package com.flumen.backend.services;
 
+import com.flumen.backend.models.graph.GraphDelta;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Position updates are not sent when they happen. They are buffered per item, so only the latest position of
+ * each item survives, and a dedicated thread publishes everything buffered as one batched frame at a fixed rate.
+ * Producers only ever touch the buffer and never wait on the broker or on a slow subscriber.
+ *
+ * Graph deltas are published by the same thread, in version order, taken from the {@link GraphDeltaLog} ring
+ * on every tick. They are not conflated: subscribers need every version to detect gaps.
+ */
 @Service
 public class WebSocketService {
     private final SimpMessagingTemplate messagingTemplate;
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(WebSocketService.class);
 
-    public WebSocketService(SimpMessagingTemplate messagingTemplate) {
+    private final Map<String, PositionUpdate> pendingPositions = new ConcurrentHashMap<>();
+    private final int maxBatchSize;
+    private final ScheduledExecutorService flusher;
+    private volatile Supplier<List<GraphDelta>> graphDeltas = List::of;
+
+    private final Counter conflatedCounter;
+    private final DistributionSummary frameSize;
+
+    public WebSocketService(SimpMessagingTemplate messagingTemplate,
+            @Value("${websocket.positions.flush-interval-ms:50}") long flushIntervalMs,
+            @Value("${websocket.positions.max-batch-size:5000}") int maxBatchSize,
+            MeterRegistry meterRegistry) {
         this.messagingTemplate = messagingTemplate;
+        this.maxBatchSize = maxBatchSize;
+
+        this.conflatedCounter = Counter.builder("flumen.websocket.positions.conflated")
+                .description("Position updates replaced by a newer one before being sent")
+                .register(meterRegistry);
+        this.frameSize = DistributionSummary.builder("flumen.websocket.positions.frame.size")
+                .description("Position updates sent in one frame")
+                .register(meterRegistry);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "websocket-positions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushPositions, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        this.flusher.scheduleWithFixedDelay(this::flushGraphDeltas, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
     }
 
     public void broadcastNodeUpdate(String nodeId, Object update) {
         messagingTemplate.convertAndSend("/topic/nodes/" + nodeId, update);
     }
 
+    /**
+     * Queues the new position of an item for the next frame on /topic/positions, replacing any position of the
+     * same item that has not been sent yet.
+     */
     public void broadcastPositionUpdate(String itemId, String locationId) {
-        logger.info("Broadcasting position update for itemId: {}, locationId: {}", itemId, locationId);
-        messagingTemplate.convertAndSend("/topic/positions", 
-            new PositionUpdate(itemId, locationId));
+        logger.debug("Queueing position update for itemId: {}, locationId: {}", itemId, locationId);
+        if (pendingPositions.put(itemId, new PositionUpdate(itemId, locationId)) != null) {
+            conflatedCounter.increment();
+        }
+    }
+
+    /**
+     * Publishes the predicted progress of moving items, each call as one frame.
+     */
+    public void broadcastProgress(List<ProgressUpdate> updates) {
+        messagingTemplate.convertAndSend("/topic/progress", updates);
+    }
+
+    /**
+     * Sets where the graph deltas published on /topic/graph/deltas come from. Each call of the source returns the
+     * deltas made since its previous call, oldest first.
+     */
+    public void publishGraphDeltasFrom(Supplier<List<GraphDelta>> source) {
+        this.graphDeltas = source;
+    }
+
+    void flushPositions() {
+        try {
+            List<PositionUpdate> frame = new ArrayList<>(Math.min(pendingPositions.size(), maxBatchSize));
+            for (String itemId : pendingPositions.keySet()) {
+                PositionUpdate update = pendingPositions.remove(itemId);
+                if (update == null) {
+                    continue;
+                }
+                frame.add(update);
+                if (frame.size() == maxBatchSize) {
+                    sendFrame(frame);
+                    frame = new ArrayList<>(maxBatchSize);
+                }
+            }
+            if (!frame.isEmpty()) {
+                sendFrame(frame);
+            }
+        } catch (Exception e) {
+            // Keep the schedule alive, whatever was not sent is superseded by the next positions anyway.
+            logger.warn("Failed to publish position updates: {}", e.getMessage());
+        }
+    }
+
+    void flushGraphDeltas() {
+        try {
+            List<GraphDelta> deltas = graphDeltas.get();
+            for (int from = 0; from < deltas.size(); from += maxBatchSize) {
+                messagingTemplate.convertAndSend("/topic/graph/deltas",
+                        deltas.subList(from, Math.min(deltas.size(), from + maxBatchSize)));
+            }
+        } catch (Exception e) {
+            // Subscribers see the versions that were not sent as a gap and catch up through /api/graph/deltas.
+            logger.warn("Failed to publish graph deltas: {}", e.getMessage());
+        }
+    }
+
+    private void sendFrame(List<PositionUpdate> frame) {
+        frameSize.record(frame.size());
+        messagingTemplate.convertAndSend("/topic/positions", frame);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
     }
 
     private record PositionUpdate(String itemId, String locationId) {}
-} 
\ No newline at end of file
+
+    public record ProgressUpdate(String itemId, String locationId, double progress) {}
+}
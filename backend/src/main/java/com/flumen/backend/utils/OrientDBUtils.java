@@ -1,13 +1,11 @@
 package com.flumen.backend.utils;
 
 import java.util.NoSuchElementException;
+import java.util.Optional;
 
 import com.orientechnologies.orient.core.db.ODatabaseSession;
-import com.orientechnologies.orient.core.id.ORID;
-import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.OElement;
 import com.orientechnologies.orient.core.record.OVertex;
-import com.orientechnologies.orient.core.sql.executor.OResult;
 import com.orientechnologies.orient.core.sql.executor.OResultSet;
 
 public class OrientDBUtils {
@@ -18,32 +16,44 @@ public class OrientDBUtils {
 
 	/**
 	 * Helper method to load and validate an OElement as a vertex.
+	 * The lookup is restricted to the given class, so it is served by the unique index on
+	 * {@code <vertexClass>.customId} instead of scanning every vertex in the database.
 	 *
 	 * @param db the database session
-	 * @param id the name of the element
+	 * @param vertexClass the vertex class to search, e.g. Item or Location
+	 * @param id the custom id of the vertex
 	 * @return the loaded and validated OElement
-	 * @throws IllegalArgumentException if the element is not a valid vertex
+	 * @throws NoSuchElementException if no vertex of that class has this id
 	 */
-	public static OVertex loadAndValidateVertexByCustomId(ODatabaseSession db, String id) {
-		String statement = "SELECT * FROM V WHERE customId = ?";
-		OResultSet rs = db.query(statement, id);
-		if (rs.hasNext()) {
-			OResult row = rs.next();
-			OElement element = row.toElement();
+	public static OVertex loadAndValidateVertexByCustomId(ODatabaseSession db, String vertexClass, String id) {
+		return findVertexByCustomId(db, vertexClass, id)
+				.orElseThrow(() -> new NoSuchElementException(String.format("No %s found with id %s", vertexClass, id)));
+	}
 
+	/**
+	 * Helper method to look up a vertex that may not exist, through the unique customId index of its class.
+	 *
+	 * @param db the database session
+	 * @param vertexClass the vertex class to search, e.g. Item or Location
+	 * @param id the custom id of the vertex
+	 * @return the vertex, or an empty optional if none has this id
+	 */
+	public static Optional<OVertex> findVertexByCustomId(ODatabaseSession db, String vertexClass, String id) {
+		String statement = "SELECT FROM " + vertexClass + " WHERE customId = ?";
+		try (OResultSet rs = db.query(statement, id)) {
+			if (!rs.hasNext()) {
+				return Optional.empty();
+			}
+			OElement element = rs.next().toElement();
 			if (element == null || !element.isVertex()) {
 				throw new IllegalArgumentException(
 						String.format("Provided object with id %s is not a valid vertex.", id));
 			}
-			return element.asVertex().get();
-		} else {
-			throw new NoSuchElementException(String.format("No vertex found with id %s", id));
+			return element.asVertex();
 		}
 	}
 
-	public static boolean checkIfAlreadyExists(ODatabaseSession db, String name) {
-		String statement = "SELECT * FROM V WHERE customId = ?";
-		OResultSet rs = db.query(statement, name);
-		return rs.hasNext();
+	public static boolean checkIfAlreadyExists(ODatabaseSession db, String vertexClass, String id) {
+		return findVertexByCustomId(db, vertexClass, id).isPresent();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package com.flumen.backend.messaging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import com.flumen.backend.config.RabbitMQConfig;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class DeadLetterServiceTest {
+    private static final String RETRY_EXCHANGE = "item-events.retry";
+    private static final String DEAD_LETTERS = "item-events.dlq";
+
+    private RabbitTemplate rabbitTemplate;
+    private DeadLetterService deadLetterService;
+
+    @BeforeEach
+    void setUp() {
+        RabbitMQConfig rabbitMQConfig = mock(RabbitMQConfig.class);
+        when(rabbitMQConfig.retryDelaysMs()).thenReturn(new long[] {1000, 10000});
+        when(rabbitMQConfig.retryExchangeName()).thenReturn(RETRY_EXCHANGE);
+        when(rabbitMQConfig.retryQueueName(anyLong()))
+                .thenAnswer(invocation -> "item-events.retry." + invocation.getArgument(0));
+        when(rabbitMQConfig.deadLetterQueueName()).thenReturn(DEAD_LETTERS);
+        when(rabbitMQConfig.itemEventsExchangeName()).thenReturn("item-events");
+        when(rabbitMQConfig.itemEventsRoutingKey()).thenReturn("item");
+        rabbitTemplate = mock(RabbitTemplate.class);
+        deadLetterService = new DeadLetterService(rabbitMQConfig, rabbitTemplate, new SimpleMeterRegistry(), 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        deadLetterService.shutdown();
+    }
+
+    @Test
+    void sendsAFirstFailureToTheShortestRetryTier() {
+        Message message = message(Map.of());
+
+        deadLetterService.retryOrDeadLetter(message, new IllegalStateException("no such item"));
+
+        verify(rabbitTemplate).send(RETRY_EXCHANGE, "item-events.retry.1000", message);
+        assertThat(headers(message))
+                .containsEntry(DeadLetterService.ATTEMPTS_HEADER, 1)
+                .containsEntry(DeadLetterService.ERROR_HEADER, "IllegalStateException: no such item");
+    }
+
+    @Test
+    void sendsEachFurtherFailureToTheNextTier() {
+        Message message = message(Map.of(DeadLetterService.ATTEMPTS_HEADER, 1));
+
+        deadLetterService.retryOrDeadLetter(message, new IllegalStateException("no such item"));
+
+        verify(rabbitTemplate).send(RETRY_EXCHANGE, "item-events.retry.10000", message);
+        assertThat(headers(message)).containsEntry(DeadLetterService.ATTEMPTS_HEADER, 2);
+    }
+
+    @Test
+    void deadLettersAFailureAfterTheLastTier() {
+        Message message = message(Map.of(DeadLetterService.ATTEMPTS_HEADER, 2));
+
+        deadLetterService.retryOrDeadLetter(message, new IllegalStateException("no such item"));
+
+        verify(rabbitTemplate).send(RETRY_EXCHANGE, DEAD_LETTERS, message);
+        assertThat(headers(message))
+                .containsEntry(DeadLetterService.ATTEMPTS_HEADER, 3)
+                .containsKey(DeadLetterService.FAILED_AT_HEADER);
+    }
+
+    @Test
+    void deadLettersAnUnreadableMessageWithoutRetrying() {
+        Message message = message(Map.of());
+
+        deadLetterService.deadLetter(message, new IllegalArgumentException("Unreadable event"));
+
+        verify(rabbitTemplate).send(RETRY_EXCHANGE, DEAD_LETTERS, message);
+        assertThat(headers(message))
+                .containsEntry(DeadLetterService.ERROR_HEADER, "IllegalArgumentException: Unreadable event")
+                .doesNotContainKey(DeadLetterService.ATTEMPTS_HEADER);
+    }
+
+    @Test
+    void truncatesLongErrors() {
+        Message message = message(Map.of());
+
+        deadLetterService.retryOrDeadLetter(message, new IllegalStateException("x".repeat(5000)));
+
+        assertThat((String) headers(message).get(DeadLetterService.ERROR_HEADER)).hasSize(1000);
+    }
+
+    @Test
+    void tellsRetriesFromFirstDeliveries() {
+        assertThat(DeadLetterService.isRetry(message(Map.of()).getMessageProperties())).isFalse();
+        assertThat(DeadLetterService.isRetry(message(Map.of(DeadLetterService.ATTEMPTS_HEADER, 1))
+                .getMessageProperties())).isTrue();
+        assertThat(DeadLetterService.isRetry(message(Map.of(DeadLetterService.REPLAYED_HEADER, true))
+                .getMessageProperties())).isTrue();
+    }
+
+    @Test
+    void replaysDeadLettersAsRetriesWithoutTheirFailure() throws Exception {
+        Channel channel = mock(Channel.class);
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                .messageId("message-1")
+                .headers(Map.of(DeadLetterService.ATTEMPTS_HEADER, 3, DeadLetterService.ERROR_HEADER, "boom",
+                        DeadLetterService.FAILED_AT_HEADER, "2024-05-01T10:00:00Z", "x-consistent-hash-by", "item-1"))
+                .build();
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        when(channel.basicGet(DEAD_LETTERS, false))
+                .thenReturn(new GetResponse(new Envelope(7, false, RETRY_EXCHANGE, DEAD_LETTERS), properties, body, 0))
+                .thenReturn(null);
+        when(rabbitTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<ChannelCallback<?>>getArgument(0).doInRabbit(channel));
+
+        deadLetterService.replay(10, 100);
+
+        verify(channel, timeout(1000)).basicPublish(eq("item-events"), eq("item"), argThat(replayed -> {
+            Map<String, Object> headers = replayed.getHeaders();
+            return Boolean.TRUE.equals(headers.get(DeadLetterService.REPLAYED_HEADER))
+                    && !headers.containsKey(DeadLetterService.ATTEMPTS_HEADER)
+                    && !headers.containsKey(DeadLetterService.ERROR_HEADER)
+                    && !headers.containsKey(DeadLetterService.FAILED_AT_HEADER)
+                    && "item-1".equals(headers.get("x-consistent-hash-by"))
+                    && "message-1".equals(replayed.getMessageId());
+        }), eq(body));
+        verify(channel, timeout(1000)).basicAck(7, false);
+    }
+
+    private static Message message(Map<String, Object> headers) {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId("message-1");
+        headers.forEach(properties::setHeader);
+        return new Message("{}".getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    private static Map<String, Object> headers(Message message) {
+        return message.getMessageProperties().getHeaders();
+    }
+}
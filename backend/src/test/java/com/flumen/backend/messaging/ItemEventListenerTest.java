@@ -0,0 +1,159 @@
+package com.flumen.backend.messaging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+
+import com.flumen.backend.config.RabbitMQConfig;
+import com.flumen.backend.services.GraphWriteBehind;
+import com.flumen.backend.services.ItemEventProcessor;
+import com.rabbitmq.client.Channel;
+
+import flumen.events.BinaryEventCodec;
+import flumen.events.DomainEvent;
+import flumen.events.ItemSpeedChangedEvent;
+
+class ItemEventListenerTest {
+    private static final String QUEUE = "item-events.0";
+    private static final IllegalStateException FAILURE = new IllegalStateException("no such item");
+
+    private ItemEventProcessor eventProcessor;
+    private DeadLetterService deadLetterService;
+    private GraphWriteBehind graphWriteBehind;
+    private Channel channel;
+    private ItemEventListener listener;
+
+    @BeforeEach
+    void setUp() {
+        eventProcessor = mock(ItemEventProcessor.class);
+        deadLetterService = mock(DeadLetterService.class);
+        graphWriteBehind = mock(GraphWriteBehind.class);
+        channel = mock(Channel.class);
+        listener = new ItemEventListener(eventProcessor, mock(RabbitMQConfig.class),
+                mock(SimpleRabbitListenerContainerFactory.class), deadLetterService, graphWriteBehind);
+    }
+
+    @Test
+    void acknowledgesABatchThatAppliedWithOneAck() throws Exception {
+        when(eventProcessor.processBatch(anyList(), any())).thenReturn(List.of(applied(), applied()));
+
+        listener.onMessageBatch(List.of(event(1, 0), event(2, 0)), channel);
+
+        verify(channel).basicAck(2, true);
+        verify(deadLetterService, never()).retryOrDeadLetter(any(), any());
+    }
+
+    @Test
+    void routesFailedEventsToRetryAndUnreadableOnesToTheDeadLetters() throws Exception {
+        when(eventProcessor.processBatch(anyList(), any())).thenReturn(List.of(applied(), failed()));
+        Message good = event(1, 0);
+        Message failing = event(2, 0);
+        Message unreadable = message(3, "not an event".getBytes(StandardCharsets.UTF_8), null);
+
+        listener.onMessageBatch(List.of(good, failing, unreadable), channel);
+
+        verify(deadLetterService).retryOrDeadLetter(failing, FAILURE);
+        verify(deadLetterService).deadLetter(any(), any(IllegalArgumentException.class));
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+        verify(channel).basicAck(3, false);
+    }
+
+    @Test
+    void requeuesAFailedEventThatCannotBeRouted() throws Exception {
+        when(eventProcessor.processBatch(anyList(), any())).thenReturn(List.of(failed()));
+        Message failing = event(1, 0);
+        doThrow(new AmqpConnectException(new RuntimeException("down")))
+                .when(deadLetterService).retryOrDeadLetter(any(), any());
+
+        listener.onMessageBatch(List.of(failing), channel);
+
+        verify(channel).basicNack(1, false, true);
+        verify(channel, never()).basicAck(1, false);
+    }
+
+    @Test
+    void requeuesABatchTheEventLogCouldNotMakeDurable() throws Exception {
+        when(eventProcessor.processBatch(anyList(), any())).thenReturn(List.of(applied(), failed()));
+        doThrow(new IllegalStateException("fsync failed")).when(eventProcessor).awaitDurable();
+
+        listener.onMessageBatch(List.of(event(1, 0), event(2, 0)), channel);
+
+        verify(channel).basicNack(2, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+        verify(deadLetterService, never()).retryOrDeadLetter(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tellsTheProcessorWhichEventsAreRetries() {
+        when(eventProcessor.processBatch(anyList(), any())).thenReturn(List.of(applied(), applied()));
+
+        listener.onMessageBatch(List.of(event(1, 0), event(2, 1)), channel);
+
+        ArgumentCaptor<List<DomainEvent>> events = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Predicate<DomainEvent>> retried = ArgumentCaptor.forClass(Predicate.class);
+        verify(eventProcessor).processBatch(events.capture(), retried.capture());
+        assertThat(retried.getValue().test(events.getValue().get(0))).isFalse();
+        assertThat(retried.getValue().test(events.getValue().get(1))).isTrue();
+    }
+
+    @Test
+    void reloadsTheGraphOnlyOnTheFirstBatchOfAnAcquiredQueue() {
+        when(eventProcessor.processBatch(anyList(), any())).thenReturn(List.of(applied()));
+
+        listener.onMessageBatch(List.of(event(1, 0)), channel);
+        listener.onMessageBatch(List.of(event(2, 0)), channel);
+        assertThat(listener.owns(QUEUE)).isTrue();
+        listener.release(QUEUE);
+        listener.onMessageBatch(List.of(event(3, 0)), channel);
+
+        verify(graphWriteBehind, times(2)).flushAndRefresh();
+    }
+
+    private static CompletableFuture<Void> applied() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletableFuture<Void> failed() {
+        return CompletableFuture.failedFuture(FAILURE);
+    }
+
+    private static Message event(long deliveryTag, int attempts) {
+        return message(deliveryTag, BinaryEventCodec.encode(new ItemSpeedChangedEvent("item-" + deliveryTag, 1.0)),
+                attempts > 0 ? attempts : null);
+    }
+
+    private static Message message(long deliveryTag, byte[] body, Integer attempts) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(BinaryEventCodec.CONTENT_TYPE);
+        properties.setConsumerQueue(QUEUE);
+        properties.setDeliveryTag(deliveryTag);
+        properties.setMessageId("message-" + deliveryTag);
+        if (attempts != null) {
+            properties.setHeader(DeadLetterService.ATTEMPTS_HEADER, attempts);
+        }
+        return new Message(body, properties);
+    }
+}
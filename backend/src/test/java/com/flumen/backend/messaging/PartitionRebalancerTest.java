@@ -0,0 +1,102 @@
+package com.flumen.backend.messaging;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+
+import com.flumen.backend.config.RabbitMQConfig;
+import com.flumen.backend.services.GraphWriteBehind;
+
+class PartitionRebalancerTest {
+    private static final List<String> QUEUES = List.of("item-events.0", "item-events.1", "item-events.2",
+            "item-events.3");
+
+    private ItemEventListener itemEventListener;
+    private RabbitListenerEndpointRegistry listenerRegistry;
+    private AmqpAdmin amqpAdmin;
+    private GraphWriteBehind graphWriteBehind;
+    private PartitionRebalancer rebalancer;
+
+    @BeforeEach
+    void setUp() {
+        RabbitMQConfig rabbitMQConfig = mock(RabbitMQConfig.class);
+        when(rabbitMQConfig.partitionQueueNames()).thenReturn(QUEUES);
+        itemEventListener = mock(ItemEventListener.class);
+        listenerRegistry = mock(RabbitListenerEndpointRegistry.class);
+        amqpAdmin = mock(AmqpAdmin.class);
+        graphWriteBehind = mock(GraphWriteBehind.class);
+        rebalancer = new PartitionRebalancer(rabbitMQConfig, itemEventListener, listenerRegistry, amqpAdmin,
+                graphWriteBehind);
+    }
+
+    @Test
+    void stopsTheSurplusBeforePersistingWhatItAppliedAndReleasingIt() {
+        consumers(2);
+        when(itemEventListener.owns(anyString())).thenReturn(true);
+        MessageListenerContainer third = container("item-events.2");
+        MessageListenerContainer fourth = container("item-events.3");
+
+        rebalancer.rebalance();
+
+        InOrder order = inOrder(third, fourth, graphWriteBehind, itemEventListener);
+        order.verify(third).stop();
+        order.verify(fourth).stop();
+        order.verify(graphWriteBehind).flush();
+        order.verify(itemEventListener).release("item-events.2");
+        order.verify(itemEventListener).release("item-events.3");
+        order.verify(third).start();
+        order.verify(fourth).start();
+        verify(itemEventListener, never()).release("item-events.0");
+    }
+
+    @Test
+    void keepsItsShare() {
+        consumers(2);
+        when(itemEventListener.owns("item-events.0")).thenReturn(true);
+        when(itemEventListener.owns("item-events.1")).thenReturn(true);
+
+        rebalancer.rebalance();
+
+        verify(graphWriteBehind, never()).flush();
+        verify(itemEventListener, never()).release(anyString());
+    }
+
+    @Test
+    void refreshesTheGraphOnlyWhileOtherInstancesConsume() {
+        consumers(1);
+        rebalancer.rebalance();
+        rebalancer.refreshSharedGraph();
+        verify(graphWriteBehind, never()).flushAndRefresh();
+
+        consumers(2);
+        rebalancer.rebalance();
+        rebalancer.refreshSharedGraph();
+        verify(graphWriteBehind).flushAndRefresh();
+    }
+
+    private void consumers(int count) {
+        for (String queue : QUEUES) {
+            when(amqpAdmin.getQueueInfo(queue)).thenReturn(new QueueInformation(queue, 0, count));
+        }
+    }
+
+    private MessageListenerContainer container(String queue) {
+        MessageListenerContainer container = mock(MessageListenerContainer.class);
+        when(listenerRegistry.getListenerContainer(ItemEventListener.CONTAINER_ID_PREFIX + queue))
+                .thenReturn(container);
+        return container;
+    }
+}
@@ -0,0 +1,72 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.flumen.backend.models.response.BulkEventResponse;
+import com.flumen.backend.models.response.BulkEventResponse.LineError;
+
+import flumen.events.DomainEvent;
+import flumen.events.ItemSpeedChangedEvent;
+
+class BulkEventIngesterTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final List<DomainEvent> processed = new ArrayList<>();
+    private BulkEventIngester ingester;
+
+    @BeforeEach
+    void setUp() {
+        ItemEventProcessor eventProcessor = mock(ItemEventProcessor.class);
+        when(eventProcessor.processBatch(anyList())).thenAnswer(invocation -> {
+            List<DomainEvent> events = invocation.getArgument(0);
+            processed.addAll(events);
+            return events.stream().map(event -> CompletableFuture.<Void>completedFuture(null)).toList();
+        });
+        ingester = new BulkEventIngester(eventProcessor, 1000, 100, 200);
+    }
+
+    @Test
+    void rejectsALineHoldingNoEvent() throws IOException {
+        BulkEventResponse response = ingest(event("item-1") + "\nnull\n" + event("item-2") + "\n");
+
+        assertThat(response.getAccepted()).isEqualTo(2);
+        assertThat(response.getErrors()).extracting(LineError::getLine).containsExactly(2L);
+    }
+
+    @Test
+    void rejectsALineLongerThanTheLimitAndReadsOn() throws IOException {
+        String tooLong = "{\"padding\":\"" + "x".repeat(500) + "\"}";
+
+        BulkEventResponse response = ingest(tooLong + "\r\n" + event("item-1") + "\r\n" + event("item-2"));
+
+        assertThat(response.getAccepted()).isEqualTo(2);
+        assertThat(response.getErrors()).singleElement().satisfies(error -> {
+            assertThat(error.getLine()).isEqualTo(1);
+            assertThat(error.getMessage()).contains("longer than 200");
+        });
+        assertThat(processed).extracting(DomainEvent::getEntityId).containsExactly("item-1", "item-2");
+    }
+
+    private BulkEventResponse ingest(String body) throws IOException {
+        return ingester.ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String event(String itemId) throws IOException {
+        return objectMapper.writeValueAsString(new ItemSpeedChangedEvent(itemId, 2.0));
+    }
+}
@@ -0,0 +1,77 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+
+import flumen.events.ItemCreatedEvent;
+import flumen.events.ItemPositionChangedEvent;
+import flumen.events.LocationConnectionCreatedEvent;
+import flumen.events.LocationCreatedEvent;
+
+class EventApplierTest {
+
+    private final Map<String, Location> locations = new HashMap<>();
+    private final Map<String, Item> items = new HashMap<>();
+    private final EventApplier.Entities entities = new EventApplier.Entities() {
+        @Override
+        public void addItem(Item item) {
+            items.put(item.getId(), item);
+        }
+
+        @Override
+        public void addLocation(Location location) {
+            locations.put(location.getId(), location);
+        }
+
+        @Override
+        public Location location(String id) {
+            return locations.get(id);
+        }
+
+        @Override
+        public void updateItem(String id, Consumer<Item> change) {
+            change.accept(items.get(id));
+        }
+
+        @Override
+        public void updateLocation(String id, Consumer<Location> change) {
+            change.accept(locations.get(id));
+        }
+    };
+
+    @Test
+    void appliesEventsThroughTheEntities() {
+        EventApplier.apply(new LocationCreatedEvent("location-1", "A", true, 45.0, 9.0, 100.0, 1.0, "Road", null),
+                entities);
+        EventApplier.apply(new LocationCreatedEvent("location-2", "B", true, 45.1, 9.1, 100.0, 1.0, "Road", null),
+                entities);
+        EventApplier.apply(new LocationConnectionCreatedEvent("location-1", "location-2"), entities);
+        EventApplier.apply(new ItemCreatedEvent("item-1", "Truck", 1.0, true, null), entities);
+        boolean applied = EventApplier.apply(new ItemPositionChangedEvent("item-1", "location-1"), entities);
+
+        assertThat(applied).isTrue();
+        assertThat(locations.get("location-1").getOutboundConnectionIds()).containsExactly("location-2");
+        assertThat(items.get("item-1").getLocation()).isSameAs(locations.get("location-1"));
+    }
+
+    @Test
+    void skipsEventsReferringToALocationTheEntitiesDoNotResolve() {
+        EventApplier.apply(new LocationCreatedEvent("location-1", "A", true, 45.0, 9.0, 100.0, 1.0, "Road", null),
+                entities);
+        EventApplier.apply(new ItemCreatedEvent("item-1", "Truck", 1.0, true, null), entities);
+
+        EventApplier.apply(new LocationConnectionCreatedEvent("location-1", "location-2"), entities);
+        EventApplier.apply(new ItemPositionChangedEvent("item-1", "location-2"), entities);
+
+        assertThat(locations.get("location-1").getOutboundConnectionIds()).isEmpty();
+        assertThat(items.get("item-1").getLocation()).isNull();
+    }
+}
@@ -0,0 +1,146 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.domain.ProgressInfo;
+
+class GraphCheckpointFilesTest {
+
+    @TempDir
+    Path directory;
+
+    private EventStore eventStore;
+
+    @BeforeEach
+    void setUp() {
+        eventStore = mock(EventStore.class);
+        when(eventStore.isReplayable()).thenReturn(true);
+    }
+
+    @Test
+    void readsBackWhatItWrote() {
+        GraphCheckpointFiles files = files(2);
+        Location dock = new Location("location-1", "Dock", 45.1, 9.2, 120.0, 1.5, "Road", true, Map.of("lanes", 2));
+        Location yard = new Location("location-2", null, null, null, null, null, null, null, null);
+        dock.addConnectionTo("location-2");
+        Instant movedAt = Instant.parse("2024-05-01T10:15:30.123456789Z");
+        Item moving = new Item("item-1", "Truck", 0.5, true, new HashMap<>(Map.of("plate", "AB123")), dock,
+                new ProgressInfo(0.25, movedAt));
+        Item undated = new Item("item-2", "Cart", null, false, null, yard, new ProgressInfo(0.0, null));
+        Item unplaced = new Item("item-3", "Spare", 1.0, false, new HashMap<>());
+
+        files.write(41, List.of(dock, yard), List.of(moving, undated, unplaced));
+        GraphCheckpointFiles.Checkpoint checkpoint = files.loadLatest();
+
+        assertThat(checkpoint.eventPosition()).isEqualTo(41);
+        assertThat(checkpoint.locations()).usingRecursiveFieldByFieldElementComparatorIgnoringFields("changes")
+                .containsExactly(dock, yard);
+        assertThat(checkpoint.locations().get(0).getOutboundConnectionIds()).containsExactly("location-2");
+
+        Item readMoving = checkpoint.items().get(0);
+        assertThat(readMoving.getLocation()).isSameAs(checkpoint.locations().get(0));
+        assertThat(readMoving.getProgressInfo()).isEqualTo(new ProgressInfo(0.25, movedAt));
+        assertThat(readMoving.getProperties()).isEqualTo(Map.of("plate", "AB123"));
+        assertThat(checkpoint.items().get(1).getProgressInfo()).isEqualTo(new ProgressInfo(0.0, null));
+        assertThat(checkpoint.items().get(1).getSpeed()).isNull();
+        assertThat(checkpoint.items().get(2).getLocation()).isNull();
+        assertThat(checkpoint.items().get(2).getProgressInfo()).isNull();
+    }
+
+    @Test
+    void loadsTheNewestCheckpointAndKeepsOnlyTheRetainedOnes() throws Exception {
+        GraphCheckpointFiles files = files(2);
+
+        for (long position = 1; position <= 3; position++) {
+            files.write(position, List.of(), List.of());
+            Thread.sleep(2); // checkpoints are named after the millisecond they are taken at
+        }
+
+        assertThat(files.loadLatest().eventPosition()).isEqualTo(3);
+        assertThat(checkpointFiles()).hasSize(2);
+    }
+
+    @Test
+    void fallsBackToAnOlderCheckpointWhenTheNewestIsCorrupt() throws Exception {
+        GraphCheckpointFiles files = files(2);
+        files.write(1, List.of(), List.of());
+        Thread.sleep(2);
+        files.write(2, List.of(new Location("location-1", "Dock", 45.0, 9.0, 10.0, 1.0, "Road", true, null)),
+                List.of());
+
+        try (RandomAccessFile file = new RandomAccessFile(checkpointFiles().get(1).toFile(), "rw")) {
+            // Inside the first location, past the header.
+            file.seek(40);
+            int b = file.read();
+            file.seek(40);
+            file.write(b ^ 0xFF);
+        }
+
+        assertThat(files.loadLatest().eventPosition()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresATruncatedCheckpoint() throws IOException {
+        GraphCheckpointFiles files = files(2);
+        files.write(1, List.of(new Location("location-1", "Dock", 45.0, 9.0, 10.0, 1.0, "Road", true, null)),
+                List.of());
+
+        try (RandomAccessFile file = new RandomAccessFile(checkpointFiles().get(0).toFile(), "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        assertThat(files.loadLatest()).isNull();
+    }
+
+    @Test
+    void isDisabledWithAnEventStoreThatCannotReplay() {
+        when(eventStore.isReplayable()).thenReturn(false);
+        GraphCheckpointFiles files = files(2);
+
+        assertThat(files.isEnabled()).isFalse();
+        assertThat(files.loadLatest()).isNull();
+    }
+
+    @Test
+    void keepsTheDatabaseAheadUntilACheckpointCoversEveryUnloggedChange() {
+        GraphCheckpointFiles files = files(2);
+        files.markDatabaseAhead();
+        long covered = files.unloggedChanges();
+        files.markDatabaseAhead();
+
+        files.clearDatabaseAhead(covered);
+        assertThat(files.isDatabaseAhead()).isTrue();
+        assertThat(files(2).isDatabaseAhead()).isTrue();
+
+        files.clearDatabaseAhead(files.unloggedChanges());
+        assertThat(files.isDatabaseAhead()).isFalse();
+    }
+
+    private GraphCheckpointFiles files(int retain) {
+        return new GraphCheckpointFiles(directory.toString(), retain, true, eventStore);
+    }
+
+    private List<Path> checkpointFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".ckpt")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.flumen.backend.domain.Item;
+
+import flumen.events.DomainEvent;
+import flumen.events.ItemCreatedEvent;
+import flumen.events.ItemPositionChangedEvent;
+import flumen.events.ItemSpeedChangedEvent;
+import flumen.events.LocationConnectionCreatedEvent;
+import flumen.events.LocationCreatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Checkpoints a graph built from events, then starts a second graph from that checkpoint and the event log,
+ * as a restart would.
+ */
+class GraphCheckpointerTest {
+
+    @TempDir
+    Path directory;
+
+    private SegmentLogEventStore eventStore;
+    private GraphCheckpointFiles checkpointFiles;
+    private OrientDBService orientDBService;
+    private Instance running;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        eventStore = new SegmentLogEventStore(new SimpleMeterRegistry(), directory.resolve("events").toString(), 1, 1,
+                false);
+        checkpointFiles = new GraphCheckpointFiles(directory.resolve("checkpoints").toString(), 2, true, eventStore);
+        orientDBService = MemoryOrientDB.open();
+        running = new Instance();
+    }
+
+    @AfterEach
+    void tearDown() {
+        running.eventLanes.shutdown();
+        eventStore.close();
+        orientDBService.close();
+    }
+
+    @Test
+    void restartsFromTheCheckpointAndReplaysTheEventsAfterIt() {
+        running.apply(
+                new LocationCreatedEvent("location-1", "A", true, 45.0, 9.0, 100.0, 1.0, "Road", null),
+                new LocationCreatedEvent("location-2", "B", true, 45.1, 9.1, 100.0, 1.0, "Road", null),
+                new LocationConnectionCreatedEvent("location-1", "location-2"),
+                new ItemCreatedEvent("item-1", "Truck", 1.0, true, null),
+                new ItemPositionChangedEvent("item-1", "location-1"));
+        running.checkpointer.checkpoint();
+        running.apply(
+                new ItemPositionChangedEvent("item-1", "location-2"),
+                new ItemSpeedChangedEvent("item-1", 3.0));
+        running.eventLanes.shutdown();
+
+        running = new Instance();
+        assertThat(running.graphStore.getCheckpointPosition()).isEqualTo(4);
+        assertThat(running.graphStore.getItem("item-1").getLocation().getId()).isEqualTo("location-1");
+
+        running.checkpointer.replayTail();
+
+        Item item = running.graphStore.getItem("item-1");
+        assertThat(item.getLocation().getId()).isEqualTo("location-2");
+        assertThat(item.getSpeed()).isEqualTo(3.0);
+        assertThat(running.graphStore.getLocation("location-1").getOutboundConnectionIds())
+                .containsExactly("location-2");
+    }
+
+    @Test
+    void skipsARedeliveryOfAReplayedEvent() {
+        running.apply(new ItemCreatedEvent("item-1", "Truck", 1.0, true, null));
+        running.checkpointer.checkpoint();
+        DomainEvent speedChange = new ItemSpeedChangedEvent("item-1", 3.0);
+        running.apply(speedChange);
+        running.eventLanes.shutdown();
+
+        running = new Instance();
+        running.checkpointer.replayTail();
+        running.apply(speedChange);
+
+        assertThat(eventStore.lastPosition()).isEqualTo(1);
+    }
+
+    @Test
+    void hydratesFromOrientDBWhenItHoldsChangesTheCheckpointMisses() {
+        running.apply(new ItemCreatedEvent("item-1", "Truck", 1.0, true, null));
+        running.checkpointer.checkpoint();
+        // A change made through the REST API, which only the write-behind persists.
+        running.graphStore.updateItem("item-1", item -> item.applyChanges(Map.of("name", "Van")));
+        running.checkpointer.recordUnloggedChange();
+        running.writeBehind.flush();
+        running.apply(new ItemSpeedChangedEvent("item-1", 3.0));
+        running.eventLanes.shutdown();
+
+        running = new Instance();
+        running.checkpointer.replayTail();
+
+        Item item = running.graphStore.getItem("item-1");
+        assertThat(item.getName()).isEqualTo("Van");
+        assertThat(item.getSpeed()).isEqualTo(3.0);
+        assertThat(checkpointFiles.isDatabaseAhead()).isTrue();
+
+        running.checkpointer.checkpoint();
+        assertThat(checkpointFiles.isDatabaseAhead()).isFalse();
+    }
+
+    /**
+     * The services of one backend instance sharing the event log and checkpoint directory.
+     */
+    private class Instance {
+        final GraphStore graphStore;
+        final GraphWriteBehind writeBehind;
+        final EventLaneExecutor eventLanes;
+        final ItemEventProcessor processor;
+        final GraphCheckpointer checkpointer;
+
+        Instance() {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            WebSocketService webSocketService = mock(WebSocketService.class);
+            VertexLookup vertexLookup = new VertexLookup(meterRegistry);
+            graphStore = new GraphStore(orientDBService, vertexLookup, new GraphDeltaLog(webSocketService, 1000),
+                    checkpointFiles);
+            graphStore.hydrate();
+            writeBehind = new GraphWriteBehind(graphStore, new ItemService(graphStore), new LocationService(graphStore),
+                    orientDBService, vertexLookup, meterRegistry, 500);
+            eventLanes = new EventLaneExecutor(meterRegistry, 2, 100);
+            processor = new ItemEventProcessor(eventStore, mock(ClickHouseEventSink.class),
+                    webSocketService, graphStore, eventLanes, new RecentEventIds(meterRegistry, 1000), meterRegistry);
+            checkpointer = new GraphCheckpointer(graphStore, writeBehind, checkpointFiles, eventStore, processor,
+                    meterRegistry);
+        }
+
+        void apply(DomainEvent... events) {
+            for (DomainEvent event : events) {
+                // One at a time, events of different entities would otherwise run on different lanes.
+                processor.process(event).join();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.models.graph.GraphDelta;
+
+class GraphDeltaLogTest {
+
+    @Test
+    void sendsOnlyTheNewestDeltaOfEachItem() {
+        GraphDeltaLog deltaLog = new GraphDeltaLog(mock(WebSocketService.class), 100);
+        Location location = new Location("location-1", "L1", 45.0, 9.0, 100.0, 1.0, "Road", true, null);
+        Item item = new Item("item-1", "Truck", 1.0, true, new HashMap<>(), location);
+
+        deltaLog.locationUpserted(location);                                   // 1
+        deltaLog.itemUpserted(item);                                           // 2
+        deltaLog.itemUpserted(new Item("item-2", "Cart", 1.0, true, null));    // 3
+        deltaLog.itemUpserted(item);                                           // 4
+        deltaLog.itemRemoved("item-2");                                        // 5
+        deltaLog.itemUpserted(item);                                           // 6
+
+        List<GraphDelta> sent = deltaLog.takeUnsent();
+
+        assertThat(sent).extracting(GraphDelta::getVersion, GraphDelta::getPreviousVersion, GraphDelta::getType)
+                .containsExactly(
+                        tuple(1L, 0L, GraphDelta.Type.LOCATION_UPSERTED),
+                        tuple(5L, 1L, GraphDelta.Type.ITEM_REMOVED),
+                        tuple(6L, 5L, GraphDelta.Type.ITEM_UPSERTED));
+        assertThat(deltaLog.since(0)).hasSize(6);
+    }
+
+    @Test
+    void chainsFramesAndShowsOverwrittenDeltasAsAGap() {
+        GraphDeltaLog deltaLog = new GraphDeltaLog(mock(WebSocketService.class), 2);
+        deltaLog.itemRemoved("item-1");
+        assertThat(deltaLog.takeUnsent()).extracting(GraphDelta::getPreviousVersion).containsExactly(0L);
+
+        deltaLog.itemRemoved("item-2");
+        deltaLog.itemRemoved("item-3");
+        deltaLog.itemRemoved("item-4");
+
+        // Version 2 was overwritten, so the first delta sent follows a version the subscriber never saw.
+        assertThat(deltaLog.takeUnsent()).extracting(GraphDelta::getVersion, GraphDelta::getPreviousVersion)
+                .containsExactly(tuple(3L, 2L), tuple(4L, 3L));
+    }
+}
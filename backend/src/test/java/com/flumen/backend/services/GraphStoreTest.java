@@ -0,0 +1,22 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GraphStoreTest {
+
+    @Test
+    void failsToHydrateWithoutACheckpointWhenOrientDBCannotBeRead() {
+        OrientDBService orientDBService = mock(OrientDBService.class);
+        when(orientDBService.getSession()).thenThrow(new IllegalStateException("database is down"));
+        GraphStore graphStore = new GraphStore(orientDBService, new VertexLookup(new SimpleMeterRegistry()),
+                new GraphDeltaLog(mock(WebSocketService.class), 1000), mock(GraphCheckpointFiles.class));
+
+        assertThatThrownBy(graphStore::hydrate).hasMessage("database is down");
+    }
+}
@@ -0,0 +1,128 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+
+import flumen.events.DomainEvent;
+import flumen.events.ItemSpeedChangedEvent;
+import flumen.events.LocationConnectionCreatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ItemEventProcessorTest {
+    private static final String ITEM_ID = "item-1";
+
+    private EventStore eventStore;
+    private GraphStore graphStore;
+    private EventLaneExecutor eventLanes;
+    private ItemEventProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WebSocketService webSocketService = mock(WebSocketService.class);
+        eventStore = mock(EventStore.class);
+        graphStore = new GraphStore(mock(OrientDBService.class), new VertexLookup(meterRegistry),
+                new GraphDeltaLog(webSocketService, 1000), null);
+        eventLanes = new EventLaneExecutor(meterRegistry, 2, 100);
+        processor = new ItemEventProcessor(eventStore, mock(ClickHouseEventSink.class),
+                webSocketService, graphStore, eventLanes, new RecentEventIds(meterRegistry, 1000), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventLanes.shutdown();
+    }
+
+    @Test
+    void appliesACopyWithinOneBatchOnce() {
+        addItem();
+        DomainEvent event = new ItemSpeedChangedEvent(ITEM_ID, 2.0);
+
+        List<CompletableFuture<Void>> results = processor.processBatch(List.of(event, event));
+        results.forEach(CompletableFuture::join);
+
+        verify(eventStore).saveEvents(eq(ITEM_ID), argThat(events -> events.size() == 1));
+    }
+
+    @Test
+    void skipsARedeliveryOfAnAppliedEvent() {
+        addItem();
+        DomainEvent event = new ItemSpeedChangedEvent(ITEM_ID, 2.0);
+
+        processor.process(event).join();
+        processor.process(event).join();
+
+        verify(eventStore, times(1)).saveEvents(eq(ITEM_ID), anyList());
+    }
+
+    @Test
+    void appliesARedeliveryOfAFailedEvent() {
+        DomainEvent event = new ItemSpeedChangedEvent(ITEM_ID, 2.0);
+
+        assertThatThrownBy(() -> processor.process(event).join()).isInstanceOf(CompletionException.class);
+        addItem();
+        processor.process(event).join();
+
+        verify(eventStore, times(1)).saveEvents(eq(ITEM_ID), anyList());
+        assertThat(graphStore.getItem(ITEM_ID).getSpeed()).isEqualTo(2.0);
+    }
+
+    @Test
+    void appliesARedeliveryOfAnEventThatWasNotLogged() {
+        addItem();
+        DomainEvent event = new ItemSpeedChangedEvent(ITEM_ID, 2.0);
+        doThrow(new IllegalStateException("disk full")).doNothing().when(eventStore).saveEvents(eq(ITEM_ID), anyList());
+
+        assertThatThrownBy(() -> processor.process(event).join()).isInstanceOf(CompletionException.class);
+        processor.process(event).join();
+
+        verify(eventStore, times(2)).saveEvents(eq(ITEM_ID), anyList());
+    }
+
+    @Test
+    void failsTheEventsOfALaneThatRejectsThem() {
+        addItem();
+        eventLanes.shutdown();
+
+        CompletableFuture<Void> result = processor.process(new ItemSpeedChangedEvent(ITEM_ID, 2.0));
+
+        assertThatThrownBy(result::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        verify(eventStore, never()).saveEvents(eq(ITEM_ID), anyList());
+    }
+
+    @Test
+    void failsAConnectionToAnUnknownLocation() {
+        graphStore.addLocation(new Location("location-1", "L1", 45.0, 9.0, 100.0, 1.0, "Road", true, null));
+
+        CompletableFuture<Void> result = processor.process(new LocationConnectionCreatedEvent("location-1", "location-2"));
+
+        assertThatThrownBy(result::join).isInstanceOf(CompletionException.class);
+        assertThat(graphStore.getLocation("location-1").getOutboundConnectionIds()).isEmpty();
+        verify(eventStore, never()).saveEvents(eq("location-1"), anyList());
+    }
+
+    private void addItem() {
+        graphStore.addItem(new Item(ITEM_ID, "item", 1.0, true, new HashMap<>()));
+    }
+}
@@ -0,0 +1,21 @@
+package com.flumen.backend.services;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Opens an {@link OrientDBService} on an embedded, non-persistent database, with the schema the backend creates.
+ */
+final class MemoryOrientDB {
+
+    private MemoryOrientDB() {
+    }
+
+    static OrientDBService open() {
+        OrientDBService service = new OrientDBService();
+        ReflectionTestUtils.setField(service, "dbUrl", "memory:");
+        ReflectionTestUtils.setField(service, "username", "test");
+        ReflectionTestUtils.setField(service, "password", "test");
+        service.init();
+        return service;
+    }
+}
@@ -0,0 +1,50 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import flumen.events.DomainEvent;
+import flumen.events.ItemSpeedChangedEvent;
+
+class OrientDBEventStoreTest {
+
+    private OrientDBService orientDBService;
+    private OrientDBEventStore store;
+
+    @BeforeEach
+    void setUp() {
+        orientDBService = MemoryOrientDB.open();
+        store = new OrientDBEventStore(orientDBService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        orientDBService.close();
+    }
+
+    @Test
+    void readsBackTheEventsOfAnEntity() {
+        DomainEvent first = new ItemSpeedChangedEvent("item-1", 1.0);
+        DomainEvent other = new ItemSpeedChangedEvent("item-2", 2.0);
+
+        store.saveEvents("item-1", List.of(first));
+        store.saveEvents("item-2", List.of(other));
+
+        assertThat(store.getEventsForEntity("item-1")).extracting(DomainEvent::getEventId)
+                .containsExactly(first.getEventId());
+    }
+
+    @Test
+    void reportsAnAppendThatFailed() {
+        orientDBService.close();
+
+        assertThatThrownBy(() -> store.saveEvents("item-1", List.of(new ItemSpeedChangedEvent("item-1", 1.0))))
+                .isInstanceOf(RuntimeException.class);
+    }
+}
@@ -0,0 +1,87 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.domain.ProgressInfo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ProgressEngineTest {
+
+    private WebSocketService webSocketService;
+    private ProgressEngine engine;
+    private Location location;
+
+    @BeforeEach
+    void setUp() {
+        webSocketService = mock(WebSocketService.class);
+        engine = new ProgressEngine(mock(GraphStore.class), webSocketService, mock(ItemEventProcessor.class), 50, 16, 2,
+                new SimpleMeterRegistry());
+        location = new Location("location-1", "L1", 45.0, 9.0, 1_000_000.0, 1.0, "Road", true, null);
+    }
+
+    @Test
+    void appliesQueuedChangesOnTheNextTick() {
+        engine.itemChanged(movingItem("item-1"));
+        assertThat(engine.getTrackedCount()).isZero();
+
+        engine.tick();
+        assertThat(engine.getTrackedCount()).isEqualTo(1);
+
+        engine.itemRemoved("item-1");
+        engine.tick();
+        assertThat(engine.getTrackedCount()).isZero();
+    }
+
+    @Test
+    void splitsTheProgressOfATickIntoFrames() {
+        for (int i = 1; i <= 5; i++) {
+            engine.itemChanged(movingItem("item-" + i));
+        }
+
+        engine.tick();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<WebSocketService.ProgressUpdate>> frames = ArgumentCaptor.forClass(List.class);
+        verify(webSocketService, times(3)).broadcastProgress(frames.capture());
+        List<String> itemIds = new ArrayList<>();
+        for (List<WebSocketService.ProgressUpdate> frame : frames.getAllValues()) {
+            assertThat(frame).hasSizeLessThanOrEqualTo(2);
+            frame.forEach(update -> itemIds.add(update.itemId()));
+        }
+        assertThat(itemIds).containsExactlyInAnyOrder("item-1", "item-2", "item-3", "item-4", "item-5");
+    }
+
+    @Test
+    void sendsNothingWhileNoItemMoves() {
+        engine.itemChanged(item("item-1", false));
+
+        engine.tick();
+
+        verify(webSocketService, never()).broadcastProgress(anyList());
+    }
+
+    private Item movingItem(String id) {
+        return item(id, true);
+    }
+
+    private Item item(String id, boolean active) {
+        return new Item(id, "item", 1.0, active, new HashMap<>(), location, new ProgressInfo(0.0, Instant.now()));
+    }
+}
@@ -0,0 +1,46 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RecentEventIdsTest {
+
+    @Test
+    void remembersAddedIds() {
+        RecentEventIds recent = new RecentEventIds(new SimpleMeterRegistry(), 1000);
+
+        recent.add("item-1", "event-1");
+
+        assertThat(recent.seen("item-1", "event-1")).isTrue();
+        assertThat(recent.seen("item-1", "event-2")).isFalse();
+        assertThat(recent.seen("item-1", null)).isFalse();
+    }
+
+    @Test
+    void evictsTheOldestIdOnceItsWindowIsFull() {
+        // 64 windows of 2 ids each.
+        RecentEventIds recent = new RecentEventIds(new SimpleMeterRegistry(), 128);
+
+        recent.add("item-1", "event-1");
+        recent.add("item-1", "event-2");
+        recent.add("item-1", "event-3");
+
+        assertThat(recent.seen("item-1", "event-1")).isFalse();
+        assertThat(recent.seen("item-1", "event-2")).isTrue();
+        assertThat(recent.seen("item-1", "event-3")).isTrue();
+    }
+
+    @Test
+    void addingAnIdTwiceDoesNotEvictAnother() {
+        RecentEventIds recent = new RecentEventIds(new SimpleMeterRegistry(), 128);
+
+        recent.add("item-1", "event-1");
+        recent.add("item-1", "event-2");
+        recent.add("item-1", "event-2");
+
+        assertThat(recent.seen("item-1", "event-1")).isTrue();
+    }
+}
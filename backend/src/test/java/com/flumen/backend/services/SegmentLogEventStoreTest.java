@@ -0,0 +1,225 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import flumen.events.DomainEvent;
+import flumen.events.ItemPropertiesUpdatedEvent;
+import flumen.events.ItemSpeedChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SegmentLogEventStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private SegmentLogEventStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void readsBackTheEventsOfEachEntityAfterReopening() throws IOException {
+        store = open();
+        DomainEvent first = new ItemSpeedChangedEvent("item-1", 1.0);
+        DomainEvent other = new ItemSpeedChangedEvent("item-2", 2.0);
+        DomainEvent second = new ItemSpeedChangedEvent("item-1", 3.0);
+        store.saveEvents("item-1", List.of(first));
+        store.saveEvents("item-2", List.of(other));
+        store.saveEvents("item-1", List.of(second));
+
+        store = reopen();
+
+        assertThat(eventIds(store.getEventsForEntity("item-1"))).containsExactly(first.getEventId(), second.getEventId());
+        assertThat(eventIds(store.getEventsForEntity("item-2"))).containsExactly(other.getEventId());
+        assertThat(store.lastPosition()).isEqualTo(2);
+    }
+
+    @Test
+    void replaysTheEventsAfterAPosition() throws IOException {
+        store = open();
+        List<DomainEvent> events = speedChanges(5);
+        store.saveEvents("item-1", events);
+
+        assertThat(eventIds(replayAfter(2))).containsExactly(events.get(3).getEventId(), events.get(4).getEventId());
+        assertThat(replayAfter(4)).isEmpty();
+        assertThat(eventIds(replayAfter(-1))).isEqualTo(eventIds(events));
+    }
+
+    @Test
+    void rollsOverToANewSegmentAndReadsAcrossSegments() throws IOException {
+        store = open();
+        List<DomainEvent> events = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            // About 200 KB each, so that a 1 MB segment holds four of them.
+            events.add(new ItemPropertiesUpdatedEvent("item-1", Map.of("blob", "x".repeat(200_000) + i)));
+        }
+        store.saveEvents("item-1", events);
+
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+        store = reopen();
+        assertThat(eventIds(store.getEventsForEntity("item-1"))).isEqualTo(eventIds(events));
+        assertThat(eventIds(replayAfter(5))).containsExactly(events.get(6).getEventId(), events.get(7).getEventId());
+        assertThat(store.lastPosition()).isEqualTo(7);
+    }
+
+    @Test
+    void dropsARecordWithABadChecksumAndAppendsAfterTheLastIntactOne() throws IOException {
+        store = open();
+        List<DomainEvent> events = speedChanges(3);
+        store.saveEvents("item-1", events);
+        store.close();
+        store = null;
+
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            long last = recordOffsets(file).get(2);
+            file.seek(last);
+            // Flip the last byte of the record's payload.
+            long end = last + 8 + file.readInt();
+            file.seek(end - 1);
+            int b = file.read();
+            file.seek(end - 1);
+            file.write(b ^ 0xFF);
+        }
+
+        store = open();
+        assertThat(eventIds(store.getEventsForEntity("item-1")))
+                .containsExactly(events.get(0).getEventId(), events.get(1).getEventId());
+        assertThat(store.lastPosition()).isEqualTo(1);
+
+        DomainEvent next = new ItemSpeedChangedEvent("item-1", 9.0);
+        store.saveEvents("item-1", List.of(next));
+        store = reopen();
+        assertThat(eventIds(store.getEventsForEntity("item-1")))
+                .containsExactly(events.get(0).getEventId(), events.get(1).getEventId(), next.getEventId());
+        assertThat(store.lastPosition()).isEqualTo(2);
+    }
+
+    @Test
+    void ignoresATornLengthAfterTheLastRecord() throws IOException {
+        store = open();
+        List<DomainEvent> events = speedChanges(2);
+        store.saveEvents("item-1", events);
+        store.close();
+        store = null;
+
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            long last = recordOffsets(file).get(1);
+            file.seek(last);
+            long end = last + 8 + file.readInt();
+            // A length whose record was never written, pointing past the end of the segment.
+            file.seek(end);
+            file.writeInt(Integer.MAX_VALUE);
+        }
+
+        store = open();
+        assertThat(eventIds(store.getEventsForEntity("item-1"))).isEqualTo(eventIds(events));
+        DomainEvent next = new ItemSpeedChangedEvent("item-1", 9.0);
+        store.saveEvents("item-1", List.of(next));
+        store = reopen();
+        assertThat(eventIds(replayAfter(1))).containsExactly(next.getEventId());
+    }
+
+    @Test
+    void rejectsAnEntityIdLongerThanTheLengthPrefix() throws IOException {
+        store = open();
+        DomainEvent event = new ItemSpeedChangedEvent("i".repeat(70_000), 1.0);
+
+        assertThatThrownBy(() -> store.saveEvents(event.getEntityId(), List.of(event)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(store.lastPosition()).isEqualTo(-1);
+    }
+
+    @Test
+    void rejectsASegmentSizeItCannotMap() {
+        assertThatThrownBy(() -> new SegmentLogEventStore(new SimpleMeterRegistry(), directory.toString(), 4096, 5, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SegmentLogEventStore(new SimpleMeterRegistry(), directory.toString(), 0, 5, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void failsAWaiterForEventsTheLogCanNoLongerSync() throws Exception {
+        store = open();
+        store.saveEvents("item-1", speedChanges(1));
+        CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> store.awaitDurable(5));
+
+        store.awaitDurable(0);
+        store.close();
+        store = null;
+
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    private SegmentLogEventStore open() throws IOException {
+        return new SegmentLogEventStore(new SimpleMeterRegistry(), directory.toString(), 1, 1, false);
+    }
+
+    private SegmentLogEventStore reopen() throws IOException {
+        store.close();
+        store = null;
+        return open();
+    }
+
+    private List<DomainEvent> replayAfter(long position) {
+        List<DomainEvent> replayed = new ArrayList<>();
+        store.replayAfter(position, replayed::add);
+        return replayed;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    /**
+     * Walks the records of a segment file, each starting with the length of what follows its 8-byte header.
+     */
+    private static List<Long> recordOffsets(RandomAccessFile file) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        long offset = 0;
+        while (true) {
+            file.seek(offset);
+            int length = file.readInt();
+            if (length <= 0) {
+                break;
+            }
+            offsets.add(offset);
+            offset += 8 + length;
+        }
+        return offsets;
+    }
+
+    private static List<DomainEvent> speedChanges(int count) {
+        List<DomainEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(new ItemSpeedChangedEvent("item-1", (double) i));
+        }
+        return events;
+    }
+
+    private static List<String> eventIds(List<DomainEvent> events) {
+        return events.stream().map(DomainEvent::getEventId).toList();
+    }
+}
@@ -0,0 +1,118 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flumen.backend.domain.Location;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Two instances sharing one database, each changing its own stale copy of the same location, as instances
+ * consuming different partitions do.
+ */
+class SharedGraphTest {
+
+    private OrientDBService orientDBService;
+    private Instance first;
+    private Instance second;
+
+    @BeforeEach
+    void setUp() {
+        orientDBService = MemoryOrientDB.open();
+        first = new Instance();
+        for (int i = 1; i <= 3; i++) {
+            first.graphStore.addLocation(new Location("location-" + i, "L" + i, 45.0, 9.0, 100.0, 1.0, "Road", true,
+                    null));
+        }
+        first.writeBehind.flush();
+        second = new Instance();
+    }
+
+    @AfterEach
+    void tearDown() {
+        orientDBService.close();
+    }
+
+    @Test
+    void keepsTheConnectionsEachInstanceMadeAndConvergesOnRefresh() {
+        first.graphStore.updateLocation("location-1", location -> location.addConnectionTo("location-2"));
+        first.writeBehind.flush();
+        // The second instance has not seen the connection to location-2.
+        second.graphStore.updateLocation("location-1", location -> location.addConnectionTo("location-3"));
+        second.writeBehind.flush();
+
+        assertThat(second.graphStore.getLocation("location-1").canMoveTo("location-2")).isFalse();
+        first.writeBehind.flushAndRefresh();
+        second.writeBehind.flushAndRefresh();
+
+        assertThat(first.graphStore.getLocation("location-1").getOutboundConnectionIds())
+                .containsExactlyInAnyOrder("location-2", "location-3");
+        assertThat(second.graphStore.getLocation("location-1").canMoveTo("location-2")).isTrue();
+    }
+
+    @Test
+    void removesOnlyTheConnectionsAnInstanceRemoved() {
+        first.graphStore.updateLocation("location-1", location -> location.addConnectionTo("location-2"));
+        first.writeBehind.flush();
+        second.writeBehind.flushAndRefresh();
+        second.graphStore.updateLocation("location-1", location -> location.addConnectionTo("location-3"));
+        second.writeBehind.flush();
+
+        first.graphStore.updateLocation("location-1", location -> location.removeConnectionTo("location-2"));
+        first.writeBehind.flushAndRefresh();
+
+        assertThat(first.graphStore.getLocation("location-1").getOutboundConnectionIds())
+                .containsExactly("location-3");
+    }
+
+    @Test
+    void clearsTheConnectionsOtherInstancesMadeToo() {
+        first.graphStore.updateLocation("location-1", location -> location.addConnectionTo("location-2"));
+        first.writeBehind.flush();
+
+        second.graphStore.updateLocation("location-1", Location::clearConnections);
+        second.writeBehind.flush();
+        first.writeBehind.flushAndRefresh();
+
+        assertThat(first.graphStore.getLocation("location-1").getOutboundConnectionIds()).isEmpty();
+    }
+
+    @Test
+    void keepsThePropertiesEachInstanceChanged() {
+        first.graphStore.updateLocation("location-1", location -> location.applyChanges(Map.of("name", "Dock")));
+        first.writeBehind.flush();
+        second.graphStore.updateLocation("location-1", location -> location.applyChanges(Map.of("speed", 2.5)));
+        second.writeBehind.flush();
+
+        first.writeBehind.flushAndRefresh();
+
+        Location location = first.graphStore.getLocation("location-1");
+        assertThat(location.getName()).isEqualTo("Dock");
+        assertThat(location.getSpeed()).isEqualTo(2.5);
+    }
+
+    /**
+     * The graph of one backend instance, hydrated from the shared database.
+     */
+    private class Instance {
+        final GraphStore graphStore;
+        final GraphWriteBehind writeBehind;
+
+        Instance() {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            VertexLookup vertexLookup = new VertexLookup(meterRegistry);
+            graphStore = new GraphStore(orientDBService, vertexLookup,
+                    new GraphDeltaLog(mock(WebSocketService.class), 1000), mock(GraphCheckpointFiles.class));
+            graphStore.hydrate();
+            writeBehind = new GraphWriteBehind(graphStore, new ItemService(graphStore), new LocationService(graphStore),
+                    orientDBService, vertexLookup, meterRegistry, 500);
+        }
+    }
+}
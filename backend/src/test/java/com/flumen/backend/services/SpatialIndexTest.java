@@ -0,0 +1,125 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.models.graph.ViewportCluster;
+
+class SpatialIndexTest {
+
+    private SpatialIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SpatialIndex(mock(GraphStore.class), 1.0);
+    }
+
+    @Test
+    void includesLocationsOnTheBoundsOfTheBox() {
+        index.locationChanged(location("corner", 0.0, 0.0));
+        index.locationChanged(location("edge", 2.0, 1.0));
+        index.locationChanged(location("outside", 2.5, 1.0));
+
+        assertThat(index.locationsIn(0.0, 0.0, 2.0, 1.0)).containsExactlyInAnyOrder("corner", "edge");
+        assertThat(index.locationsIn(2.0, 1.0, 2.0, 1.0)).containsExactly("edge");
+        assertThat(index.locationsIn(-1.0, -1.0, -0.000001, 5.0)).isEmpty();
+    }
+
+    @Test
+    void answersHugeAndDegenerateBoxes() {
+        index.locationChanged(location("a", -170.0, -80.0));
+        index.locationChanged(location("b", 170.0, 80.0));
+
+        assertThat(index.locationsIn(-Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE))
+                .containsExactlyInAnyOrder("a", "b");
+        assertThat(index.locationsIn(Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY)).containsExactlyInAnyOrder("a", "b");
+        assertThat(index.locationsIn(10.0, 10.0, -10.0, -10.0)).isEmpty();
+        assertThat(index.locationsIn(Double.NaN, Double.NaN, Double.NaN, Double.NaN)).isEmpty();
+
+        List<ViewportCluster> point = index.clustersIn(170.0, 80.0, 170.0, 80.0, 4, 4);
+        assertThat(point).singleElement().satisfies(cluster -> {
+            assertThat(cluster.getLocationCount()).isEqualTo(1);
+            assertThat(cluster.getLongitude()).isEqualTo(170.0);
+            assertThat(cluster.getLatitude()).isEqualTo(80.0);
+        });
+        assertThat(index.clustersIn(-Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, 1, 1))
+                .singleElement().extracting(ViewportCluster::getLocationCount).isEqualTo(2);
+    }
+
+    @Test
+    void movesALocationBetweenCells() {
+        index.locationChanged(location("moving", 0.5, 0.5));
+        index.locationChanged(location("moving", 5.5, 5.5));
+
+        assertThat(index.locationsIn(0.0, 0.0, 1.0, 1.0)).isEmpty();
+        assertThat(index.locationsIn(5.0, 5.0, 6.0, 6.0)).containsExactly("moving");
+
+        index.locationChanged(new Location("moving", "moving", null, null, 100.0, 1.0, "Road", true, null));
+        assertThat(index.locationsIn(-Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE))
+                .isEmpty();
+    }
+
+    @Test
+    void countsItemsWhereTheyAre() {
+        Location first = location("first", 0.5, 0.5);
+        Location second = location("second", 3.5, 0.5);
+        index.locationChanged(first);
+        index.locationChanged(second);
+
+        index.itemChanged(item("item-1", first));
+        index.itemChanged(item("item-2", first));
+        index.itemChanged(item("item-1", second));
+        index.itemChanged(item("item-1", second));
+
+        assertThat(index.itemsAt("first")).containsExactly("item-2");
+        assertThat(index.itemsAt("second")).containsExactly("item-1");
+        assertThat(itemCountIn(0.0, 0.0, 1.0, 1.0)).isEqualTo(1);
+        assertThat(itemCountIn(3.0, 0.0, 4.0, 1.0)).isEqualTo(1);
+
+        index.itemRemoved("item-2");
+        index.itemChanged(item("item-1", null));
+
+        assertThat(index.itemsAt("first")).isEmpty();
+        assertThat(index.itemsAt("second")).isEmpty();
+        assertThat(itemCountIn(0.0, 0.0, 4.0, 1.0)).isZero();
+    }
+
+    @Test
+    void keysNeighbouringCellsApart() {
+        Set<Long> keys = new HashSet<>();
+        Set<Integer> hashes = new HashSet<>();
+        for (long column = -50; column < 50; column++) {
+            for (long row = -50; row < 50; row++) {
+                long key = SpatialIndex.key(column, row);
+                keys.add(key);
+                hashes.add(Long.hashCode(key));
+            }
+        }
+        assertThat(keys).hasSize(100 * 100);
+        // Unmixed, every cell on a diagonal would share one hash code.
+        assertThat(hashes).hasSizeGreaterThan(100 * 100 - 10);
+    }
+
+    private long itemCountIn(double minX, double minY, double maxX, double maxY) {
+        return index.clustersIn(minX, minY, maxX, maxY, 1, 1).stream().mapToLong(ViewportCluster::getItemCount).sum();
+    }
+
+    private static Location location(String id, double x, double y) {
+        return new Location(id, id, y, x, 100.0, 1.0, "Road", true, null);
+    }
+
+    private static Item item(String id, Location location) {
+        return new Item(id, "item", 1.0, true, new HashMap<>(), location);
+    }
+}
@@ -0,0 +1,118 @@
+package com.flumen.backend.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.domain.ProgressInfo;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.sql.executor.OResult;
+import com.orientechnologies.orient.core.sql.executor.OResultSet;
+
+import flumen.events.ItemPropertiesUpdatedEvent;
+import flumen.events.ItemSpeedChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs the update commands the write-behind uses against a remote server on the embedded database.
+ */
+class UpdateCommandsTest {
+
+    private OrientDBService orientDBService;
+    private SimpleMeterRegistry meterRegistry;
+    private GraphStore graphStore;
+    private GraphWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        orientDBService = MemoryOrientDB.open();
+        // Update commands are only used against a remote server.
+        OrientDBService remote = spy(orientDBService);
+        doReturn(true).when(remote).isRemote();
+        meterRegistry = new SimpleMeterRegistry();
+        VertexLookup vertexLookup = new VertexLookup(meterRegistry);
+        graphStore = new GraphStore(orientDBService, vertexLookup,
+                new GraphDeltaLog(mock(WebSocketService.class), 1000), mock(GraphCheckpointFiles.class));
+        writeBehind = new GraphWriteBehind(graphStore, new ItemService(graphStore), new LocationService(graphStore),
+                remote, vertexLookup, meterRegistry, 500);
+
+        Location location = graphStore.addLocation(
+                new Location("location-1", "L1", 45.0, 9.0, 100.0, 1.0, "Road", true, null));
+        graphStore.addItem(new Item("item-1", "Truck", 1.0, true, new HashMap<>(Map.of("color", "red"))));
+        graphStore.updateItem("item-1", item -> item.placeAt(location));
+        writeBehind.flush();
+    }
+
+    @AfterEach
+    void tearDown() {
+        orientDBService.close();
+    }
+
+    @Test
+    void writesChangedFieldsMergedPropertiesAndProgressInPlace() {
+        graphStore.updateItem("item-1", item -> {
+            item.applyChanges(Map.of("name", "Van"));
+            item.updateSpeed(new ItemSpeedChangedEvent("item-1", 2.0));
+            item.updateProperties(new ItemPropertiesUpdatedEvent("item-1", Map.of("plate", "AB123")));
+        });
+        ProgressInfo progress = graphStore.getItem("item-1").getProgressInfo();
+
+        writeBehind.flush();
+
+        assertThat(meterRegistry.counter("flumen.graph.write-behind.update-commands").count()).isEqualTo(1);
+        assertThat(graphStore.drainDirtyItems()).isEmpty();
+        try (ODatabaseSession session = orientDBService.getSession()) {
+            OResult vertex = single(session, "SELECT name, speed, properties FROM Item WHERE customId = ?");
+            assertThat(vertex.<String>getProperty("name")).isEqualTo("Van");
+            assertThat(vertex.<Double>getProperty("speed")).isEqualTo(2.0);
+            assertThat(vertex.<Map<String, Object>>getProperty("properties"))
+                    .containsEntry("color", "red")
+                    .containsEntry("plate", "AB123");
+
+            OResult edge = single(session,
+                    "SELECT progress, datetime FROM (SELECT expand(outE('HasPosition')) FROM Item WHERE customId = ?)");
+            assertThat(edge.<Double>getProperty("progress")).isEqualTo(progress.getProgress());
+            assertThat(edge.<Instant>getProperty("datetime")).isEqualTo(progress.getDatetime());
+        }
+    }
+
+    @Test
+    void reportsTheAggregatesWhoseStatementsMatchedNothing() {
+        UpdateCommands commands = new UpdateCommands();
+        commands.add("item-1", "UPDATE Item SET speed = ? WHERE customId = ?", 3.0, "item-1");
+        commands.add("item-2", "UPDATE Item SET speed = ? WHERE customId = ?", 3.0, "item-2");
+
+        Set<String> missed;
+        try (ODatabaseSession session = orientDBService.getSession()) {
+            session.begin();
+            missed = commands.execute(session);
+            session.commit();
+        }
+
+        assertThat(missed).containsExactly("item-2");
+        assertThat(graphStore.getItem("item-1").getSpeed()).isEqualTo(1.0);
+        try (ODatabaseSession session = orientDBService.getSession()) {
+            assertThat(single(session, "SELECT speed FROM Item WHERE customId = ?").<Double>getProperty("speed"))
+                    .isEqualTo(3.0);
+        }
+    }
+
+    private static OResult single(ODatabaseSession session, String query) {
+        try (OResultSet results = session.query(query, "item-1")) {
+            assertThat(results.hasNext()).isTrue();
+            return results.next();
+        }
+    }
+}
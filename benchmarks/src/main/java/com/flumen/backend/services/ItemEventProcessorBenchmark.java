@@ -0,0 +1,147 @@
+package com.flumen.backend.services;
+
+import com.flumen.benchmarks.Fixtures;
+import flumen.events.ItemPositionChangedEvent;
+import flumen.events.ItemSpeedChangedEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying events to the graph, and persisting the resulting changes to an embedded in-memory OrientDB.
+ * Lives in the services package to reach {@link ItemEventProcessor#processEvent} directly, without the
+ * event store, the ClickHouse sink and the lane hand-off of {@code process}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemEventProcessorBenchmark {
+
+    @Param({"1000"})
+    public int locations;
+
+    private OrientDBService orientDBService;
+    private WebSocketService webSocketService;
+    private GraphStore graphStore;
+    private ItemEventProcessor processor;
+    private GraphWriteBehind writeBehind;
+
+    private int[] itemLocations;
+    private int next;
+
+    @Setup
+    public void setup() {
+        orientDBService = Fixtures.memoryOrientDB();
+        webSocketService = Fixtures.webSocketService();
+        VertexLookup vertexLookup = new VertexLookup(Fixtures.meterRegistry());
+        graphStore = new GraphStore(orientDBService, vertexLookup, Fixtures.deltaLog(webSocketService), null);
+        ItemService itemService = new ItemService(graphStore);
+        LocationService locationService = new LocationService(graphStore);
+
+        processor = new ItemEventProcessor(null, null, webSocketService, graphStore, null, null,
+                Fixtures.meterRegistry());
+        writeBehind = new GraphWriteBehind(graphStore, itemService, locationService, orientDBService,
+                vertexLookup, Fixtures.meterRegistry(), 500);
+
+        Fixtures.populate(graphStore, locations, 1);
+        itemLocations = new int[locations];
+        for (int i = 0; i < locations; i++) {
+            itemLocations[i] = i;
+        }
+        writeBehind.flush();
+    }
+
+    @TearDown
+    public void tearDown() {
+        webSocketService.shutdown();
+        orientDBService.close();
+    }
+
+    @Benchmark
+    public void positionChanged() {
+        int item = next = (next + 1) % locations;
+        itemLocations[item] = (itemLocations[item] + 1) % locations;
+        processor.processEvent(new ItemPositionChangedEvent(
+                Fixtures.itemId(item), Fixtures.locationId(itemLocations[item])));
+    }
+
+    @Benchmark
+    public void speedChanged() {
+        int item = next = (next + 1) % locations;
+        processor.processEvent(new ItemSpeedChangedEvent(Fixtures.itemId(item), 0.001 + item * 1e-6));
+    }
+
+    @State(Scope.Benchmark)
+    public static class DirtyGraph {
+        @Setup(Level.Invocation)
+        public void markAllDirty(ItemEventProcessorBenchmark benchmark) {
+            for (int i = 0; i < benchmark.locations; i++) {
+                benchmark.graphStore.markItemDirty(Fixtures.itemId(i));
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class MovedItems {
+        @Setup(Level.Invocation)
+        public void moveAll(ItemEventProcessorBenchmark benchmark) {
+            for (int i = 0; i < benchmark.locations; i++) {
+                benchmark.positionChanged();
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SpeedChanges {
+        @Setup(Level.Invocation)
+        public void changeAll(ItemEventProcessorBenchmark benchmark) {
+            for (int i = 0; i < benchmark.locations; i++) {
+                benchmark.speedChanged();
+            }
+        }
+    }
+
+    /**
+     * One write-behind pass persisting every item.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writeBehindFlush(DirtyGraph dirty) {
+        writeBehind.flush();
+    }
+
+    /**
+     * One write-behind pass after every item moved, which only changes position edges.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writeBehindFlushPositions(MovedItems moved) {
+        writeBehind.flush();
+    }
+
+    /**
+     * One write-behind pass after the speed of every item changed, which sets one vertex property and the
+     * progress on the position edge of each.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writeBehindFlushSpeeds(SpeedChanges changed) {
+        writeBehind.flush();
+    }
+}
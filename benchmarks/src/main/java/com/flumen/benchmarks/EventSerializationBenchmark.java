@@ -0,0 +1,81 @@
+package com.flumen.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import flumen.events.BinaryEventCodec;
+import flumen.events.DomainEvent;
+import flumen.events.ItemCreatedEvent;
+import flumen.events.ItemPositionChangedEvent;
+import flumen.events.ItemSpeedChangedEvent;
+import flumen.events.LocationCreatedEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polymorphic Jackson (de)serialization of domain events, configured like the RabbitMQ message converter,
+ * against the binary codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSerializationBenchmark {
+
+    @Param({"ITEM_POSITION_CHANGED", "ITEM_SPEED_CHANGED", "ITEM_CREATED", "LOCATION_CREATED"})
+    public String eventType;
+
+    private ObjectMapper objectMapper;
+    private DomainEvent event;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = JsonMapper.builder().findAndAddModules().build();
+        event = switch (eventType) {
+            case "ITEM_POSITION_CHANGED" -> new ItemPositionChangedEvent("item-1", "location-2");
+            case "ITEM_SPEED_CHANGED" -> new ItemSpeedChangedEvent("item-1", 1.5);
+            case "ITEM_CREATED" -> new ItemCreatedEvent("item-1", "Pallet", 1.0, true, Map.of("weight", 12.5));
+            case "LOCATION_CREATED" -> new LocationCreatedEvent("location-1", "Conveyor 1", true, 45.07, 7.68, 12.0, 1.0,
+                    "Conveyor", Map.of("zone", "A"));
+            default -> throw new IllegalArgumentException(eventType);
+        };
+        json = objectMapper.writeValueAsBytes(event);
+        binary = BinaryEventCodec.encode(event);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public DomainEvent deserialize() throws Exception {
+        return objectMapper.readValue(json, DomainEvent.class);
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return BinaryEventCodec.encode(event);
+    }
+
+    @Benchmark
+    public DomainEvent deserializeBinary() {
+        return BinaryEventCodec.decode(binary);
+    }
+}
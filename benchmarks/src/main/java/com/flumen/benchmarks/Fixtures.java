@@ -0,0 +1,100 @@
+package com.flumen.benchmarks;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.domain.ProgressInfo;
+import com.flumen.backend.services.GraphDeltaLog;
+import com.flumen.backend.services.GraphStore;
+import com.flumen.backend.services.OrientDBService;
+import com.flumen.backend.services.WebSocketService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.HashMap;
+
+/**
+ * Builds the backend services by hand, without a Spring context, RabbitMQ or a running database.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    public static MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    /**
+     * A WebSocket service whose messages are accepted and dropped.
+     */
+    public static WebSocketService webSocketService() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> true);
+        return new WebSocketService(template, 50, 5000, meterRegistry());
+    }
+
+    public static GraphDeltaLog deltaLog(WebSocketService webSocketService) {
+        return new GraphDeltaLog(webSocketService, 100_000);
+    }
+
+    /**
+     * Opens an embedded in-memory OrientDB with the backend schema.
+     */
+    public static OrientDBService memoryOrientDB() {
+        OrientDBService service = new OrientDBService();
+        setField(service, "dbUrl", "memory:");
+        setField(service, "username", "bench");
+        setField(service, "password", "bench");
+        service.init();
+        return service;
+    }
+
+    /**
+     * Fills the store with a chain of locations, each connected to the next and the last to the first,
+     * with the given number of items on every location.
+     */
+    public static void populate(GraphStore store, int locationCount, int itemsPerLocation) {
+        for (int i = 0; i < locationCount; i++) {
+            store.addLocation(location(i));
+        }
+        for (int i = 0; i < locationCount; i++) {
+            String next = locationId((i + 1) % locationCount);
+            store.updateLocation(locationId(i), location -> location.addConnectionTo(next));
+        }
+        Instant now = Instant.now();
+        for (int i = 0; i < locationCount; i++) {
+            for (int j = 0; j < itemsPerLocation; j++) {
+                Item item = new Item(itemId(i * itemsPerLocation + j), "item", 0.001, true, new HashMap<>(),
+                        store.getLocation(locationId(i)), new ProgressInfo(0.0, now));
+                store.addItem(item);
+            }
+        }
+    }
+
+    public static Location location(int index) {
+        return new Location(locationId(index), "location-" + index, 45.0 + index * 1e-4, 9.0 + index * 1e-4,
+                100.0, 1.0, "Road", true, new HashMap<>());
+    }
+
+    public static String locationId(int index) {
+        return "location-" + index;
+    }
+
+    public static String itemId(int index) {
+        return "item-" + index;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + name + " on " + target.getClass().getSimpleName(), e);
+        }
+    }
+}
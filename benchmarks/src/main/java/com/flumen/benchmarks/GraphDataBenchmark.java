@@ -0,0 +1,72 @@
+package com.flumen.benchmarks;
+
+import com.flumen.backend.models.graph.GraphData;
+import com.flumen.backend.services.GraphDeltaLog;
+import com.flumen.backend.services.GraphService;
+import com.flumen.backend.services.GraphStore;
+import com.flumen.backend.services.VertexLookup;
+import com.flumen.backend.services.WebSocketService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the full graph returned by GET /api/graph from the in-memory store, against streaming it
+ * as GET /api/graph/export does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GraphDataBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int locations;
+
+    @Param({"1"})
+    public int itemsPerLocation;
+
+    private WebSocketService webSocketService;
+    private GraphService graphService;
+
+    @Setup
+    public void setup() {
+        webSocketService = Fixtures.webSocketService();
+        GraphDeltaLog deltaLog = Fixtures.deltaLog(webSocketService);
+        // No database: the store is filled directly instead of being hydrated.
+        GraphStore store = new GraphStore(null, new VertexLookup(Fixtures.meterRegistry()), deltaLog, null);
+        Fixtures.populate(store, locations, itemsPerLocation);
+        graphService = new GraphService(store, deltaLog);
+    }
+
+    @TearDown
+    public void tearDown() {
+        webSocketService.shutdown();
+    }
+
+    @Benchmark
+    public GraphData getGraphData() {
+        return graphService.getGraphData();
+    }
+
+    @Benchmark
+    public void writeExport() throws IOException {
+        graphService.writeExport(OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,73 @@
+package com.flumen.benchmarks;
+
+import com.flumen.backend.domain.Item;
+import com.flumen.backend.domain.Location;
+import com.flumen.backend.domain.ProgressInfo;
+import flumen.events.ItemSpeedChangedEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State transitions of a single item aggregate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemBenchmark {
+
+    private Location first;
+    private Location second;
+    private Item item;
+    private ItemSpeedChangedEvent speedChanged;
+    private Instant now;
+
+    @Setup
+    public void setup() {
+        first = Fixtures.location(0);
+        second = Fixtures.location(1);
+        first.addConnectionTo(second.getId());
+        second.addConnectionTo(first.getId());
+
+        now = Instant.now();
+        item = new Item("item-1", "item", 0.001, true, new HashMap<>(), first, new ProgressInfo(0.0, now));
+        speedChanged = new ItemSpeedChangedEvent(item.getId(), 0.002);
+    }
+
+    @Benchmark
+    public Item updatePosition() {
+        item.updatePosition(item.getLocation() == first ? second : first, now);
+        return item;
+    }
+
+    @Benchmark
+    public Item updateSpeed() {
+        item.updateSpeed(speedChanged);
+        return item;
+    }
+
+    @Benchmark
+    public Double progressAt() {
+        return item.progressAt(now);
+    }
+
+    @Benchmark
+    public Item copy() {
+        return item.copy();
+    }
+}
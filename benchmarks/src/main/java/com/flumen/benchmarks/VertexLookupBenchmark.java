@@ -0,0 +1,80 @@
+package com.flumen.benchmarks;
+
+import com.flumen.backend.services.OrientDBService;
+import com.flumen.backend.services.VertexLookup;
+import com.flumen.backend.utils.OrientDBUtils;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.record.OVertex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving Item vertices by customId in an embedded in-memory OrientDB, through the unique index and
+ * through the record id cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VertexLookupBenchmark {
+
+    @Param({"10000"})
+    public int items;
+
+    private OrientDBService orientDBService;
+    private ODatabaseSession session;
+    private VertexLookup vertexLookup;
+    private int next;
+
+    @Setup
+    public void setup() {
+        orientDBService = Fixtures.memoryOrientDB();
+        session = orientDBService.getSession();
+        vertexLookup = new VertexLookup(Fixtures.meterRegistry());
+
+        session.begin();
+        for (int i = 0; i < items; i++) {
+            OVertex vertex = session.newVertex("Item");
+            vertex.setProperty("customId", Fixtures.itemId(i));
+            vertex.save();
+        }
+        session.commit();
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.close();
+        orientDBService.close();
+    }
+
+    private String nextId() {
+        next = (next + 1) % items;
+        return Fixtures.itemId(next);
+    }
+
+    @Benchmark
+    public Optional<OVertex> indexLookup() {
+        return OrientDBUtils.findVertexByCustomId(session, "Item", nextId());
+    }
+
+    @Benchmark
+    public Optional<OVertex> cachedLookup() {
+        return vertexLookup.find(session, "Item", nextId());
+    }
+}
@@ -0,0 +1,74 @@
+package com.flumen.benchmarks;
+
+import com.flumen.backend.models.graph.ViewportData;
+import com.flumen.backend.services.GraphDeltaLog;
+import com.flumen.backend.services.GraphStore;
+import com.flumen.backend.services.SpatialIndex;
+import com.flumen.backend.services.VertexLookup;
+import com.flumen.backend.services.ViewportService;
+import com.flumen.backend.services.WebSocketService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /api/graph/viewport over a large plant: a close-up box holding about a thousand locations, and the
+ * whole plant zoomed out, which is answered with clusters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ViewportBenchmark {
+
+    @Param({"50000"})
+    public int locations;
+
+    private WebSocketService webSocketService;
+    private ViewportService viewportService;
+    private String plant;
+
+    @Setup
+    public void setup() {
+        webSocketService = Fixtures.webSocketService();
+        GraphDeltaLog deltaLog = Fixtures.deltaLog(webSocketService);
+        GraphStore store = new GraphStore(null, new VertexLookup(Fixtures.meterRegistry()), deltaLog, null);
+        SpatialIndex spatialIndex = new SpatialIndex(store, 0.001);
+        spatialIndex.start();
+        Fixtures.populate(store, locations, 1);
+        viewportService = new ViewportService(store, deltaLog, spatialIndex, 14, 5000, 32);
+
+        // Fixtures place location i at (9 + i * 1e-4, 45 + i * 1e-4).
+        double extent = locations * 1e-4;
+        plant = String.format("9,45,%f,%f", 9 + extent, 45 + extent);
+    }
+
+    @TearDown
+    public void tearDown() {
+        webSocketService.shutdown();
+    }
+
+    @Benchmark
+    public ViewportData closeUp() {
+        return viewportService.getViewport("9,45,9.1,45.1", 16);
+    }
+
+    @Benchmark
+    public ViewportData zoomedOut() {
+        return viewportService.getViewport(plant, 8);
+    }
+}
@@ -0,0 +1,326 @@
+package flumen.events;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compact binary encoding of {@link DomainEvent}s, used instead of JSON on the hot paths.
+ *
+ * An event is laid out as
+ * {@code [magic][schema version][varint type tag][16-byte event id][zigzag varint epoch micros][entity id][fields]},
+ * strings as a varint length plus one (0 for null) followed by UTF-8, nullable numbers as a presence byte
+ * followed by the big-endian double. Property maps are rare and free-form, they are embedded as JSON.
+ *
+ * The first byte can never start a JSON document, so readers can tell both formats apart by looking at it.
+ * Timestamps keep microsecond precision, and event ids must be UUIDs.
+ */
+public final class BinaryEventCodec {
+
+    /** Content type of a single binary event, used as the AMQP content type. */
+    public static final String CONTENT_TYPE = "application/vnd.flumen.event";
+    /** Content type of a stream of binary events, each preceded by its varint length. */
+    public static final String STREAM_CONTENT_TYPE = "application/vnd.flumen.event-stream";
+
+    private static final byte MAGIC = (byte) 0xF1;
+    private static final byte SCHEMA_VERSION = 1;
+
+    // Tags are part of the wire format: never renumber them, only add new ones.
+    private static final int ITEM_CREATED = 1;
+    private static final int ITEM_POSITION_CHANGED = 2;
+    private static final int ITEM_SPEED_CHANGED = 3;
+    private static final int ITEM_ACTIVATED = 4;
+    private static final int ITEM_DEACTIVATED = 5;
+    private static final int ITEM_PROPERTIES_UPDATED = 6;
+    private static final int LOCATION_CREATED = 7;
+    private static final int LOCATION_ACTIVATED = 8;
+    private static final int LOCATION_DEACTIVATED = 9;
+    private static final int LOCATION_DELETED = 10;
+    private static final int LOCATION_CONNECTION_CREATED = 11;
+    private static final int LOCATION_PROPERTIES_UPDATED = 12;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> PROPERTIES = new TypeReference<>() {};
+
+    private BinaryEventCodec() {
+    }
+
+    /**
+     * @return True if the payload starts like a binary event rather than a JSON document.
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload.length > 0 && payload[0] == MAGIC;
+    }
+
+    public static boolean isBinaryContentType(String contentType) {
+        return contentType != null && contentType.startsWith(CONTENT_TYPE);
+    }
+
+    public static byte[] encode(DomainEvent event) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        encode(event, out);
+        return out.toByteArray();
+    }
+
+    public static DomainEvent decode(byte[] payload) {
+        return decode(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Decodes one event starting at the buffer's position and leaves the position after it.
+     * @throws IllegalArgumentException If the bytes are not a binary event of a known schema version and type.
+     */
+    public static DomainEvent decode(ByteBuffer in) {
+        try {
+            if (in.get() != MAGIC) {
+                throw new IllegalArgumentException("Not a binary event");
+            }
+            byte version = in.get();
+            if (version != SCHEMA_VERSION) {
+                throw new IllegalArgumentException("Unsupported binary event schema version " + version);
+            }
+            int tag = (int) readVarint(in);
+            String eventId = new UUID(in.getLong(), in.getLong()).toString();
+            long micros = zigzagDecode(readVarint(in));
+            Instant timestamp = Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+            String entityId = readString(in);
+
+            DomainEvent event = switch (tag) {
+                case ITEM_CREATED -> new ItemCreatedEvent(entityId, readString(in), readDouble(in),
+                        in.get() != 0, readProperties(in));
+                case ITEM_POSITION_CHANGED -> new ItemPositionChangedEvent(entityId, readString(in));
+                case ITEM_SPEED_CHANGED -> new ItemSpeedChangedEvent(entityId, readDouble(in));
+                case ITEM_ACTIVATED -> new ItemActivatedEvent(entityId);
+                case ITEM_DEACTIVATED -> new ItemDeactivatedEvent(entityId);
+                case ITEM_PROPERTIES_UPDATED -> new ItemPropertiesUpdatedEvent(entityId, readProperties(in));
+                case LOCATION_CREATED -> new LocationCreatedEvent(entityId, readString(in), readBoolean(in),
+                        readDouble(in), readDouble(in), readDouble(in), readDouble(in), readString(in),
+                        readProperties(in));
+                case LOCATION_ACTIVATED -> new LocationActivatedEvent(entityId);
+                case LOCATION_DEACTIVATED -> new LocationDeactivatedEvent(entityId);
+                case LOCATION_DELETED -> new LocationDeletedEvent(entityId);
+                case LOCATION_CONNECTION_CREATED -> new LocationConnectionCreatedEvent(entityId, readString(in));
+                case LOCATION_PROPERTIES_UPDATED -> new LocationPropertiesUpdatedEvent(entityId, readProperties(in));
+                default -> throw new IllegalArgumentException("Unknown binary event type " + tag);
+            };
+            event.restore(eventId, timestamp);
+            return event;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary event", e);
+        }
+    }
+
+    /**
+     * Writes the event preceded by its varint length, for streams of events.
+     */
+    public static void writeDelimited(DomainEvent event, OutputStream out) throws IOException {
+        byte[] payload = encode(event);
+        ByteArrayOutputStream length = new ByteArrayOutputStream(5);
+        writeVarint(payload.length, length);
+        length.writeTo(out);
+        out.write(payload);
+    }
+
+    /**
+     * Reads the next length-prefixed event payload from a stream.
+     * @return The payload, to be passed to {@link #decode(byte[])}, or null at the end of the stream.
+     */
+    public static byte[] readDelimited(InputStream in) throws IOException {
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return null;
+                }
+                throw new EOFException("Truncated event length");
+            }
+            if (shift > 28) {
+                throw new IOException("Malformed event length");
+            }
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Event of " + length + " bytes is too large");
+        }
+        byte[] payload = in.readNBytes((int) length);
+        if (payload.length < length) {
+            throw new EOFException("Truncated event");
+        }
+        return payload;
+    }
+
+    // ---- Writing ----
+
+    private static void encode(DomainEvent event, ByteArrayOutputStream out) {
+        out.write(MAGIC);
+        out.write(SCHEMA_VERSION);
+        writeVarint(tagOf(event), out);
+
+        UUID eventId = UUID.fromString(event.getEventId());
+        writeLong(eventId.getMostSignificantBits(), out);
+        writeLong(eventId.getLeastSignificantBits(), out);
+        Instant timestamp = event.getTimestamp();
+        writeVarint(zigzagEncode(timestamp.getEpochSecond() * 1_000_000L + timestamp.getNano() / 1_000), out);
+        writeString(event.getEntityId(), out);
+
+        switch (event) {
+            case ItemCreatedEvent e -> {
+                writeString(e.getName(), out);
+                writeDouble(e.getSpeed(), out);
+                out.write(e.isActive() ? 1 : 0);
+                writeProperties(e.getProperties(), out);
+            }
+            case ItemPositionChangedEvent e -> writeString(e.getLocationId(), out);
+            case ItemSpeedChangedEvent e -> writeDouble(e.getSpeed(), out);
+            case ItemPropertiesUpdatedEvent e -> writeProperties(e.getProperties(), out);
+            case LocationCreatedEvent e -> {
+                writeString(e.getName(), out);
+                writeBoolean(e.getActive(), out);
+                writeDouble(e.getLatitude(), out);
+                writeDouble(e.getLongitude(), out);
+                writeDouble(e.getLength(), out);
+                writeDouble(e.getSpeed(), out);
+                writeString(e.getType(), out);
+                writeProperties(e.getProperties(), out);
+            }
+            case LocationConnectionCreatedEvent e -> writeString(e.getLocation2Id(), out);
+            case LocationPropertiesUpdatedEvent e -> writeProperties(e.getUpdatedProperties(), out);
+            default -> {
+                // The remaining events carry no fields besides the common ones.
+            }
+        }
+    }
+
+    private static int tagOf(DomainEvent event) {
+        return switch (event) {
+            case ItemCreatedEvent e -> ITEM_CREATED;
+            case ItemPositionChangedEvent e -> ITEM_POSITION_CHANGED;
+            case ItemSpeedChangedEvent e -> ITEM_SPEED_CHANGED;
+            case ItemActivatedEvent e -> ITEM_ACTIVATED;
+            case ItemDeactivatedEvent e -> ITEM_DEACTIVATED;
+            case ItemPropertiesUpdatedEvent e -> ITEM_PROPERTIES_UPDATED;
+            case LocationCreatedEvent e -> LOCATION_CREATED;
+            case LocationActivatedEvent e -> LOCATION_ACTIVATED;
+            case LocationDeactivatedEvent e -> LOCATION_DEACTIVATED;
+            case LocationDeletedEvent e -> LOCATION_DELETED;
+            case LocationConnectionCreatedEvent e -> LOCATION_CONNECTION_CREATED;
+            case LocationPropertiesUpdatedEvent e -> LOCATION_PROPERTIES_UPDATED;
+            default -> throw new IllegalArgumentException("No binary encoding for " + event.getClass().getSimpleName());
+        };
+    }
+
+    private static void writeVarint(long value, ByteArrayOutputStream out) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeLong(long value, ByteArrayOutputStream out) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static void writeString(String value, ByteArrayOutputStream out) {
+        if (value == null) {
+            out.write(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length + 1L, out);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeDouble(Double value, ByteArrayOutputStream out) {
+        if (value == null) {
+            out.write(0);
+            return;
+        }
+        out.write(1);
+        writeLong(Double.doubleToLongBits(value), out);
+    }
+
+    private static void writeBoolean(Boolean value, ByteArrayOutputStream out) {
+        out.write(value == null ? 0 : value ? 2 : 1);
+    }
+
+    private static void writeProperties(Map<String, Object> properties, ByteArrayOutputStream out) {
+        try {
+            writeString(properties == null ? null : objectMapper.writeValueAsString(properties), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode event properties", e);
+        }
+    }
+
+    private static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // ---- Reading ----
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static String readString(ByteBuffer in) {
+        long length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[(int) length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Double readDouble(ByteBuffer in) {
+        return in.get() == 0 ? null : in.getDouble();
+    }
+
+    private static Boolean readBoolean(ByteBuffer in) {
+        byte value = in.get();
+        return value == 0 ? null : value == 2;
+    }
+
+    private static Map<String, Object> readProperties(ByteBuffer in) {
+        String json = readString(in);
+        try {
+            return json == null ? null : objectMapper.readValue(json, PROPERTIES);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed event properties", e);
+        }
+    }
+
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
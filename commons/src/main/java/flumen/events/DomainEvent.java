@@ -4,6 +4,7 @@ import lombok.Getter;
 import java.time.Instant;
 import java.util.UUID;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
@@ -29,9 +30,13 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
     @JsonSubTypes.Type(value = LocationPropertiesUpdatedEvent.class, name = "LOCATION_PROPERTIES_UPDATED")
 })
 public abstract class DomainEvent {
-    private final String eventId;
+    // Assigned by the producer. When an event is read back, from JSON or the binary codec, it keeps
+    // the id and timestamp it was written with; the constructor values only apply to new events.
+    @JsonProperty("eventId")
+    private String eventId;
     private final String entityId;
-    private final Instant timestamp;
+    @JsonProperty("timestamp")
+    private Instant timestamp;
     private final String eventType;
 
     protected DomainEvent(String entityId, String eventType) {
@@ -40,4 +45,17 @@ public abstract class DomainEvent {
         this.timestamp = Instant.now();
         this.eventType = eventType;
     }
+
+    /**
+     * For events that describe something that happened before they were created.
+     */
+    protected DomainEvent(String entityId, String eventType, Instant timestamp) {
+        this(entityId, eventType);
+        this.timestamp = timestamp;
+    }
+
+    void restore(String eventId, Instant timestamp) {
+        this.eventId = eventId;
+        this.timestamp = timestamp;
+    }
 } 
\ No newline at end of file
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import lombok.Getter;
 
+import java.time.Instant;
+
 @Getter
 public class ItemPositionChangedEvent extends DomainEvent {
     private final String locationId;
@@ -14,4 +16,9 @@ public class ItemPositionChangedEvent extends DomainEvent {
         super(itemId, "ITEM_POSITION_CHANGED");
         this.locationId = locationId;
     }
+
+    public ItemPositionChangedEvent(String itemId, String locationId, Instant timestamp) {
+        super(itemId, "ITEM_POSITION_CHANGED", timestamp);
+        this.locationId = locationId;
+    }
 }
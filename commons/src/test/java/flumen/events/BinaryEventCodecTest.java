@@ -0,0 +1,147 @@
+package flumen.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class BinaryEventCodecTest {
+
+    static Stream<DomainEvent> events() {
+        Map<String, Object> properties = Map.of("color", "red", "capacity", 4);
+        return Stream.of(
+                new ItemCreatedEvent("item-1", "Truck", 1.5, true, properties),
+                new ItemCreatedEvent("item-2", null, null, false, null),
+                new ItemPositionChangedEvent("item-1", "location-1"),
+                new ItemSpeedChangedEvent("item-1", 0.25),
+                new ItemSpeedChangedEvent("item-1", null),
+                new ItemActivatedEvent("item-1"),
+                new ItemDeactivatedEvent("item-1"),
+                new ItemPropertiesUpdatedEvent("item-1", properties),
+                new LocationCreatedEvent("location-1", "Dock", true, 45.1, 9.2, 120.0, 1.0, "Road", properties),
+                new LocationCreatedEvent("location-2", null, null, null, null, null, null, null, null),
+                new LocationActivatedEvent("location-1"),
+                new LocationDeactivatedEvent("location-1"),
+                new LocationDeletedEvent("location-1"),
+                new LocationConnectionCreatedEvent("location-1", "location-2"),
+                new LocationPropertiesUpdatedEvent("location-1", properties));
+    }
+
+    @ParameterizedTest
+    @MethodSource("events")
+    void decodesWhatItEncodes(DomainEvent event) {
+        DomainEvent decoded = BinaryEventCodec.decode(BinaryEventCodec.encode(event));
+
+        assertThat(decoded).isExactlyInstanceOf(event.getClass());
+        assertThat(decoded).usingRecursiveComparison().ignoringFields("timestamp").isEqualTo(event);
+        assertThat(decoded.getTimestamp()).isEqualTo(event.getTimestamp().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    @Test
+    void keepsTimestampsBeforeTheEpoch() {
+        Instant timestamp = Instant.parse("1969-07-20T20:17:40.123456Z");
+        DomainEvent event = new ItemPositionChangedEvent("item-1", "location-1", timestamp);
+
+        assertThat(BinaryEventCodec.decode(BinaryEventCodec.encode(event)).getTimestamp()).isEqualTo(timestamp);
+    }
+
+    @Test
+    void tellsBinaryFromJson() {
+        byte[] binary = BinaryEventCodec.encode(new ItemActivatedEvent("item-1"));
+
+        assertThat(BinaryEventCodec.isBinary(binary)).isTrue();
+        assertThat(BinaryEventCodec.isBinary("{\"eventType\":\"ITEM_ACTIVATED\"}".getBytes(StandardCharsets.UTF_8)))
+                .isFalse();
+        assertThat(BinaryEventCodec.isBinary(new byte[0])).isFalse();
+    }
+
+    @Test
+    void readsBackAStreamOfDelimitedEvents() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DomainEvent first = new ItemSpeedChangedEvent("item-1", 2.0);
+        DomainEvent second = new LocationConnectionCreatedEvent("location-1", "location-2");
+        BinaryEventCodec.writeDelimited(first, out);
+        BinaryEventCodec.writeDelimited(second, out);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+
+        assertThat(BinaryEventCodec.decode(BinaryEventCodec.readDelimited(in)).getEventId()).isEqualTo(first.getEventId());
+        assertThat(BinaryEventCodec.decode(BinaryEventCodec.readDelimited(in)).getEventId()).isEqualTo(second.getEventId());
+        assertThat(BinaryEventCodec.readDelimited(in)).isNull();
+    }
+
+    @Test
+    void rejectsATruncatedStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEventCodec.writeDelimited(new ItemSpeedChangedEvent("item-1", 2.0), out);
+        byte[] bytes = out.toByteArray();
+
+        ByteArrayInputStream in = new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThatThrownBy(() -> BinaryEventCodec.readDelimited(in)).isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void rejectsATruncatedEvent() {
+        byte[] payload = BinaryEventCodec.encode(new ItemPositionChangedEvent("item-1", "location-1"));
+
+        for (int length = 0; length < payload.length; length++) {
+            byte[] truncated = Arrays.copyOf(payload, length);
+            assertThatThrownBy(() -> BinaryEventCodec.decode(truncated)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rejectsAnotherFormat() {
+        byte[] json = "{\"eventType\":\"ITEM_ACTIVATED\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> BinaryEventCodec.decode(json))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Not a binary event");
+    }
+
+    @Test
+    void rejectsAnUnknownSchemaVersion() {
+        byte[] payload = BinaryEventCodec.encode(new ItemActivatedEvent("item-1"));
+        payload[1] = 99;
+
+        assertThatThrownBy(() -> BinaryEventCodec.decode(payload))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("schema version");
+    }
+
+    @Test
+    void rejectsAnUnknownType() {
+        byte[] payload = BinaryEventCodec.encode(new ItemActivatedEvent("item-1"));
+        payload[2] = 127;
+
+        assertThatThrownBy(() -> BinaryEventCodec.decode(payload))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown binary event type");
+    }
+
+    @Test
+    void rejectsMalformedProperties() {
+        DomainEvent event = new ItemPropertiesUpdatedEvent("item-1", Map.of("a", "b"));
+        byte[] payload = BinaryEventCodec.encode(event);
+        // The properties JSON is last, break its closing brace.
+        payload[payload.length - 1] = 'x';
+
+        assertThatThrownBy(() -> BinaryEventCodec.decode(payload))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("properties");
+    }
+}
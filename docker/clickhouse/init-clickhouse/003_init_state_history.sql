@@ -0,0 +1,56 @@
+-- State history: one row per entity each time its state changed, written by the backend every
+-- clickhouse.state-history.interval-ms. A state is valid from valid_from until the next row of the same entity;
+-- a row with deleted = true ends the history of an entity.
+
+CREATE TABLE IF NOT EXISTS default.item_states
+(
+    `item_id` String,
+    `valid_from` DateTime64(3),
+    `location_id` Nullable(String),
+    `progress` Nullable(Float64),
+    `speed` Nullable(Float64),
+    `active` Bool,
+    `deleted` Bool,
+    `name` String,
+    `properties` String,
+    -- Occupancy queries filter by location, this keeps a copy of the rows ordered for them.
+    PROJECTION by_location
+    (
+        SELECT *
+        ORDER BY (location_id, valid_from)
+    )
+)
+ENGINE = MergeTree
+PARTITION BY toYYYYMM(valid_from)
+ORDER BY (item_id, valid_from);
+
+CREATE TABLE IF NOT EXISTS default.location_states
+(
+    `location_id` String,
+    `valid_from` DateTime64(3),
+    `latitude` Nullable(Float64),
+    `longitude` Nullable(Float64),
+    `length` Nullable(Float64),
+    `speed` Nullable(Float64),
+    `active` Nullable(Bool),
+    `deleted` Bool,
+    `name` String,
+    `type` LowCardinality(String),
+    `connections` Array(String),
+    `properties` String
+)
+ENGINE = MergeTree
+PARTITION BY toYYYYMM(valid_from)
+ORDER BY (location_id, valid_from);
+
+-- Where was item X at time T:
+--   SELECT location_id, progress, valid_from FROM item_states
+--   WHERE item_id = 'X' AND valid_from <= T ORDER BY valid_from DESC LIMIT 1
+--
+-- Occupancy of location L over a day, as the intervals items spent on it:
+--   SELECT item_id, valid_from AS arrived,
+--          leadInFrame(valid_from, 1, now64(3)) OVER w AS left, location_id
+--   FROM item_states WHERE item_id IN (SELECT item_id FROM item_states WHERE location_id = 'L'
+--                                      AND valid_from < '2025-01-02')
+--   WINDOW w AS (PARTITION BY item_id ORDER BY valid_from ROWS BETWEEN CURRENT ROW AND UNBOUNDED FOLLOWING)
+--   QUALIFY location_id = 'L' AND left >= '2025-01-01' AND arrived < '2025-01-02'
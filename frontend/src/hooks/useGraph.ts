@@ -1,5 +1,5 @@
 import { useState, useEffect } from 'react';
-import { useApi } from './useApi';
+import { axiosInstance } from '../api/config';
 import { useWebSocket, PositionUpdate, NodeUpdate } from './useWebSocket';
 import { GraphData, Location, Item } from '../types/api';
 
@@ -8,36 +8,91 @@ const emptyGraphData: GraphData = {
     connections: []
 };
 
+const GRAPH_PAGE_SIZE = 5000;
+
+interface GraphRecord {
+    type: 'LOCATION_UPSERTED' | 'ITEM_UPSERTED';
+    id: string;
+    location?: Location;
+    item?: Item;
+    locationId?: string | null;
+}
+
+interface GraphExportPage {
+    epoch: string;
+    version: number;
+    records: GraphRecord[];
+    nextCursor: string | null;
+}
+
+// Pages hold all locations before any item, so an item's location is always loaded before the item.
+const applyRecords = (current: GraphData, records: GraphRecord[]): GraphData => {
+    const locations = [...current.locations];
+    const connections = [...current.connections];
+    const indexById = new Map(locations.map((location, index) => [location.id, index]));
+
+    for (const record of records) {
+        if (record.type === 'LOCATION_UPSERTED' && record.location) {
+            indexById.set(record.location.id, locations.length);
+            locations.push({ ...record.location, items: [] });
+            connections.push(...(record.location.connections || []));
+        } else if (record.type === 'ITEM_UPSERTED' && record.item && record.locationId) {
+            const index = indexById.get(record.locationId);
+            if (index !== undefined) {
+                const location = locations[index];
+                locations[index] = { ...location, items: [...(location.items || []), record.item] };
+            }
+        }
+    }
+    return { ...current, locations, connections };
+};
+
 export const useGraph = () => {
-    const { graphApi } = useApi();
     const { connected, subscribeToPositionUpdates, subscribeToNodeUpdates } = useWebSocket();
     const [loading, setLoading] = useState(true);
     const [error, setError] = useState<string | null>(null);
     const [graphData, setGraphData] = useState<GraphData>(emptyGraphData);
 
-    // Fetch initial graph data
+    // Load the graph page by page, showing each page as soon as it arrives
     useEffect(() => {
+        let cancelled = false;
+
         const fetchData = async () => {
             try {
                 setLoading(true);
-                const response = await graphApi.getGraphData();
-                if (response?.data) {
-                    setGraphData(response.data);
-                    setError(null);
-                } else {
-                    throw new Error('Invalid response data');
-                }
+                let loaded: GraphData = emptyGraphData;
+                let cursor: string | null = null;
+                do {
+                    const params: Record<string, string | number> = { limit: GRAPH_PAGE_SIZE };
+                    if (cursor) {
+                        params.cursor = cursor;
+                    }
+                    const response = await axiosInstance.get<GraphExportPage>('/api/graph/page', { params });
+                    if (cancelled) return;
+                    if (!response?.data) {
+                        throw new Error('Invalid response data');
+                    }
+                    loaded = applyRecords(loaded, response.data.records);
+                    setGraphData(loaded);
+                    setLoading(false);
+                    cursor = response.data.nextCursor;
+                } while (cursor);
+                setError(null);
             } catch (err) {
+                if (cancelled) return;
                 setError('Failed to fetch graph data');
                 console.error('Error fetching graph data:', err);
                 setGraphData(emptyGraphData);
             } finally {
-                setLoading(false);
+                if (!cancelled) setLoading(false);
             }
         };
 
         fetchData();
-    }, [graphApi]);
+        return () => {
+            cancelled = true;
+        };
+    }, []);
 
     // Handle position updates
     useEffect(() => {
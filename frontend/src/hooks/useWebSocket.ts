@@ -52,8 +52,9 @@ export const useWebSocket = () => {
         }
 
         const subscription = client.current.subscribe('/topic/positions', (message: Message) => {
-            const update: PositionUpdate = JSON.parse(message.body);
-            handler(update);
+            // Position updates arrive batched, one frame per flush of the server
+            const updates: PositionUpdate[] = JSON.parse(message.body);
+            updates.forEach(handler);
         });
 
         subscriptions.current.set('positions', subscription);
@@ -2,15 +2,18 @@ package livedata.simulator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import flumen.events.BinaryEventCodec;
 import flumen.events.DomainEvent;
 import flumen.events.ItemCreatedEvent;
 import flumen.events.ItemPositionChangedEvent;
 import flumen.events.LocationCreatedEvent;
 import flumen.events.LocationConnectionCreatedEvent;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -19,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,8 +33,9 @@ public class App {
     private static final Logger logger = Logger.getLogger(App.class.getName());
     private static final String MODE = System.getenv().getOrDefault("SIMULATION_MODE", "api"); // "api" or "rabbit"
     private static final String RABBIT_HOST = "localhost";
-    private static final String RABBIT_QUEUE = "item-events-queue";
     private static final String RABBIT_EXCHANGE = "item-events-exchange";
+    // Format of the events published to RabbitMQ: "json" or "binary"
+    private static final boolean BINARY = System.getenv().getOrDefault("EVENT_FORMAT", "json").equalsIgnoreCase("binary");
 
     private static final ObjectMapper objectMapper = new ObjectMapper()
             .registerModule(new JavaTimeModule());
@@ -161,21 +166,16 @@ public class App {
             }
         }));
 
-        rabbitChannel.exchangeDeclare(RABBIT_EXCHANGE, "x-consistent-hash", true);
-        logger.info("Declared consistent-hash exchange: " + RABBIT_EXCHANGE);
-
-        rabbitChannel.queueDeclare(RABBIT_QUEUE, true, false, false, null);
-        logger.info("Declared queue: " + RABBIT_QUEUE);
-
-        rabbitChannel.queueBind(RABBIT_QUEUE, RABBIT_EXCHANGE, "1");
-        logger.info("Bound queue to exchange.");
+        // The backend declares the exchange and its partition queues.
+        rabbitChannel.exchangeDeclarePassive(RABBIT_EXCHANGE);
+        logger.info("Found consistent-hash exchange: " + RABBIT_EXCHANGE);
     }
 
     private static void sendEvent(DomainEvent event, String httpMethod) throws Exception {
         String json = objectMapper.writeValueAsString(event);
         if (MODE.equalsIgnoreCase("rabbit")) {
             String hashKey = event.getEntityId(); 
-            rabbitChannel.basicPublish(RABBIT_EXCHANGE, hashKey, null, json.getBytes());
+            rabbitChannel.basicPublish(RABBIT_EXCHANGE, hashKey, partitionedBy(hashKey), messageBody(event));
             logger.info(() -> "Sent event to RabbitMQ with hashKey=" + hashKey + ": " + json);
         } else {
             String endpoint = getEndpointForEvent(event);
@@ -210,6 +210,21 @@ public class App {
         }
     }
 
+    /**
+     * The exchange hashes this header to pick the partition queue of the entity.
+     * The content type tells the backend how to read the body.
+     */
+    static AMQP.BasicProperties partitionedBy(String entityId) {
+        return new AMQP.BasicProperties.Builder()
+                .contentType(BINARY ? BinaryEventCodec.CONTENT_TYPE : "application/json")
+                .headers(Map.of("x-consistent-hash-by", entityId))
+                .build();
+    }
+
+    static byte[] messageBody(DomainEvent event) throws IOException {
+        return BINARY ? BinaryEventCodec.encode(event) : objectMapper.writeValueAsBytes(event);
+    }
+
     private static String getEndpointForEvent(DomainEvent event) {
         if (event instanceof ItemCreatedEvent) {
             return "/items";
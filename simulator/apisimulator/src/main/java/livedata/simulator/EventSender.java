@@ -0,0 +1,197 @@
+package livedata.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import flumen.events.ItemPositionChangedEvent;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Sends events without waiting for each one to complete. At most {@code maxInFlight} sends are outstanding,
+ * beyond that the caller blocks until one completes.
+ */
+public interface EventSender extends AutoCloseable {
+
+    void sendPosition(String itemId, String locationId) throws Exception;
+
+    /** Blocks until every send made so far has completed. */
+    void awaitCompletion() throws InterruptedException;
+
+    long completed();
+
+    long failed();
+
+    /**
+     * Calls the REST API from virtual threads, one blocking request per thread.
+     */
+    class Http implements EventSender {
+        private static final Logger logger = Logger.getLogger(Http.class.getName());
+
+        private final String baseUrl;
+        private final ObjectMapper objectMapper;
+        private final HttpClient httpClient;
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final Semaphore inFlight;
+        private final int maxInFlight;
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        public Http(String baseUrl, ObjectMapper objectMapper, int maxInFlight) {
+            this.baseUrl = baseUrl;
+            this.objectMapper = objectMapper;
+            this.maxInFlight = maxInFlight;
+            this.inFlight = new Semaphore(maxInFlight);
+            this.httpClient = HttpClient.newBuilder().executor(executor).build();
+        }
+
+        @Override
+        public void sendPosition(String itemId, String locationId) throws Exception {
+            send("PUT", "/positions", Map.of("itemId", itemId, "locationId", locationId));
+        }
+
+        public void send(String method, String path, Object body) throws Exception {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(new URI(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+            inFlight.acquire();
+            executor.execute(() -> {
+                try {
+                    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                        completed.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                        logger.fine(() -> "Request failed: " + response.statusCode() + " " + response.body());
+                    }
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    logger.fine(() -> "Request failed: " + e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        @Override
+        public void awaitCompletion() throws InterruptedException {
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        }
+
+        @Override
+        public long completed() {
+            return completed.get();
+        }
+
+        @Override
+        public long failed() {
+            return failed.get();
+        }
+
+        @Override
+        public void close() {
+            executor.close();
+        }
+    }
+
+    /**
+     * Publishes to the consistent-hash exchange with publisher confirms. A send completes when the broker
+     * confirms it. The channel is used by the calling thread only.
+     */
+    class Rabbit implements EventSender {
+        private final String exchange;
+        private final Connection connection;
+        private final Channel channel;
+        private final Semaphore inFlight;
+        private final int maxInFlight;
+        private final ConcurrentNavigableMap<Long, Boolean> outstanding = new ConcurrentSkipListMap<>();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        public Rabbit(String host, String exchange, int maxInFlight) throws Exception {
+            this.exchange = exchange;
+            this.maxInFlight = maxInFlight;
+            this.inFlight = new Semaphore(maxInFlight);
+
+            ConnectionFactory factory = new ConnectionFactory();
+            factory.setHost(host);
+            factory.setUsername("admin");
+            factory.setPassword("admin");
+            this.connection = factory.newConnection();
+            this.channel = connection.createChannel();
+            // The backend owns the topology, only check that it is there.
+            channel.exchangeDeclarePassive(exchange);
+            channel.confirmSelect();
+            channel.addConfirmListener(new ConfirmListener() {
+                @Override
+                public void handleAck(long deliveryTag, boolean multiple) {
+                    completed.addAndGet(settle(deliveryTag, multiple));
+                }
+
+                @Override
+                public void handleNack(long deliveryTag, boolean multiple) {
+                    failed.addAndGet(settle(deliveryTag, multiple));
+                }
+            });
+        }
+
+        private int settle(long deliveryTag, boolean multiple) {
+            int settled;
+            if (multiple) {
+                ConcurrentNavigableMap<Long, Boolean> confirmed = outstanding.headMap(deliveryTag, true);
+                settled = confirmed.size();
+                confirmed.clear();
+            } else {
+                settled = outstanding.remove(deliveryTag) != null ? 1 : 0;
+            }
+            inFlight.release(settled);
+            return settled;
+        }
+
+        @Override
+        public void sendPosition(String itemId, String locationId) throws Exception {
+            byte[] body = App.messageBody(new ItemPositionChangedEvent(itemId, locationId));
+            inFlight.acquire();
+            outstanding.put(channel.getNextPublishSeqNo(), Boolean.TRUE);
+            channel.basicPublish(exchange, itemId, App.partitionedBy(itemId), body);
+        }
+
+        @Override
+        public void awaitCompletion() throws InterruptedException {
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        }
+
+        @Override
+        public long completed() {
+            return completed.get();
+        }
+
+        @Override
+        public long failed() {
+            return failed.get();
+        }
+
+        @Override
+        public void close() throws Exception {
+            channel.close();
+            connection.close();
+        }
+    }
+}
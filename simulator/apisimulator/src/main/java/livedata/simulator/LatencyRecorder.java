@@ -0,0 +1,60 @@
+package livedata.simulator;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples in microseconds. Samples are kept both for the current reporting interval and
+ * for the whole run, so percentiles are exact rather than bucketed.
+ */
+public class LatencyRecorder {
+
+    private long[] interval = new long[1024];
+    private int intervalCount;
+    private long[] total = new long[1024];
+    private int totalCount;
+
+    public synchronized void record(long micros) {
+        if (intervalCount == interval.length) {
+            interval = Arrays.copyOf(interval, interval.length * 2);
+        }
+        interval[intervalCount++] = micros;
+        if (totalCount == total.length) {
+            total = Arrays.copyOf(total, total.length * 2);
+        }
+        total[totalCount++] = micros;
+    }
+
+    /**
+     * Returns the samples recorded since the previous call, sorted, and starts a new interval.
+     */
+    public synchronized long[] drainInterval() {
+        long[] samples = Arrays.copyOf(interval, intervalCount);
+        intervalCount = 0;
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    public synchronized long[] allSamples() {
+        long[] samples = Arrays.copyOf(total, totalCount);
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    public static String summarize(long[] sorted) {
+        if (sorted.length == 0) {
+            return "no samples";
+        }
+        return String.format("n=%d p50=%.1fms p90=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms",
+                sorted.length,
+                percentile(sorted, 0.50) / 1000.0,
+                percentile(sorted, 0.90) / 1000.0,
+                percentile(sorted, 0.99) / 1000.0,
+                percentile(sorted, 0.999) / 1000.0,
+                sorted[sorted.length - 1] / 1000.0);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
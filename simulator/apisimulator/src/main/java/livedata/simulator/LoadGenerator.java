@@ -0,0 +1,269 @@
+package livedata.simulator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Load-generator mode of the simulator. Builds a topology of configurable size and shape through the REST API,
+ * then moves items along it at a fixed target rate, over the REST API or RabbitMQ (SIMULATION_MODE).
+ *
+ * End-to-end latency is measured from the moment a move was due to be sent until the backend publishes
+ * the new position on /topic/positions. Timing from the schedule rather than from the actual send keeps
+ * delays caused by the generator falling behind in the numbers.
+ *
+ * Configured through environment variables, see the README.
+ */
+public class LoadGenerator {
+
+    private static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+
+    private static final String MODE = env("SIMULATION_MODE", "api");
+    private static final String BASE_URL = env("BASE_URL", "http://localhost:8080/api");
+    private static final String WS_URL = env("WS_URL", "ws://localhost:8080/ws/websocket");
+    private static final String RABBIT_HOST = env("RABBIT_HOST", "localhost");
+    private static final String RABBIT_EXCHANGE = env("RABBIT_EXCHANGE", "item-events-exchange");
+
+    private static final int NUM_ITEMS = Integer.parseInt(env("LOAD_ITEMS", "100000"));
+    private static final int NUM_LOCATIONS = Integer.parseInt(env("LOAD_LOCATIONS", "10000"));
+    private static final String TOPOLOGY = env("LOAD_TOPOLOGY", "random"); // "ring", "grid" or "random"
+    private static final int OUT_DEGREE = Integer.parseInt(env("LOAD_OUT_DEGREE", "2"));
+    private static final int RATE = Integer.parseInt(env("LOAD_RATE", "10000")); // events per second
+    private static final int DURATION_S = Integer.parseInt(env("LOAD_DURATION_S", "60"));
+    private static final int MAX_IN_FLIGHT = Integer.parseInt(env("LOAD_IN_FLIGHT", "1000"));
+    private static final boolean SKIP_SETUP = Boolean.parseBoolean(env("LOAD_SKIP_SETUP", "false"));
+    private static final long SEED = Long.parseLong(env("LOAD_SEED", "42"));
+    private static final int REPORT_INTERVAL_S = 5;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final Random random = new Random(SEED);
+    private final int[][] outbound = new int[NUM_LOCATIONS][];
+    private final int[] itemLocations = new int[NUM_ITEMS];
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final AtomicLong sent = new AtomicLong();
+
+    private record Pending(String locationId, long dueNanos) {}
+
+    public static void main(String[] args) {
+        try {
+            new LoadGenerator().run();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Load generation failed", e);
+        }
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        buildTopology();
+        if (!SKIP_SETUP) {
+            createTopology();
+        }
+        placeItems();
+
+        PositionStream stream = PositionStream.connect(WS_URL, objectMapper, this::onPosition);
+        try (EventSender sender = MODE.equalsIgnoreCase("rabbit")
+                ? new EventSender.Rabbit(RABBIT_HOST, RABBIT_EXCHANGE, MAX_IN_FLIGHT)
+                : new EventSender.Http(BASE_URL, objectMapper, MAX_IN_FLIGHT)) {
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+            reporter.scheduleAtFixedRate(new Reporter(sender), REPORT_INTERVAL_S, REPORT_INTERVAL_S, TimeUnit.SECONDS);
+
+            logger.info(String.format("--- Moving items at %d events/s for %d s over %s ---", RATE, DURATION_S, MODE));
+            long elapsedNanos = generate(sender);
+            sender.awaitCompletion();
+            // Leave time for the last position frames to arrive.
+            Thread.sleep(2000);
+            reporter.shutdownNow();
+
+            logger.info(String.format("Sent %d moves in %.1f s (%.0f/s achieved, %d/s target), %d completed, %d failed",
+                    sent.get(), elapsedNanos / 1e9, sent.get() / (elapsedNanos / 1e9), RATE,
+                    sender.completed(), sender.failed()));
+            logger.info("End-to-end latency: " + LatencyRecorder.summarize(latencies.allSamples()));
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Sends moves on a fixed schedule. Items are moved round-robin, so moves of the same item are far apart
+     * and do not race each other when sent over concurrent HTTP requests.
+     */
+    private long generate(EventSender sender) throws Exception {
+        long intervalNanos = 1_000_000_000L / RATE;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(DURATION_S);
+        for (long k = 0; ; k++) {
+            long due = start + k * intervalNanos;
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            int item = (int) (k % NUM_ITEMS);
+            int[] next = outbound[itemLocations[item]];
+            int location = next[random.nextInt(next.length)];
+            itemLocations[item] = location;
+
+            String itemId = itemId(item);
+            String locationId = locationId(location);
+            pending.put(itemId, new Pending(locationId, due));
+            sender.sendPosition(itemId, locationId);
+            sent.incrementAndGet();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void onPosition(String itemId, String locationId) {
+        Pending move = pending.get(itemId);
+        if (move != null && move.locationId().equals(locationId) && pending.remove(itemId, move)) {
+            latencies.record((System.nanoTime() - move.dueNanos()) / 1000);
+        }
+    }
+
+    // ---- Topology ----
+
+    /**
+     * Every location gets at least one outbound connection, so items never get stuck.
+     */
+    private void buildTopology() {
+        int side = (int) Math.ceil(Math.sqrt(NUM_LOCATIONS));
+        for (int i = 0; i < NUM_LOCATIONS; i++) {
+            Set<Integer> targets = new LinkedHashSet<>();
+            switch (TOPOLOGY) {
+                case "ring" -> targets.add((i + 1) % NUM_LOCATIONS);
+                case "grid" -> {
+                    int row = i / side;
+                    int column = i % side;
+                    targets.add(row * side + (column + 1) % side);
+                    targets.add(((row + 1) % side) * side + column);
+                    targets.removeIf(target -> target >= NUM_LOCATIONS);
+                    if (targets.isEmpty()) {
+                        targets.add((i + 1) % NUM_LOCATIONS);
+                    }
+                }
+                default -> {
+                    targets.add((i + 1) % NUM_LOCATIONS);
+                    while (targets.size() < Math.min(OUT_DEGREE, NUM_LOCATIONS - 1)) {
+                        int target = random.nextInt(NUM_LOCATIONS);
+                        if (target != i) {
+                            targets.add(target);
+                        }
+                    }
+                }
+            }
+            outbound[i] = targets.stream().mapToInt(Integer::intValue).toArray();
+        }
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            itemLocations[i] = random.nextInt(NUM_LOCATIONS);
+        }
+    }
+
+    private void createTopology() throws Exception {
+        // Setup always goes through the REST API, which applies each call before answering,
+        // so that every step can rely on the previous one being complete.
+        try (EventSender.Http http = new EventSender.Http(BASE_URL, objectMapper, MAX_IN_FLIGHT)) {
+            int side = (int) Math.ceil(Math.sqrt(NUM_LOCATIONS));
+
+            logger.info("--- Creating " + NUM_LOCATIONS + " locations (" + TOPOLOGY + ") ---");
+            for (int i = 0; i < NUM_LOCATIONS; i++) {
+                Map<String, Object> location = new HashMap<>();
+                location.put("id", locationId(i));
+                location.put("name", locationId(i));
+                location.put("latitude", (double) (i / side) * 10);
+                location.put("longitude", (double) (i % side) * 10);
+                location.put("length", 10.0);
+                location.put("speed", 1.0);
+                location.put("type", "conveyor");
+                location.put("active", true);
+                location.put("properties", new HashMap<>());
+                http.send("POST", "/locations", location);
+            }
+            http.awaitCompletion();
+
+            logger.info("--- Creating connections ---");
+            for (int i = 0; i < NUM_LOCATIONS; i++) {
+                for (int target : outbound[i]) {
+                    http.send("POST", "/connections", Map.of("location1Id", locationId(i), "location2Id", locationId(target)));
+                }
+            }
+            http.awaitCompletion();
+
+            logger.info("--- Creating " + NUM_ITEMS + " items ---");
+            for (int i = 0; i < NUM_ITEMS; i++) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", itemId(i));
+                item.put("name", itemId(i));
+                item.put("speed", 1.0);
+                item.put("active", true);
+                item.put("properties", new HashMap<>());
+                http.send("POST", "/items", item);
+            }
+            http.awaitCompletion();
+
+            if (http.failed() > 0) {
+                logger.warning(http.failed() + " setup requests failed, the topology may be incomplete");
+            }
+        }
+    }
+
+    /**
+     * Puts every item on its starting location, also when reusing a topology whose items have moved since.
+     */
+    private void placeItems() throws Exception {
+        try (EventSender.Http http = new EventSender.Http(BASE_URL, objectMapper, MAX_IN_FLIGHT)) {
+            logger.info("--- Placing items ---");
+            for (int i = 0; i < NUM_ITEMS; i++) {
+                http.send("POST", "/positions", Map.of("itemId", itemId(i), "locationId", locationId(itemLocations[i])));
+            }
+            http.awaitCompletion();
+        }
+    }
+
+    private static String itemId(int index) {
+        return "LoadItem" + index;
+    }
+
+    private static String locationId(int index) {
+        return "LoadLocation" + index;
+    }
+
+    private static String env(String name, String defaultValue) {
+        return System.getenv().getOrDefault(name, defaultValue);
+    }
+
+    private class Reporter implements Runnable {
+        private final EventSender sender;
+        private long lastSent;
+
+        Reporter(EventSender sender) {
+            this.sender = sender;
+        }
+
+        @Override
+        public void run() {
+            long total = sent.get();
+            logger.info(String.format("%.0f moves/s, %d completed, %d failed, %d awaiting observation | %s",
+                    (total - lastSent) / (double) REPORT_INTERVAL_S, sender.completed(), sender.failed(),
+                    pending.size(), LatencyRecorder.summarize(latencies.drainInterval())));
+            lastSent = total;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package livedata.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Minimal STOMP client for the backend's /topic/positions stream, over the raw WebSocket transport of the
+ * SockJS endpoint. Calls back with (itemId, locationId) for every position in every received frame.
+ */
+public class PositionStream implements WebSocket.Listener {
+
+    private static final Logger logger = Logger.getLogger(PositionStream.class.getName());
+
+    private final ObjectMapper objectMapper;
+    private final BiConsumer<String, String> onPosition;
+    private final StringBuilder buffer = new StringBuilder();
+    private WebSocket webSocket;
+
+    private PositionStream(ObjectMapper objectMapper, BiConsumer<String, String> onPosition) {
+        this.objectMapper = objectMapper;
+        this.onPosition = onPosition;
+    }
+
+    public static PositionStream connect(String url, ObjectMapper objectMapper, BiConsumer<String, String> onPosition)
+            throws Exception {
+        PositionStream stream = new PositionStream(objectMapper, onPosition);
+        stream.webSocket = HttpClient.newHttpClient().newWebSocketBuilder()
+                .buildAsync(URI.create(url), stream)
+                .get(10, TimeUnit.SECONDS);
+        stream.webSocket.sendText("CONNECT\naccept-version:1.2\nheart-beat:0,0\n\n\0", true).join();
+        stream.webSocket.sendText("SUBSCRIBE\nid:positions\ndestination:/topic/positions\n\n\0", true).join();
+        return stream;
+    }
+
+    public void close() {
+        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "done").join();
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        buffer.append(data);
+        if (last) {
+            String message = buffer.toString();
+            buffer.setLength(0);
+            for (String frame : message.split("\0")) {
+                handleFrame(frame.stripLeading());
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        logger.log(Level.WARNING, "Position stream failed", error);
+    }
+
+    private void handleFrame(String frame) {
+        if (!frame.startsWith("MESSAGE")) {
+            if (frame.startsWith("ERROR")) {
+                logger.warning(() -> "STOMP error: " + frame);
+            }
+            return;
+        }
+        int bodyStart = frame.indexOf("\n\n");
+        if (bodyStart < 0) {
+            return;
+        }
+        try {
+            JsonNode updates = objectMapper.readTree(frame.substring(bodyStart + 2));
+            for (JsonNode update : updates) {
+                onPosition.accept(update.path("itemId").asText(null), update.path("locationId").asText(null));
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Unreadable position frame", e);
+        }
+    }
+}